@@ -0,0 +1,60 @@
+package hockeyapp;
+
+import hudson.model.Run;
+import net.hockeyapp.engine.UploadListener;
+
+import javax.annotation.Nonnull;
+import java.io.PrintStream;
+
+/**
+ * Shows an upload of the engine as {@link UploadProgress} of a build and logs to the build log.
+ * One instance follows one upload at a time.
+ */
+final class BuildUploadListener implements UploadListener {
+
+    private final Run<?, ?> build;
+    private final PrintStream logger;
+    private volatile UploadProgress progress;
+    private volatile long bytesSent;
+
+    BuildUploadListener(@Nonnull Run<?, ?> build, @Nonnull PrintStream logger) {
+        this.build = build;
+        this.logger = logger;
+    }
+
+    @Override
+    public void started(@Nonnull String artifact, @Nonnull String host, long totalBytes) {
+        bytesSent = 0;
+        progress = UploadProgress.start(build, artifact, host, totalBytes, logger);
+    }
+
+    @Override
+    public void progress(long bytesSent) {
+        this.bytesSent = bytesSent;
+        final UploadProgress progress = this.progress;
+        if (progress != null) {
+            progress.update(bytesSent);
+        }
+    }
+
+    @Override
+    public void finished() {
+        final UploadProgress progress = this.progress;
+        if (progress != null) {
+            progress.finish();
+            this.progress = null;
+        }
+    }
+
+    @Override
+    public void log(@Nonnull String message) {
+        logger.println(message);
+    }
+
+    /**
+     * @return bytes sent by the latest upload, also when it failed.
+     */
+    long getBytesSent() {
+        return bytesSent;
+    }
+}
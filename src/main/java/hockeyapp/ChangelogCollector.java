@@ -0,0 +1,184 @@
+package hockeyapp;
+
+import hudson.model.Run;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.ChangeLogSet.Entry;
+import jenkins.scm.RunWithSCM;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Gathers the change log entries for release notes from every change set of a build and, optionally, from the
+ * builds since the last upload. Change sets are always taken from the runs themselves, so the cost does not depend
+ * on the number of jobs around them.
+ */
+final class ChangelogCollector {
+
+    // Builds without a cursor looked at, for jobs that uploaded before cursors existed
+    static final int MAX_LOOKBACK = Integer.getInteger(ChangelogCollector.class.getName() + ".maxLookback", 50);
+    // Changes kept in a cursor
+    static final int MAX_CHANGES = Integer.getInteger(ChangelogCollector.class.getName() + ".maxChanges", 1000);
+
+    private static final Logger LOGGER = Logger.getLogger(ChangelogCollector.class.getName());
+
+    // How to get the change sets of run types that predate RunWithSCM, looked up once per class
+    private static final ClassValue<Function<Run<?, ?>, List<ChangeLogSet<? extends Entry>>>> RESOLVERS =
+            new ClassValue<Function<Run<?, ?>, List<ChangeLogSet<? extends Entry>>>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                protected Function<Run<?, ?>, List<ChangeLogSet<? extends Entry>>> computeValue(Class<?> type) {
+                    final Method getChangeSets = findGetter(type, "getChangeSets", List.class);
+                    if (getChangeSets != null) {
+                        return run -> {
+                            final Object result = invoke(getChangeSets, run);
+                            if (result == null) {
+                                return null;
+                            }
+                            final List<ChangeLogSet<? extends Entry>> changeSets = new ArrayList<>();
+                            for (Object changeSet : (List<?>) result) {
+                                if (changeSet instanceof ChangeLogSet) {
+                                    changeSets.add((ChangeLogSet<? extends Entry>) changeSet);
+                                }
+                            }
+                            return changeSets;
+                        };
+                    }
+                    final Method getChangeSet = findGetter(type, "getChangeSet", ChangeLogSet.class);
+                    if (getChangeSet != null) {
+                        return run -> {
+                            final Object changeSet = invoke(getChangeSet, run);
+                            return changeSet == null
+                                    ? null
+                                    : Collections.<ChangeLogSet<? extends Entry>>singletonList(
+                                    (ChangeLogSet<? extends Entry>) changeSet);
+                        };
+                    }
+                    LOGGER.log(Level.FINE, "No change sets for runs of type {0}", type.getName());
+                    return run -> null;
+                }
+            };
+
+    private ChangelogCollector() {
+    }
+
+    /**
+     * @param sinceLastUpload whether to include the changes of earlier builds that did not upload.
+     * @return the changes, oldest first, as a cursor to store on {@code build}.
+     */
+    @Nonnull
+    static ChangelogCursor collect(@Nonnull Run<?, ?> build, boolean sinceLastUpload) {
+        // Builds whose own change sets count, newest first
+        final List<Run<?, ?>> runs = new ArrayList<>();
+        runs.add(build);
+        ChangelogCursor previous = null;
+        if (sinceLastUpload) {
+            Run<?, ?> run = build.getPreviousBuild();
+            for (int i = 0; run != null && i < MAX_LOOKBACK; i++) {
+                previous = run.getAction(ChangelogCursor.class);
+                if (previous != null || run.getAction(HockeyappBuildAction.class) != null) {
+                    break;
+                }
+                runs.add(run);
+                run = run.getPreviousBuild();
+            }
+        }
+        Collections.reverse(runs);
+
+        final Collector collector = new Collector();
+        if (previous != null && !previous.isUploaded()) {
+            collector.omitted = previous.getOmitted();
+            for (ChangelogCursor.Change change : previous.getChanges()) {
+                collector.add(change);
+            }
+        }
+        for (Run<?, ?> run : runs) {
+            for (ChangeLogSet<? extends Entry> changeLogSet : changeSetsOf(run)) {
+                collector.addAll(changeLogSet);
+            }
+        }
+        return new ChangelogCursor(new ArrayList<>(collector.changes), collector.omitted);
+    }
+
+    @Nonnull
+    static List<ChangelogCursor.Change> toChanges(@CheckForNull ChangeLogSet<? extends Entry> changeLogSet) {
+        final Collector collector = new Collector();
+        collector.deduplicate = false;
+        if (changeLogSet != null) {
+            collector.addAll(changeLogSet);
+        }
+        return new ArrayList<>(collector.changes);
+    }
+
+    /**
+     * The change sets of the run itself, without looking at its job or siblings.
+     */
+    @Nonnull
+    static List<ChangeLogSet<? extends Entry>> changeSetsOf(@Nonnull Run<?, ?> run) {
+        final List<ChangeLogSet<? extends Entry>> changeSets = run instanceof RunWithSCM
+                ? ((RunWithSCM<?, ?>) run).getChangeSets()
+                : RESOLVERS.get(run.getClass()).apply(run);
+        return changeSets == null ? Collections.<ChangeLogSet<? extends Entry>>emptyList() : changeSets;
+    }
+
+    @CheckForNull
+    private static Method findGetter(Class<?> type, String name, Class<?> returnType) {
+        try {
+            final Method method = type.getMethod(name);
+            return returnType.isAssignableFrom(method.getReturnType()) ? method : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @CheckForNull
+    private static Object invoke(Method method, Run<?, ?> run) {
+        try {
+            return method.invoke(run);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            LOGGER.log(Level.FINE, "Could not get the change sets of " + run, e);
+            return null;
+        }
+    }
+
+    private static final class Collector {
+        private final Deque<ChangelogCursor.Change> changes = new ArrayDeque<>();
+        private final Set<String> commitIds = new HashSet<>();
+        private boolean deduplicate = true;
+        private int omitted;
+
+        void addAll(ChangeLogSet<? extends Entry> changeLogSet) {
+            if (changeLogSet.isEmptySet()) {
+                return;
+            }
+            for (Entry entry : changeLogSet) {
+                add(new ChangelogCursor.Change(entry.getCommitId(), String.valueOf(entry.getAuthor()),
+                        entry.getMsg()));
+            }
+        }
+
+        void add(ChangelogCursor.Change change) {
+            if (deduplicate && change.getCommitId() != null && !commitIds.add(change.getCommitId())) {
+                return;
+            }
+            changes.addLast(change);
+            if (deduplicate && changes.size() > MAX_CHANGES) {
+                // Recent changes matter most
+                changes.removeFirst();
+                omitted++;
+            }
+        }
+    }
+}
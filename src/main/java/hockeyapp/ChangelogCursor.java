@@ -0,0 +1,72 @@
+package hockeyapp;
+
+import hudson.model.InvisibleAction;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes of a build that were meant for its HockeyApp release notes, including the ones left over by earlier
+ * builds that did not upload. The next build starts from here instead of walking back through the build history.
+ */
+public class ChangelogCursor extends InvisibleAction {
+
+    public static final class Change {
+        @CheckForNull
+        private final String commitId;
+        private final String author;
+        private final String msg;
+
+        Change(@CheckForNull String commitId, String author, String msg) {
+            this.commitId = commitId;
+            this.author = author;
+            this.msg = msg;
+        }
+
+        @CheckForNull
+        public String getCommitId() {
+            return commitId;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        public String getMsg() {
+            return msg;
+        }
+    }
+
+    private final List<Change> changes;
+    // Changes dropped to keep build.xml small
+    private final int omitted;
+    private boolean uploaded;
+
+    ChangelogCursor(@Nonnull List<Change> changes, int omitted) {
+        this.changes = new ArrayList<>(changes);
+        this.omitted = omitted;
+    }
+
+    @Nonnull
+    public List<Change> getChanges() {
+        return changes == null ? Collections.<Change>emptyList() : Collections.unmodifiableList(changes);
+    }
+
+    public int getOmitted() {
+        return omitted;
+    }
+
+    /**
+     * Whether the changes made it to HockeyApp, so that the next build does not list them again.
+     */
+    public boolean isUploaded() {
+        return uploaded;
+    }
+
+    void markUploaded() {
+        uploaded = true;
+    }
+}
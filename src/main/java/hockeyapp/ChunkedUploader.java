@@ -0,0 +1,313 @@
+package hockeyapp;
+
+import hudson.AbortException;
+import hudson.model.Computer;
+import hudson.model.Run;
+import jenkins.util.Timer;
+import net.hockeyapp.engine.CountingHttpEntity;
+import net.hockeyapp.engine.HockeyappResponse;
+import net.hockeyapp.engine.ThroughputHistory;
+import net.hockeyapp.engine.Transport;
+import net.hockeyapp.engine.UploadListener;
+import net.hockeyapp.engine.UploadWatchdog;
+import net.sf.json.JSONObject;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.json.simple.parser.ParseException;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads a release to App Center: the upload is begun, the artifact is sent as numbered chunks over several
+ * connections, then the upload is finished and committed.
+ * <p>
+ * A single multipart request goes over a single connection, whose throughput is capped by the latency of the link.
+ * Chunks are read from the local copy of the artifact by each connection on its own, a failed chunk is sent again
+ * without starting over.
+ */
+final class ChunkedUploader {
+
+    static final String ID = "id";
+    static final String UPLOAD_DOMAIN = "upload_domain";
+    static final String PACKAGE_ASSET_ID = "package_asset_id";
+    static final String URL_ENCODED_TOKEN = "url_encoded_token";
+    static final String CHUNK_SIZE = "chunk_size";
+    static final String UPLOAD_STATUS = "upload_status";
+    static final String ERROR_DETAILS = "error_details";
+    static final String RELEASE_DISTINCT_ID = "release_distinct_id";
+
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+    private static final long POLL_INTERVAL = Long.getLong(ChunkedUploader.class.getName() + ".pollInterval",
+            TimeUnit.SECONDS.toMillis(1));
+    // Once every chunk is in, App Center takes a while to process a large release
+    private static final long PROCESSING_TIMEOUT = TimeUnit.MINUTES.toMillis(
+            Long.getLong(ChunkedUploader.class.getName() + ".processingTimeoutMinutes", 10L));
+
+    private final UploadPlan plan;
+    private final UploadPlan.Chunking chunking;
+    private final Transport transport;
+    private final int timeoutMillis;
+    private final int stallTimeoutMillis;
+    private final PrintStream logger;
+
+    ChunkedUploader(@Nonnull UploadPlan plan, @Nonnull Transport transport, int timeoutMillis,
+                    int stallTimeoutMillis, @Nonnull PrintStream logger) {
+        final UploadPlan.Chunking chunking = plan.getChunking();
+        if (chunking == null) {
+            throw new IllegalArgumentException("Not a chunked upload");
+        }
+        this.plan = plan;
+        this.chunking = chunking;
+        this.transport = transport;
+        this.timeoutMillis = timeoutMillis;
+        this.stallTimeoutMillis = stallTimeoutMillis;
+        this.logger = logger;
+    }
+
+    static final class Release {
+        private final long id;
+        private final URL url;
+
+        private Release(long id, URL url) {
+            this.id = id;
+            this.url = url;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        URL getUrl() {
+            return url;
+        }
+    }
+
+    /**
+     * @throws AbortException if a request was rejected, with a message for the build log.
+     */
+    @Nonnull
+    Release upload(@Nonnull Run<?, ?> build, @Nonnull File file)
+            throws IOException, InterruptedException, URISyntaxException, ParseException {
+        final HttpClient httpclient = transport.client(plan.getHost());
+
+        // Begin
+        final HttpPost begin = new HttpPost(plan.getUrl().toURI());
+        begin.setEntity(new StringEntity("{}", ContentType.APPLICATION_JSON));
+        final HockeyappResponse upload = execute(httpclient, begin, ID, UPLOAD_DOMAIN, PACKAGE_ASSET_ID,
+                URL_ENCODED_TOKEN);
+        final String uploadId = require(upload, ID);
+        final URL uploadDomain = new URL(require(upload, UPLOAD_DOMAIN));
+        final String assetPath = "/upload/%s/" + require(upload, PACKAGE_ASSET_ID);
+        final String token = require(upload, URL_ENCODED_TOKEN);
+
+        final HttpPost metadata = new HttpPost(new URL(uploadDomain, String.format(assetPath, "set_metadata")
+                + "?file_name=" + URLEncoder.encode(file.getName(), "UTF-8") + "&file_size=" + file.length()
+                + "&token=" + token + "&content_type=application%2Foctet-stream").toURI());
+        final Long requestedChunkSize = execute(httpclient, metadata, CHUNK_SIZE).getLong(CHUNK_SIZE);
+        final int chunkSize = requestedChunkSize != null && requestedChunkSize > 0
+                ? (int) Math.min(requestedChunkSize, Integer.MAX_VALUE)
+                : chunking.getChunkSize();
+
+        sendChunks(build, file, uploadDomain, String.format(assetPath, "upload_chunk"), token, chunkSize);
+
+        // Finish and commit
+        final HttpPost finished = new HttpPost(
+                new URL(uploadDomain, String.format(assetPath, "finished") + "?token=" + token).toURI());
+        EntityUtils.consumeQuietly(send(httpclient, finished).getEntity());
+
+        final URL uploadUrl = new URL(plan.getUrl() + "/" + uploadId);
+        final HttpPatch commit = new HttpPatch(uploadUrl.toURI());
+        final JSONObject status = new JSONObject();
+        status.put(ID, uploadId);
+        status.put(UPLOAD_STATUS, "uploadFinished");
+        commit.setEntity(new StringEntity(status.toString(), ContentType.APPLICATION_JSON));
+        EntityUtils.consumeQuietly(send(httpclient, commit).getEntity());
+
+        final long releaseId = awaitRelease(httpclient, uploadUrl);
+        final URL releaseUrl = new URL(plan.getHost(), "/v0.1/apps/" + chunking.getOwnerName() + "/"
+                + chunking.getAppName() + "/releases/" + releaseId);
+        if (plan.getReleaseNotes() != null) {
+            final HttpPatch notes = new HttpPatch(releaseUrl.toURI());
+            final JSONObject details = new JSONObject();
+            details.put("release_notes", plan.getReleaseNotes());
+            notes.setEntity(new StringEntity(details.toString(), ContentType.APPLICATION_JSON));
+            EntityUtils.consumeQuietly(send(httpclient, notes).getEntity());
+        }
+        return new Release(releaseId, releaseUrl);
+    }
+
+    private void sendChunks(Run<?, ?> build, File file, URL uploadDomain, String chunkPath, String token,
+                            int chunkSize) throws IOException, InterruptedException {
+        final long length = file.length();
+        final int chunks = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+        final int connections = Math.min(chunking.getParallelism(), chunks);
+        logger.println(Messages.CHUNKED_UPLOAD(file.getName(), chunks, connections));
+
+        final AtomicInteger nextBlock = new AtomicInteger(1);
+        final AtomicLong bytesSent = new AtomicLong();
+        final UploadListener listener = new BuildUploadListener(build, logger);
+        listener.started(file.getName(), uploadDomain.getHost(), length);
+        final long startTime = System.currentTimeMillis();
+        final List<Future<Void>> workers = new ArrayList<>(connections);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < connections; i++) {
+                workers.add(Computer.threadPoolForRemoting.submit(() -> {
+                    final HttpClient httpclient = transport.client(uploadDomain);
+                    final ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+                    int block;
+                    while ((block = nextBlock.getAndIncrement()) <= chunks) {
+                        buffer.clear();
+                        final long position = (long) (block - 1) * chunkSize;
+                        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                            // Positional reads, the channel is shared by all connections
+                        }
+                        final URL chunkUrl = new URL(uploadDomain, chunkPath + "?token=" + token
+                                + "&block_number=" + block);
+                        sendChunk(httpclient, chunkUrl, block, buffer.array(), buffer.position(), listener);
+                        synchronized (listener) {
+                            listener.progress(bytesSent.addAndGet(buffer.position()));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                await(worker, nextBlock, chunks, workers);
+            }
+        } finally {
+            listener.finished();
+        }
+        ThroughputHistory.record(uploadDomain.getHost(), length, System.currentTimeMillis() - startTime);
+    }
+
+    private void sendChunk(HttpClient httpclient, URL chunkUrl, int block, byte[] chunk, int length,
+                           UploadListener listener) throws IOException, InterruptedException, URISyntaxException {
+        for (int attempt = 0; ; attempt++) {
+            final HttpPost httpPost = new HttpPost(chunkUrl.toURI());
+            final CountingHttpEntity entity = new CountingHttpEntity(
+                    new ByteArrayEntity(chunk, 0, length, ContentType.APPLICATION_OCTET_STREAM));
+            httpPost.setEntity(entity);
+            final long deadline = ThroughputHistory.deadlineMillis(chunkUrl.getHost(), length, timeoutMillis);
+            String error;
+            try (UploadWatchdog ignored = UploadWatchdog.watch(Timer.get(), httpPost, entity, stallTimeoutMillis,
+                    deadline, listener)) {
+                final HttpResponse response = httpclient.execute(httpPost);
+                final int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode / 100 == 2) {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                    return;
+                }
+                error = Messages.UNEXPECTED_RESPONSE_CODE(statusCode) + " "
+                        + HockeyappResponse.readErrorBody(response.getEntity());
+                // Only the server having trouble is worth another attempt
+                if (statusCode < 500 && statusCode != 429) {
+                    throw new AbortException(Messages.CHUNK_FAILED(block, attempt + 1, error));
+                }
+            } catch (AbortException e) {
+                throw e;
+            } catch (IOException e) {
+                error = e.toString();
+            }
+            if (attempt >= chunking.getChunkRetries()) {
+                throw new AbortException(Messages.CHUNK_FAILED(block, attempt + 1, error));
+            }
+            logger.println(Messages.CHUNK_RETRY(block, error));
+            Thread.sleep(RETRY_DELAY * (attempt + 1));
+        }
+    }
+
+    private static void await(Future<Void> worker, AtomicInteger nextBlock, int chunks, List<Future<Void>> workers)
+            throws IOException, InterruptedException {
+        try {
+            worker.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // No point in sending the rest
+            nextBlock.set(chunks + 1);
+            for (Future<Void> other : workers) {
+                other.cancel(true);
+            }
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private long awaitRelease(HttpClient httpclient, URL uploadUrl)
+            throws IOException, InterruptedException, URISyntaxException, ParseException {
+        final long deadline = System.currentTimeMillis() + Math.max(timeoutMillis, PROCESSING_TIMEOUT);
+        while (true) {
+            final HockeyappResponse status = execute(httpclient, new HttpGet(uploadUrl.toURI()), UPLOAD_STATUS,
+                    ERROR_DETAILS, RELEASE_DISTINCT_ID);
+            final String uploadStatus = status.getString(UPLOAD_STATUS);
+            final Long releaseId = status.getLong(RELEASE_DISTINCT_ID);
+            if ("readyToBeReleased".equals(uploadStatus) && releaseId != null) {
+                return releaseId;
+            } else if ("error".equals(uploadStatus)) {
+                throw new AbortException(Messages.RELEASE_FAILED(status.getString(ERROR_DETAILS)));
+            } else if (System.currentTimeMillis() > deadline) {
+                throw new AbortException(Messages.RELEASE_FAILED(uploadStatus));
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+    private HockeyappResponse execute(HttpClient httpclient, HttpRequestBase request, String... fields)
+            throws IOException, ParseException {
+        return HockeyappResponse.read(send(httpclient, request).getEntity(), fields);
+    }
+
+    /**
+     * @return the response, its entity not consumed yet.
+     * @throws AbortException if the request was not successful.
+     */
+    private HttpResponse send(HttpClient httpclient, HttpRequestBase request) throws IOException {
+        request.setHeader("X-API-Token", plan.getApiToken());
+        final HttpResponse response = httpclient.execute(request);
+        final int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode / 100 != 2) {
+            throw new AbortException(Messages.UNEXPECTED_RESPONSE_CODE(statusCode) + "\n"
+                    + HockeyappResponse.readErrorBody(response.getEntity()));
+        }
+        return response;
+    }
+
+    @Nonnull
+    private static String require(HockeyappResponse response, String field) throws AbortException {
+        final Object value = response.get(field);
+        if (value == null) {
+            throw new AbortException("Missing " + field + " in response: " + response);
+        }
+        return value.toString();
+    }
+}
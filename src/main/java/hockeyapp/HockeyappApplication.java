@@ -15,7 +15,9 @@ import net.hockeyapp.jenkins.releaseNotes.ChangelogReleaseNotes;
 import net.hockeyapp.jenkins.releaseNotes.FileReleaseNotes;
 import net.hockeyapp.jenkins.releaseNotes.ManualReleaseNotes;
 import net.hockeyapp.jenkins.releaseNotes.NoReleaseNotes;
+import net.hockeyapp.jenkins.releaseNotes.TemplateReleaseNotes;
 import net.hockeyapp.jenkins.uploadMethod.AppCreation;
+import net.hockeyapp.jenkins.uploadMethod.ChunkedUpload;
 import net.hockeyapp.jenkins.uploadMethod.VersionCreation;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -134,7 +136,7 @@ public class HockeyappApplication implements Describable<HockeyappApplication> {
 
         @SuppressWarnings("unused")
         public List<RadioButtonSupportDescriptor> getReleaseNotesMethodList() {
-            List<RadioButtonSupportDescriptor> releaseNotesMethods = new ArrayList<RadioButtonSupportDescriptor>(4);
+            List<RadioButtonSupportDescriptor> releaseNotesMethods = new ArrayList<RadioButtonSupportDescriptor>(5);
             final Jenkins activeInstance = Jenkins.getActiveInstance();
             releaseNotesMethods.add(
                     (RadioButtonSupportDescriptor) activeInstance.getDescriptorOrDie(NoReleaseNotes.class));
@@ -144,15 +146,18 @@ public class HockeyappApplication implements Describable<HockeyappApplication> {
                     (RadioButtonSupportDescriptor) activeInstance.getDescriptorOrDie(FileReleaseNotes.class));
             releaseNotesMethods.add(
                     (RadioButtonSupportDescriptor) activeInstance.getDescriptorOrDie(ManualReleaseNotes.class));
+            releaseNotesMethods.add(
+                    (RadioButtonSupportDescriptor) activeInstance.getDescriptorOrDie(TemplateReleaseNotes.class));
             return releaseNotesMethods;
         }
 
         @SuppressWarnings("unused")
         public List<RadioButtonSupportDescriptor> getUploadMethodList() {
-            List<RadioButtonSupportDescriptor> uploadMethods = new ArrayList<RadioButtonSupportDescriptor>(2);
+            List<RadioButtonSupportDescriptor> uploadMethods = new ArrayList<RadioButtonSupportDescriptor>(3);
             Jenkins activeInstance = Jenkins.getActiveInstance();
             uploadMethods.add((RadioButtonSupportDescriptor) activeInstance.getDescriptorOrDie(AppCreation.class));
             uploadMethods.add((RadioButtonSupportDescriptor) activeInstance.getDescriptorOrDie(VersionCreation.class));
+            uploadMethods.add((RadioButtonSupportDescriptor) activeInstance.getDescriptorOrDie(ChunkedUpload.class));
             return uploadMethods;
         }
 
@@ -0,0 +1,80 @@
+package hockeyapp;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import hudson.util.Secret;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Another HockeyApp compatible server that receives the same artifacts as the applications of a recorder.
+ */
+@ExportedBean
+public class HockeyappMirror extends AbstractDescribableImpl<HockeyappMirror> {
+
+    @Exported
+    private final String baseUrl;
+
+    private final Secret apiToken;
+
+    // null to use the App ID of the application
+    @Exported
+    @CheckForNull
+    private String appId;
+
+    @DataBoundConstructor
+    public HockeyappMirror(String baseUrl, String apiToken) {
+        this.baseUrl = Util.fixEmptyAndTrim(baseUrl);
+        this.apiToken = Secret.fromString(apiToken);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public Secret getApiToken() {
+        return apiToken;
+    }
+
+    @CheckForNull
+    public String getAppId() {
+        return appId;
+    }
+
+    @DataBoundSetter
+    public void setAppId(@CheckForNull String appId) {
+        this.appId = Util.fixEmptyAndTrim(appId);
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<HockeyappMirror> {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return Messages.MIRROR();
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckBaseUrl(@QueryParameter String value) {
+            if (value == null || value.isEmpty()) {
+                return FormValidation.error("You must enter the URL of the mirror.");
+            } else if (!(value.startsWith("http://") || value.startsWith("https://"))) {
+                return FormValidation.error("Must use http or https protocol.");
+            } else if (value.endsWith("/")) {
+                return FormValidation.error("Must not end with / character.");
+            } else {
+                return FormValidation.ok();
+            }
+        }
+    }
+}
@@ -1,19 +1,17 @@
 package hockeyapp;
 
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
-import hudson.ProxyConfiguration;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.BuildListener;
-import hudson.model.EnvironmentContributingAction;
-import hudson.model.Item;
-import hudson.model.ItemGroup;
-import hudson.model.Job;
+import hudson.model.Computer;
 import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
@@ -28,43 +26,31 @@ import hudson.util.RunList;
 import hudson.util.Secret;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
+import jenkins.util.Timer;
+import net.hockeyapp.engine.ArtifactSource;
+import net.hockeyapp.engine.HockeyappResponse;
+import net.hockeyapp.engine.HockeyappUploader;
+import net.hockeyapp.engine.ReusingTransport;
+import net.hockeyapp.engine.Transport;
+import net.hockeyapp.engine.UploadListener;
+import net.hockeyapp.engine.UploadRequest;
+import net.hockeyapp.engine.UploadResult;
+import net.hockeyapp.engine.UploadScheduler;
+import net.hockeyapp.jenkins.releaseNotes.ChangelogReleaseNotes;
 import net.hockeyapp.jenkins.releaseNotes.FileReleaseNotes;
 import net.hockeyapp.jenkins.releaseNotes.ManualReleaseNotes;
-import net.hockeyapp.jenkins.uploadMethod.AppCreation;
-import net.hockeyapp.jenkins.uploadMethod.VersionCreation;
+import net.hockeyapp.jenkins.releaseNotes.ReleaseNotesTemplate;
+import net.hockeyapp.jenkins.releaseNotes.TemplateReleaseNotes;
 import net.sf.json.JSONObject;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.iterators.ArrayIterator;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.Consts;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
-import org.apache.http.HttpResponse;
-import org.apache.http.NameValuePair;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.Credentials;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpPut;
-import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.mime.MultipartEntity;
-import org.apache.http.entity.mime.content.FileBody;
-import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.jenkinsci.Symbol;
-import org.jenkinsci.plugins.workflow.job.WorkflowRun;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -74,36 +60,27 @@ import org.kohsuke.stapler.export.Exported;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
 
     public static final long SCHEMA_VERSION_NUMBER = 2L;
     public static final String DEFAULT_HOCKEY_URL = "https://rink.hockeyapp.net";
     public static final int DEFAULT_TIMEOUT = 60000;
-    private static final String UTF8 = "UTF-8";
-    private static final Charset DEFAULT_CHARACTER_SET = StandardCharsets.UTF_8;
-    private static final ContentType DEFAULT_CONTENT_TYPE = ContentType.create("text/plain", Consts.UTF_8);
+    public static final int DEFAULT_STALL_TIMEOUT = 120000;
     @Exported
     public final List<HockeyappApplication> applications;
     @Exported
@@ -113,11 +90,26 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
     public String baseUrl;
     @Exported
     public boolean failGracefully;
+    @Exported
+    public boolean dryRun;
+    @Exported
+    @CheckForNull
+    public List<HockeyappMirror> mirrors;
+    @Exported
+    @CheckForNull
+    public Integer sizeGrowthThreshold;
+    @Exported
+    @CheckForNull
+    public Integer throughputDropThreshold;
     public BaseUrlHolder baseUrlHolder;
+    // 0 when loaded from a configuration saved before the version was recorded
+    @XStreamAsAttribute
+    long schemaVersion;
 
     @Deprecated
     public HockeyappRecorder(@CheckForNull List<HockeyappApplication> applications, boolean debugMode,
                              @CheckForNull BaseUrlHolder baseUrlHolder, boolean failGracefully) {
+        this.schemaVersion = SCHEMA_VERSION_NUMBER;
         this.applications = Util.fixNull(applications);
         this.debugMode = debugMode;
         this.baseUrlHolder = baseUrlHolder;
@@ -129,6 +121,7 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
 
     @DataBoundConstructor
     public HockeyappRecorder(@CheckForNull List<HockeyappApplication> applications) {
+        this.schemaVersion = SCHEMA_VERSION_NUMBER;
         this.applications = Util.fixNull(applications);
     }
 
@@ -170,6 +163,51 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
         this.failGracefully = failGracefully;
     }
 
+    public boolean getDryRun() {
+        return dryRun;
+    }
+
+    @DataBoundSetter
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    @Nonnull
+    public List<HockeyappMirror> getMirrors() {
+        return mirrors == null ? Collections.emptyList() : mirrors;
+    }
+
+    @DataBoundSetter
+    public void setMirrors(@CheckForNull List<HockeyappMirror> mirrors) {
+        this.mirrors = mirrors == null || mirrors.isEmpty() ? null : new ArrayList<>(mirrors);
+    }
+
+    /**
+     * @return the growth of the artifact size, in percent of the previous upload, that marks the build unstable.
+     */
+    @CheckForNull
+    public Integer getSizeGrowthThreshold() {
+        return sizeGrowthThreshold;
+    }
+
+    @DataBoundSetter
+    public void setSizeGrowthThreshold(@CheckForNull Integer sizeGrowthThreshold) {
+        this.sizeGrowthThreshold = sizeGrowthThreshold;
+    }
+
+    /**
+     * @return the drop of the throughput, in percent of the previous upload, that marks the build unstable.
+     */
+    @CheckForNull
+    public Integer getThroughputDropThreshold() {
+        return throughputDropThreshold;
+    }
+
+    @DataBoundSetter
+    public void setThroughputDropThreshold(@CheckForNull Integer throughputDropThreshold) {
+        this.throughputDropThreshold = throughputDropThreshold;
+    }
+
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl) super.getDescriptor();
@@ -193,55 +231,20 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
     }
 
     // create an httpclient with some default settings, including socket timeouts
-    // note that this doesn't solve potential write timeouts
-    // http://stackoverflow.com/questions/1338885/java-socket-output-stream-writes-do-they-block
+    // note that this doesn't solve potential write timeouts, uploads are guarded by an UploadWatchdog for that
     private HttpClient createPreconfiguredHttpClient(URL url, PrintStream logger) {
-        final Jenkins instance = Jenkins.getInstance();
-
         DefaultHttpClient httpclient = new DefaultHttpClient();
         HttpParams params = httpclient.getParams();
         HttpConnectionParams.setConnectionTimeout(params, this.getDescriptor().getTimeoutInt());
         HttpConnectionParams.setSoTimeout(params, this.getDescriptor().getTimeoutInt());
 
-        boolean hasProxy = instance.proxy != null;
-
-        // ProxyConfig might have no proxy exception for certain hosts
-        boolean useProxy = true;
-        String matchedPattern = null; // to log properly
-        if (hasProxy) {
-            List<Pattern> noProxyHostPatterns = instance.proxy.getNoProxyHostPatterns();
-            for (Pattern noProxyPattern : noProxyHostPatterns) {
-                if (noProxyPattern.matcher(url.getHost()).matches()) {
-                    useProxy = false;
-                    matchedPattern = noProxyPattern.toString();
-                }
-            }
-        }
-
-        // Proxy setting, we have a Proxy _and_ the provided URL does not match any no-proxy-override
-        if (hasProxy && useProxy) {
-            ProxyConfiguration configuration = instance.proxy;
-
-            if (configuration.getUserName() != null && !configuration.getUserName().isEmpty()
-                    && configuration.getPassword() != null && !configuration.getPassword().isEmpty()) {
-                Credentials credentials = new UsernamePasswordCredentials(configuration.getUserName(), configuration.getPassword());
-                CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-                credentialsProvider.setCredentials(new AuthScope(configuration.name, configuration.port), credentials);
-                httpclient.getCredentialsProvider().setCredentials(new AuthScope(configuration.name, configuration.port), credentials);
-            }
-
-            HttpHost proxy = new HttpHost(configuration.name, configuration.port);
-            httpclient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
-        }
+        // Proxy setting, decided once per host until the proxy configuration changes
+        ProxyRoutes.Route route = ProxyRoutes.resolve(url.getHost());
+        route.applyTo(httpclient);
 
         // Logging output
-        logger.format("Proxy Settings: For the URL [%s] %n", url)
-                .format("  Found proxy configuration [%s] %n", hasProxy);
-        if (hasProxy) {
-            logger.format("  Used proxy configuration  [%s] %n", useProxy);
-            if (matchedPattern != null) {
-                logger.format("  Found matching Proxy exception rule [%s] %n", matchedPattern);
-            }
+        if (isDebugEnabled()) {
+            route.log(url.toString(), logger);
         }
 
         return httpclient;
@@ -256,11 +259,20 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
         }
 
 
-        boolean result = true;
-        for (HockeyappApplication application : applications) {
-            result &= performForApplication(build, filePath, build.getEnvironment(listener), launcher, listener.getLogger(), application);
+        boolean uploaded = true;
+        boolean finished = false;
+        UploadStagingArea.acquire(build);
+        try {
+            for (HockeyappApplication application : applications) {
+                uploaded &= performForApplication(build, filePath, build.getEnvironment(listener), launcher, listener.getLogger(), application);
+            }
+            finished = true;
+        } finally {
+            releaseStagingArea(build, finished && uploaded);
         }
-        if (!result) {
+        if (uploaded) {
+            markChangelogUploaded(build);
+        } else if (!this.failGracefully) {
             build.setResult(Result.FAILURE);
         }
     }
@@ -273,223 +285,278 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
             return false;
         }
 
-        boolean result = true;
-        for (HockeyappApplication application : applications) {
-            final FilePath workspace = build.getWorkspace();
-
-            if (workspace != null) {
-                try {
-                    result &= performForApplication(build, workspace, build.getEnvironment(listener), launcher, listener.getLogger(), application);
-                } catch (Exception e) {
-                    e.printStackTrace(listener.getLogger());
+        boolean uploaded = true;
+        boolean finished = false;
+        UploadStagingArea.acquire(build);
+        try {
+            for (HockeyappApplication application : applications) {
+                final FilePath workspace = build.getWorkspace();
+
+                if (workspace != null) {
+                    try {
+                        uploaded &= performForApplication(build, workspace, build.getEnvironment(listener), launcher, listener.getLogger(), application);
+                    } catch (Exception e) {
+                        e.printStackTrace(listener.getLogger());
+                        uploaded = false;
+                        return false;
+                    }
+                } else {
+                    uploaded = false;
                     return false;
                 }
-            } else {
-                return false;
             }
+            finished = true;
+        } finally {
+            releaseStagingArea(build, finished && uploaded);
         }
-        return result;
+        if (uploaded) {
+            markChangelogUploaded(build);
+        }
+        return uploaded || this.failGracefully;
+    }
+
+    /**
+     * Staged copies are only dropped once every upload of the build is done, a failure that was handled gracefully
+     * or an aborted step leaves them for a retry.
+     */
+    private static void releaseStagingArea(Run<?, ?> build, boolean finished) {
+        UploadStagingArea.release(build, finished && UploadJournal.isSettled(build));
     }
 
+    /**
+     * @return whether everything of the application was uploaded. A failure is reported as such also when it should
+     * not fail the build, the callers decide on the build result with {@link #failGracefully}.
+     */
     private boolean performForApplication(Run<?, ?> build, FilePath workspace, EnvVars vars, Launcher launcher, PrintStream logger, HockeyappApplication application) {
 
         logger.println(Messages.UPLOADING_TO_HOCKEYAPP());
+        if (dryRun) {
+            logger.println(Messages.DRY_RUN());
+        }
         File tempDir = null;
+        // A dry run must not make later attempts of this build skip their uploads
+        UploadJournal journal = dryRun ? UploadJournal.detached() : UploadJournal.open(build);
+        PhaseTimings timings = new PhaseTimings();
+        // Mirror uploads still running, awaited before the local copies are deleted
+        List<Future<MirrorUploadAction>> mirrorUploads = new ArrayList<>();
+        // One client per host for the whole application, the upload goes through the connection the preflight opened
+        ReusingTransport transport = new ReusingTransport(url -> createPreconfiguredHttpClient(url, logger));
+        HockeyappUploader uploader = createUploader(transport);
         try {
+            // Everything that does not depend on the artifact, checked before anything is copied
+            UploadPlan plan = UploadPlan.resolve(application, applications.indexOf(application), vars,
+                    createHostUrl(vars), fetchApiToken(application));
+            timings.lap("resolve");
+            if (application.releaseNotesMethod != null && !plan.isSymbolsOnly()) {
+                plan = plan.withReleaseNotes(createReleaseNotes(build, workspace, logger, vars, application));
+                timings.lap("release notes");
+            }
+            List<UploadPlan> mirrorPlans = new ArrayList<>();
+            for (HockeyappMirror mirror : getMirrors()) {
+                mirrorPlans.add(plan.forMirror(new URL(vars.expand(mirror.getBaseUrl())),
+                        vars.expand(Secret.toString(mirror.getApiToken())),
+                        mirror.getAppId() == null ? null : vars.expand(mirror.getAppId())));
+            }
+            if (plan.isSymbolsOnly()) {
+                return uploadSymbols(build, workspace, launcher, logger, plan);
+            }
 
             // Copy remote file to local file system.
             tempDir = File.createTempFile("jtf", null);
             if (tempDir.delete() && tempDir.mkdirs()) {
                 FilePath remoteWorkspace = new FilePath(launcher.getChannel(), workspace.getRemote());
-                FilePath[] remoteFiles = remoteWorkspace.list(vars.expand(application.filePath));
+                FilePath[] remoteFiles = remoteWorkspace.list(plan.getFilePath());
+                timings.lap("list");
                 if (remoteFiles.length == 0) {
-                    logger.println("No IPA/APK found to upload in: " + vars.expand(application.filePath));
-                    return this.failGracefully;
+                    logger.println("No IPA/APK found to upload in: " + plan.getFilePath());
+                    return false;
                 }
 
+                int appIndex = plan.getAppIndex();
+                boolean preflightDone = false;
                 ArrayIterator remoteFilesIterator = new ArrayIterator(remoteFiles);
                 while (remoteFilesIterator.hasNext()) {
                     FilePath remoteFile = (FilePath) remoteFilesIterator.next();
-                    File file = getLocalFileFromFilePath(remoteFile, tempDir);
-                    logger.println(file);
-
-                    float fileSize = file.length();
-
-                    if (application.uploadMethod == null) {
-                        logger.println("No upload method specified!");
-                        return this.failGracefully;
+                    long remoteLength = remoteFile.length();
+                    UploadJournal.Entry journalEntry = journal.find(appIndex, plan.getTarget(), remoteFile.getRemote(),
+                            remoteLength);
+                    if (journalEntry != null && journalEntry.getPhase() == UploadJournal.Phase.COMPLETED) {
+                        // A previous attempt of this build already got it to HockeyApp
+                        logger.println("Already uploaded, not sending again: " + remoteFile.getRemote());
+                        recordUpload(build, logger, !journalEntry.isRecorded(), false,
+                                new HockeyappUploadRecord.Upload(appIndex, remoteFile.getName(),
+                                        journalEntry.getVersionId(), journalEntry.getConfigUrl(),
+                                        journalEntry.getPublicUrl(), remoteLength, 0));
+                        journal.recorded(journalEntry);
+                        continue;
                     }
 
-                    HttpInfo info = getHttpInfo(logger, vars, application);
-                    String path = info.getPath();
-                    URL host = createHostUrl(vars);
-                    URL url = new URL(host, path);
-
-                    HttpClient httpclient = createPreconfiguredHttpClient(url, logger);
-
-                    HttpEntityEnclosingRequestBase httpRequest = info.getMethod().equals(HttpPut.METHOD_NAME)
-                            ? new HttpPut(url.toURI())
-                            : new HttpPost(url.toURI());
-
-                    FileBody fileBody = new FileBody(file);
-                    final Secret secret = fetchApiToken(application);
-                    httpRequest.setHeader("X-HockeyAppToken", vars.expand(Secret.toString(secret)));
-                    MultipartEntity entity = new MultipartEntity();
-
-                    if (application.releaseNotesMethod != null) {
-                        createReleaseNotes(build, workspace, entity, logger, tempDir, vars, application);
+                    // Check the upload target and connect to it while the artifact is being copied from the agent,
+                    // later artifacts reuse the connection of the previous upload
+                    final File transferDir = tempDir;
+                    Future<File> transfer = Computer.threadPoolForRemoting.submit(
+                            () -> getLocalFileFromFilePath(build, remoteFile, transferDir, logger));
+                    if (!preflightDone && !dryRun && plan.getChunking() == null) {
+                        preflightDone = true;
+                        String preflightError = uploader.preflight(plan.getHost(), plan.getApiToken(),
+                                plan.getAppId(), plan.getVersionCode(), new BuildUploadListener(build, logger));
+                        if (preflightError != null) {
+                            transfer.cancel(true);
+                            logger.println(preflightError);
+                            return false;
+                        }
+                    }
+                    File file = awaitTransfer(transfer);
+                    timings.lap("transfer");
+                    logger.println(file);
+                    journalEntry = journal.staged(appIndex, plan.getTarget(), remoteFile.getRemote(), remoteLength,
+                            file);
+
+                    if (plan.getChunking() != null) {
+                        journal.uploading(journalEntry, null);
+                        timings.lap("prepare");
+                        String configUrl;
+                        long duration;
+                        // A dry run in chunks sends nothing at all
+                        try (UploadScheduler.Permit ignored = dryRun ? null : awaitTurn(file.length(), logger)) {
+                            timings.lap("queue");
+                            long startTime = System.currentTimeMillis();
+                            configUrl = uploadInChunks(build, plan, file, logger);
+                            duration = System.currentTimeMillis() - startTime;
+                        }
+                        timings.lap("upload");
+                        journal.completed(journalEntry, null, configUrl, null, null);
+                        recordUpload(build, logger, true, true, new HockeyappUploadRecord.Upload(appIndex,
+                                file.getName(), null, configUrl, null, file.length(), duration));
+                        journal.recorded(journalEntry);
+                        timings.lap("response");
+                        continue;
                     }
 
+                    float fileSize = file.length();
 
-                    entity.addPart("ipa", fileBody);
-
-                    if (application.dsymPath != null && !vars.expand(application.dsymPath).isEmpty()) {
-                        FilePath remoteDsymFiles[] = remoteWorkspace.list(vars.expand(application.dsymPath));
+                    final File dsymFile;
+                    if (plan.getDsymPath() != null) {
+                        FilePath remoteDsymFiles[] = remoteWorkspace.list(plan.getDsymPath());
                         // Take the first one that matches the pattern
                         if (remoteDsymFiles.length == 0) {
-                            logger.println("No dSYM found to upload in: " + vars.expand(application.dsymPath));
-                            return this.failGracefully;
+                            logger.println("No dSYM found to upload in: " + plan.getDsymPath());
+                            return false;
                         }
-                        File dsymFile = getLocalFileFromFilePath(remoteDsymFiles[0], tempDir);
+                        dsymFile = getLocalFileFromFilePath(build, remoteDsymFiles[0], tempDir, logger);
                         logger.println(dsymFile);
-                        FileBody dsymFileBody = new FileBody(dsymFile);
-                        entity.addPart("dsym", dsymFileBody);
+                    } else {
+                        dsymFile = null;
                     }
 
-                    if (application.libsPath != null && !vars.expand(application.libsPath).isEmpty()) {
-                        FilePath remoteLibsFiles[] = remoteWorkspace.list(vars.expand(application.libsPath));
+                    final File libsFile;
+                    if (plan.getLibsPath() != null) {
+                        FilePath remoteLibsFiles[] = remoteWorkspace.list(plan.getLibsPath());
                         // Take the first one that matches the pattern
                         if (remoteLibsFiles.length == 0) {
-                            logger.println("No LIBS found to upload in: " + vars.expand(application.libsPath));
-                            return this.failGracefully;
+                            logger.println("No LIBS found to upload in: " + plan.getLibsPath());
+                            return false;
                         }
-                        File libsFile = getLocalFileFromFilePath(remoteLibsFiles[0], tempDir);
+                        libsFile = getLocalFileFromFilePath(build, remoteLibsFiles[0], tempDir, logger);
                         logger.println(libsFile);
-                        FileBody libsFileBody = new FileBody(libsFile);
-                        entity.addPart("libs", libsFileBody);
+                    } else {
+                        libsFile = null;
                     }
+                    timings.lap("transfer");
 
-                    if (application.tags != null && !vars.expand(application.tags).isEmpty() && application.tags.length() > 0)
-                        entity.addPart("tags", new StringBody(vars.expand(application.tags), DEFAULT_CONTENT_TYPE));
-
-                    entity.addPart("mandatory", new StringBody(application.mandatory ? "1" : "0", DEFAULT_CONTENT_TYPE));
-
-                    if (application.teams != null && !vars.expand(application.teams).isEmpty() && application.teams.length() > 0)
-                        entity.addPart("teams", new StringBody(vars.expand(application.teams), DEFAULT_CONTENT_TYPE));
-
-                    entity.addPart("notify", new StringBody(application.notifyTeam ? "1" : "0", DEFAULT_CONTENT_TYPE));
-                    entity.addPart("status", new StringBody(application.downloadAllowed ? "2" : "1", DEFAULT_CONTENT_TYPE));
-                    if (application.uploadMethod instanceof AppCreation) {
-                        AppCreation appCreation = (AppCreation) application.uploadMethod;
-                        entity.addPart("private", new StringBody(appCreation.publicPage ? "false" : "true", DEFAULT_CONTENT_TYPE));
+                    // Mirrors read the same local copies on their own, a slow one does not hold up HockeyApp
+                    for (UploadPlan mirrorPlan : mirrorPlans) {
+                        mirrorUploads.add(Computer.threadPoolForRemoting.submit(
+                                () -> uploadToMirror(build, mirrorPlan, file, dsymFile, libsFile, logger)));
                     }
-                    httpRequest.setEntity(entity);
-
-                    long startTime = System.currentTimeMillis();
-                    HttpResponse response = httpclient.execute(httpRequest);
-                    long duration = System.currentTimeMillis() - startTime;
-
-                    printUploadSpeed(duration, fileSize, logger);
 
-                    HttpEntity resEntity = response.getEntity();
-
-                    InputStream is = resEntity.getContent();
-
-                    String responseBody = IOUtils.toString(is, DEFAULT_CHARACTER_SET);
-                    // Improved error handling.
-                    if (response.getStatusLine().getStatusCode() != 201) {
-                        logger.println(
-                                Messages.UNEXPECTED_RESPONSE_CODE(response.getStatusLine().getStatusCode()));
-                        logger.println(responseBody);
-                        return this.failGracefully;
-                    } else if (isDebugEnabled()) { // DEBUG MODE output
-                        logger.println("RESPONSE: " + responseBody);
+                    UploadRequest uploadRequest = createUploadRequest(plan, file, dsymFile, libsFile);
+                    journal.uploading(journalEntry, plan.getAppId());
+                    timings.lap("prepare");
+                    UploadListener uploadListener = new BuildUploadListener(build, logger);
+                    UploadResult result;
+                    if (dryRun) {
+                        result = uploader.discard(uploadRequest, uploadListener);
+                    } else {
+                        long uploadSize = file.length() + (dsymFile == null ? 0 : dsymFile.length())
+                                + (libsFile == null ? 0 : libsFile.length());
+                        try (UploadScheduler.Permit ignored = awaitTurn(uploadSize, logger)) {
+                            timings.lap("queue");
+                            result = uploader.upload(uploadRequest, uploadListener);
+                        }
                     }
-
-                    JSONParser parser = new JSONParser();
-
-                    final Map parsedMap = (Map) parser.parse(responseBody);
-
-
-                    String buildId = Long.toString((Long) parsedMap.get("id"));
-
-                    HockeyappBuildAction installAction = new HockeyappBuildAction();
-                    EnvAction envData = new EnvAction();
-                    int appIndex = applications.indexOf(application);
-
-                    HockeyappBuildAction configureAction = new HockeyappBuildAction();
-                    String configUrl = (String) parsedMap.get("config_url");
-                    configureAction.displayName = Messages.HOCKEYAPP_CONFIG_LINK();
-                    configureAction.iconFileName = "gear2.gif";
-                    configureAction.urlName = configUrl;
-                    build.addAction(configureAction);
-
-                    if (appIndex == 0) {
-                        envData.add("HOCKEYAPP_CONFIG_URL", configUrl);
-                        logger.println("HOCKEYAPP_CONFIG_URL: " + configUrl);
+                    timings.lap("upload");
+                    printUploadSpeed(result.getDurationMillis(), fileSize, logger);
+
+                    HockeyappResponse uploadResponse = result.getResponse();
+                    if (!result.isSuccessful()) {
+                        logger.println(Messages.UNEXPECTED_RESPONSE_CODE(result.getStatusCode()));
+                        logger.println(result.getErrorBody());
+                        return false;
+                    } else if (uploadResponse == null) {
+                        logger.println(Messages.DRY_RUN_DISCARDED(result.getBytesSent(), plan.getUrl()));
+                        uploadResponse = HockeyappResponse.read(new StringReader(createDryRunResponse(plan.getHost())),
+                                HockeyappResponse.UPLOAD_FIELDS);
                     }
-
-                    envData.add("HOCKEYAPP_CONFIG_URL_" + appIndex, configUrl);
-                    logger.println("HOCKEYAPP_CONFIG_URL_" + appIndex + ": " + configUrl);
-
-                    String publicUrl = (String) parsedMap.get("public_url");
-                    if (publicUrl != null) {
-                        final String appVersion = configUrl.substring(configUrl.indexOf("/app_versions/"));
-                        String installUrl = publicUrl + appVersion;
-                        installAction.displayName = Messages.HOCKEYAPP_INSTALL_LINK();
-                        installAction.iconFileName = "package.gif";
-                        installAction.urlName = installUrl;
-                        build.addAction(installAction);
-
-                        if (appIndex == 0) {
-                            envData.add("HOCKEYAPP_INSTALL_URL", installUrl);
-                            logger.println("HOCKEYAPP_INSTALL_URL: " + installUrl);
-                        }
-
-                        envData.add("HOCKEYAPP_INSTALL_URL_" + appIndex, installUrl);
-                        logger.println("HOCKEYAPP_INSTALL_URL_" + appIndex + ": " + installUrl);
+                    if (isDebugEnabled()) { // DEBUG MODE output
+                        logger.println("RESPONSE: " + uploadResponse);
                     }
 
-                    build.addAction(envData);
+                    String buildId = String.valueOf(uploadResponse.getId());
+                    String configUrl = uploadResponse.getConfigUrl();
+                    String publicUrl = uploadResponse.getPublicUrl();
+                    journal.completed(journalEntry, buildId, configUrl, publicUrl,
+                            uploadResponse.getPublicIdentifier());
 
-                    String appId;
-                    if (application.getNumberOldVersions() != null) {
-                        if (application.uploadMethod instanceof VersionCreation) {
-                            appId = vars.expand(((VersionCreation) application.uploadMethod).getAppId());
-                        } else {
+                    recordUpload(build, logger, true, true, new HockeyappUploadRecord.Upload(appIndex, file.getName(),
+                            buildId, configUrl, publicUrl, file.length(), result.getDurationMillis()));
+                    journal.recorded(journalEntry);
+                    timings.lap("response");
+
+                    if (plan.isCleanupEnabled()) {
+                        String appId = plan.getAppId();
+                        if (appId == null) {
                             //load App ID from response
-                            appId = (String) parsedMap.get("public_identifier");
+                            appId = uploadResponse.getPublicIdentifier();
                         }
                         if (appId == null) {
                             logger.println(Messages.APP_ID_MISSING_FOR_CLEANUP());
                             logger.println(Messages.ABORTING_CLEANUP());
-                            return this.failGracefully;
+                            return false;
                         }
-                        if (application.getNumberOldVersions() == null || !StringUtils.isNumeric(application.getNumberOldVersions())) {
-                            logger.println(Messages.COUNT_MISSING_FOR_CLEANUP());
-                            logger.println(Messages.ABORTING_CLEANUP());
-                            return this.failGracefully;
-                        }
-                        if (Integer.parseInt(application.getNumberOldVersions()) < 1) {
-                            logger.println(Messages.TOO_FEW_VERSIONS_RETAINED());
-                            logger.println(Messages.ABORTING_CLEANUP());
-                            return this.failGracefully;
+                        if (dryRun) {
+                            logger.println(Messages.DRY_RUN_SKIPPING_CLEANUP());
+                        } else {
+                            cleanupOldVersions(uploader, logger, appId, plan);
+                            timings.lap("cleanup");
                         }
-                        cleanupOldVersions(logger, vars, appId, host, application);
                     }
                 }
             }
+        } catch (AbortException e) {
+            logger.println(e.getMessage());
+            return false;
         } catch (IOException | URISyntaxException | InterruptedException | ParseException e) {
             e.printStackTrace(logger);
-            return this.failGracefully;
+            return false;
         } finally {
-            try {
-                FileUtils.deleteDirectory(tempDir);
-            } catch (IOException e) {
+            awaitMirrorUploads(build, mirrorUploads, logger);
+            transport.close();
+            if (dryRun || isDebugEnabled()) {
+                logger.println(Messages.PHASE_TIMINGS(timings));
+            }
+            if (!dryRun) {
+                UploadJournal.close(build);
+            }
+            if (tempDir != null) {
                 try {
-                    FileUtils.forceDeleteOnExit(tempDir);
-                } catch (IOException e1) {
-                    e1.printStackTrace(logger);
+                    FileUtils.deleteDirectory(tempDir);
+                } catch (IOException e) {
+                    try {
+                        FileUtils.forceDeleteOnExit(tempDir);
+                    } catch (IOException e1) {
+                        e1.printStackTrace(logger);
+                    }
                 }
             }
         }
@@ -498,100 +565,386 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
 
     }
 
-    private HttpInfo getHttpInfo(PrintStream logger, EnvVars vars, HockeyappApplication application) {
-        HttpInfo info = new HttpInfo();
-        if (application.uploadMethod instanceof VersionCreation) {
-            VersionCreation versionCreation = (VersionCreation) application.uploadMethod;
-            if (!vars.expand(versionCreation.getAppId()).isEmpty()) {
-                info.setPath("/api/2/apps/" + vars.expand(versionCreation.getAppId()) + "/app_versions/");
-                if (versionCreation.getVersionCode() != null && !vars.expand(versionCreation.getVersionCode()).isEmpty()) {
-                    // Update an existing version
-                    // https://support.hockeyapp.net/kb/api/api-versions#update-version
-                    info.setPath(info.getPath() + vars.expand(versionCreation.getVersionCode()));
-                    info.setMethod(HttpPut.METHOD_NAME);
-                } else {
-                    // Upload a new version
-                    // https://support.hockeyapp.net/kb/api/api-versions#upload-version
-                    info.setPath(info.getPath() + "upload");
+    /**
+     * Copies the symbols of the plan next to the build and sends them in the background, or right away in a dry run.
+     */
+    private boolean uploadSymbols(Run<?, ?> build, FilePath workspace, Launcher launcher, PrintStream logger,
+                                  UploadPlan plan) throws IOException, InterruptedException {
+        if (!dryRun) {
+            // A wrong version code would only show in the log of the background upload
+            String preflightError = createUploader(logger).preflight(plan.getHost(), plan.getApiToken(),
+                    plan.getAppId(), plan.getVersionCode(), new BuildUploadListener(build, logger));
+            if (preflightError != null) {
+                logger.println(preflightError);
+                return false;
+            }
+        }
+
+        FilePath remoteWorkspace = new FilePath(launcher.getChannel(), workspace.getRemote());
+        File symbolsDir = new File(build.getRootDir(), "hockeyapp-symbols/" + plan.getAppIndex());
+        FileUtils.deleteQuietly(symbolsDir);
+        PrintStream symbolsLog = null;
+        boolean submitted = false;
+        try {
+            File dsymFile = null;
+            if (plan.getDsymPath() != null) {
+                dsymFile = copySymbols(remoteWorkspace, plan.getDsymPath(), new File(symbolsDir, "dsym"));
+                if (dsymFile == null) {
+                    logger.println("No dSYM found to upload in: " + plan.getDsymPath());
+                    return false;
+                }
+                logger.println(dsymFile);
+            }
+            File libsFile = null;
+            if (plan.getLibsPath() != null) {
+                libsFile = copySymbols(remoteWorkspace, plan.getLibsPath(), new File(symbolsDir, "libs"));
+                if (libsFile == null) {
+                    logger.println("No LIBS found to upload in: " + plan.getLibsPath());
+                    return false;
+                }
+                logger.println(libsFile);
+            }
+
+            UploadRequest request = UploadRequest.symbolsBuilder(plan.getUrl(), plan.getApiToken())
+                    .dsym(dsymFile == null ? null : ArtifactSource.of(dsymFile))
+                    .libs(libsFile == null ? null : ArtifactSource.of(libsFile))
+                    .build();
+            if (dryRun) {
+                UploadResult result = createUploader(logger).discard(request, new BuildUploadListener(build, logger));
+                logger.println(Messages.DRY_RUN_DISCARDED(result.getBytesSent(), plan.getUrl()));
+                return true;
+            }
+
+            File logFile = new File(build.getRootDir(), SymbolUploadAction.LOG_FILE_NAME);
+            symbolsLog = new PrintStream(new FileOutputStream(logFile, true), true, "UTF-8");
+            SymbolUploadAction.submit(build, plan.getAppIndex(), createUploader(symbolsLog), request, symbolsDir,
+                    symbolsLog, failGracefully);
+            submitted = true;
+            logger.println(Messages.SYMBOLS_DETACHED(plan.getUrl(), logFile));
+            return true;
+        } catch (URISyntaxException | ParseException e) {
+            e.printStackTrace(logger);
+            return false;
+        } finally {
+            if (!submitted) {
+                if (symbolsLog != null) {
+                    symbolsLog.close();
+                }
+                FileUtils.deleteQuietly(symbolsDir);
+            }
+        }
+    }
+
+    // Takes the first file that matches the pattern
+    @CheckForNull
+    private static File copySymbols(FilePath workspace, String pattern, File directory)
+            throws IOException, InterruptedException {
+        FilePath[] files = workspace.list(pattern);
+        if (files.length == 0) {
+            return null;
+        }
+        FilePath copy = new FilePath(directory).child(files[0].getName());
+        files[0].copyTo(copy);
+        return new File(copy.getRemote());
+    }
+
+    private void markChangelogUploaded(Run<?, ?> build) {
+        final ChangelogCursor cursor = build.getAction(ChangelogCursor.class);
+        if (cursor != null && !dryRun) {
+            cursor.markUploaded();
+        }
+    }
+
+    /**
+     * Stands in for the HockeyApp response of a dry run, with links that point nowhere.
+     */
+    private static String createDryRunResponse(URL host) throws MalformedURLException {
+        final JSONObject response = new JSONObject();
+        response.put("id", 0L);
+        response.put("public_identifier", "dry-run");
+        response.put("config_url", new URL(host, "/manage/apps/dry-run/app_versions/0").toString());
+        response.put("public_url", new URL(host, "/apps/dry-run").toString());
+        return response.toString();
+    }
+
+    /**
+     * @return the URL of the new release.
+     */
+    private String uploadInChunks(Run<?, ?> build, UploadPlan plan, File file, PrintStream logger)
+            throws IOException, InterruptedException, URISyntaxException, ParseException {
+        if (dryRun) {
+            logger.println(Messages.DRY_RUN_DISCARDED(file.length(), plan.getUrl()));
+            return new URL(plan.getHost(), "/v0.1/apps/dry-run/releases/0").toString();
+        }
+        long startTime = System.currentTimeMillis();
+        ChunkedUploader.Release release = new ChunkedUploader(plan, url -> createPreconfiguredHttpClient(url, logger),
+                getDescriptor().getTimeoutInt(), getDescriptor().getStallTimeoutInt(), logger).upload(build, file);
+        printUploadSpeed(System.currentTimeMillis() - startTime, file.length(), logger);
+        return release.getUrl().toString();
+    }
+
+    private HockeyappUploader createUploader(PrintStream logger) {
+        return createUploader(url -> createPreconfiguredHttpClient(url, logger));
+    }
+
+    private HockeyappUploader createUploader(Transport transport) {
+        return new HockeyappUploader(transport, Timer.get(), getDescriptor().getTimeoutInt(),
+                getDescriptor().getStallTimeoutInt());
+    }
+
+    /**
+     * Waits until the upload may share the bandwidth, smaller uploads go first.
+     */
+    private static UploadScheduler.Permit awaitTurn(long bytes, PrintStream logger) throws InterruptedException {
+        UploadScheduler.Permit permit = UploadScheduler.get().acquire(bytes);
+        if (permit.getWaitMillis() > 0) {
+            logger.println(Messages.UPLOAD_QUEUED(permit.getWaitMillis(), bytes));
+        }
+        return permit;
+    }
+
+    private static UploadRequest createUploadRequest(UploadPlan plan, File file, @CheckForNull File dsymFile,
+                                                     @CheckForNull File libsFile) {
+        return UploadRequest.builder(plan.getUrl(), plan.getMethod(), plan.getApiToken(), ArtifactSource.of(file))
+                .dsym(dsymFile == null ? null : ArtifactSource.of(dsymFile))
+                .libs(libsFile == null ? null : ArtifactSource.of(libsFile))
+                .releaseNotes(plan.getReleaseNotes(), plan.isReleaseNotesMarkdown())
+                .tags(plan.getTags())
+                .teams(plan.getTeams())
+                .mandatory(plan.isMandatory())
+                .notifyTeam(plan.isNotifyTeam())
+                .downloadAllowed(plan.isDownloadAllowed())
+                .publicPage(plan.getPublicPage())
+                .build();
+    }
+
+    /**
+     * Sends an artifact to a mirror. Failures are reported in the returned action rather than thrown, a mirror does
+     * not decide whether the upload to HockeyApp succeeded.
+     */
+    private MirrorUploadAction uploadToMirror(Run<?, ?> build, UploadPlan plan, File file,
+                                              @CheckForNull File dsymFile, @CheckForNull File libsFile,
+                                              PrintStream logger) {
+        final String host = plan.getHost().getHost();
+        final long startTime = System.currentTimeMillis();
+        final BuildUploadListener uploadListener = new BuildUploadListener(build, logger);
+        try {
+            HockeyappUploader uploader = createUploader(logger);
+            UploadRequest uploadRequest = createUploadRequest(plan, file, dsymFile, libsFile);
+            UploadResult result = dryRun
+                    ? uploader.discard(uploadRequest, uploadListener)
+                    : uploader.upload(uploadRequest, uploadListener);
+            if (!result.isSuccessful()) {
+                return new MirrorUploadAction(host, file.getName(), result.getStatusCode(), null,
+                        Messages.UNEXPECTED_RESPONSE_CODE(result.getStatusCode()) + " " + result.getErrorBody(),
+                        result.getBytesSent(), result.getDurationMillis());
+            }
+            HockeyappResponse uploadResponse = result.getResponse();
+            return new MirrorUploadAction(host, file.getName(), result.getStatusCode(),
+                    uploadResponse == null ? null : uploadResponse.getConfigUrl(), null,
+                    result.getBytesSent(), result.getDurationMillis());
+        } catch (Exception e) {
+            return new MirrorUploadAction(host, file.getName(), 0, null, e.toString(),
+                    uploadListener.getBytesSent(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Records the outcome of every mirror upload. A failed mirror makes the build unstable.
+     */
+    private void awaitMirrorUploads(Run<?, ?> build, List<Future<MirrorUploadAction>> mirrorUploads,
+                                    PrintStream logger) {
+        for (Future<MirrorUploadAction> mirrorUpload : mirrorUploads) {
+            MirrorUploadAction action;
+            try {
+                action = mirrorUpload.get();
+            } catch (InterruptedException e) {
+                for (Future<MirrorUploadAction> pending : mirrorUploads) {
+                    pending.cancel(true);
                 }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace(logger);
+                build.setResult(Result.UNSTABLE);
+                continue;
+            }
+            build.addAction(action);
+            if (action.isSuccessful()) {
+                logger.println(Messages.MIRROR_UPLOADED(action.getHost(), action.getArtifact(), action.getBytes(),
+                        action.getDurationMillis()));
             } else {
-                logger.println("No AppId specified!");
-                info.setPath(null);
+                logger.println(Messages.MIRROR_FAILED(action.getHost(), action.getArtifact(), action.getError()));
+                build.setResult(Result.UNSTABLE);
             }
-        } else {
-            // Uploads app and assigns a new version. Only if there is no existing app?
-            // https://support.hockeyapp.net/kb/api/api-apps#upload-app
-            info.setPath("/api/2/apps/upload");
         }
-        return info;
     }
 
-    private void createReleaseNotes(Run<?, ?> build, FilePath workspace, MultipartEntity entity, PrintStream logger,
-                                    File tempDir, EnvVars vars, HockeyappApplication application)
+    private File awaitTransfer(Future<File> transfer) throws IOException, InterruptedException {
+        try {
+            return transfer.get();
+        } catch (InterruptedException e) {
+            transfer.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * @param add whether to add the upload to the record of the build, {@code false} if it is there already.
+     * @param sent whether the artifact was sent just now, rather than by a previous attempt of the build.
+     */
+    private void recordUpload(Run<?, ?> build, PrintStream logger, boolean add, boolean sent,
+                              HockeyappUploadRecord.Upload upload) {
+        if (add) {
+            HockeyappUploadRecord.add(build, upload);
+            // Uploads of a previous attempt have no duration and would spoil the comparison
+            if (sent && !dryRun) {
+                updateTrend(build, logger, upload);
+            }
+        }
+
+        int appIndex = upload.getAppIndex();
+        if (appIndex == 0) {
+            logger.println("HOCKEYAPP_CONFIG_URL: " + upload.getConfigUrl());
+        }
+        logger.println("HOCKEYAPP_CONFIG_URL_" + appIndex + ": " + upload.getConfigUrl());
+
+        String installUrl = upload.getInstallUrl();
+        if (installUrl != null) {
+            if (appIndex == 0) {
+                logger.println("HOCKEYAPP_INSTALL_URL: " + installUrl);
+            }
+            logger.println("HOCKEYAPP_INSTALL_URL_" + appIndex + ": " + installUrl);
+        }
+    }
+
+    private void updateTrend(Run<?, ?> build, PrintStream logger, HockeyappUploadRecord.Upload upload) {
+        UploadTrend.Entry entry = new UploadTrend.Entry(build.getNumber(), upload.getAppIndex(), upload.getSize(),
+                upload.getDurationMillis(), upload.getArtifact());
+        UploadTrend.Entry previous;
+        try {
+            previous = UploadTrend.append(build.getParent(), entry);
+        } catch (IOException e) {
+            e.printStackTrace(logger);
+            return;
+        }
+        if (previous == null) {
+            return;
+        }
+
+        long size = previous.getSize();
+        if (sizeGrowthThreshold != null && size > 0
+                && (entry.getSize() - size) * 100 > size * sizeGrowthThreshold) {
+            logger.println(Messages.SIZE_GROWTH_WARNING(upload.getArtifact(), entry.getSize(), size,
+                    previous.getBuild(), sizeGrowthThreshold));
+            build.setResult(Result.UNSTABLE);
+        }
+
+        long throughput = previous.getThroughput();
+        if (throughputDropThreshold != null && throughput > 0 && entry.getThroughput() > 0
+                && (throughput - entry.getThroughput()) * 100 > throughput * throughputDropThreshold) {
+            logger.println(Messages.THROUGHPUT_DROP_WARNING(upload.getArtifact(), entry.getThroughput(), throughput,
+                    previous.getBuild(), throughputDropThreshold));
+            build.setResult(Result.UNSTABLE);
+        }
+    }
+
+    /**
+     * @return the release notes, {@code null} if there are none to send.
+     */
+    @CheckForNull
+    private String createReleaseNotes(Run<?, ?> build, FilePath workspace, PrintStream logger, EnvVars vars,
+                                      HockeyappApplication application)
             throws IOException, InterruptedException {
         if (application.releaseNotesMethod instanceof ManualReleaseNotes) {
             ManualReleaseNotes manualReleaseNotes = (ManualReleaseNotes) application.releaseNotesMethod;
             if (manualReleaseNotes.getReleaseNotes() != null) {
-                entity.addPart("notes", new StringBody(vars.expand(manualReleaseNotes.getReleaseNotes()), DEFAULT_CONTENT_TYPE));
-                entity.addPart("notes_type", new StringBody(manualReleaseNotes.isMarkdown() ? "1" : "0", DEFAULT_CONTENT_TYPE));
+                return vars.expand(manualReleaseNotes.getReleaseNotes());
             }
         } else if (application.releaseNotesMethod instanceof FileReleaseNotes) {
             FileReleaseNotes fileReleaseNotes = (FileReleaseNotes) application.releaseNotesMethod;
             if (fileReleaseNotes.getFileName() != null) {
-                File releaseNotesFile = getFileLocally(workspace, vars.expand(fileReleaseNotes.getFileName()), tempDir);
-                logger.println(releaseNotesFile);
-                String releaseNotes = readReleaseNotesFile(releaseNotesFile);
-                entity.addPart("notes", new StringBody(releaseNotes, DEFAULT_CONTENT_TYPE));
-                entity.addPart("notes_type", new StringBody(fileReleaseNotes.isMarkdown() ? "1" : "0", DEFAULT_CONTENT_TYPE));
+                FilePath releaseNotesFile = getWorkspaceFile(workspace, vars.expand(fileReleaseNotes.getFileName()));
+                logger.println(releaseNotesFile.getRemote());
+                // Read where the file is, only the bounded text comes back
+                ReleaseNotesFileReader.Notes notes = releaseNotesFile.act(
+                        new ReleaseNotesFileReader(fileReleaseNotes.getMaxBytes()));
+                String releaseNotes = notes.getText();
+                if (notes.getOmittedBytes() > 0) {
+                    logger.println(Messages.RELEASE_NOTES_TRUNCATED(notes.getOmittedBytes()));
+                    releaseNotes += "\n" + Messages.RELEASE_NOTES_TRUNCATED(notes.getOmittedBytes());
+                }
+                if (isDebugEnabled()) {
+                    logger.println("Release notes charset: " + notes.getCharset());
+                }
+                return releaseNotes;
+            }
+        } else if (application.releaseNotesMethod instanceof TemplateReleaseNotes) {
+            TemplateReleaseNotes templateReleaseNotes = (TemplateReleaseNotes) application.releaseNotesMethod;
+            ReleaseNotesTemplate template;
+            try {
+                template = templateReleaseNotes.getCompiledTemplate();
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid release notes template: " + e.getMessage(), e);
             }
+            return template.render(new ReleaseNotesScope(build, vars));
         } else {
-            StringBuilder sb = new StringBuilder();
-
-            ChangeLogSet<? extends Entry> changeLogSet;
-            if (build instanceof AbstractBuild) {
-                changeLogSet = ((AbstractBuild) build).getChangeSet();
-            } else if (build instanceof WorkflowRun) {
-                // To support multi branch pipelines
-                List<ChangeLogSet<? extends ChangeLogSet.Entry>> changeLogSetList = ((WorkflowRun) build).getChangeSets();
-                changeLogSet = changeLogSetList.isEmpty() ? null : changeLogSetList.get(0);
-            } else {
-                changeLogSet = getChangeLogSetFromRun(build);
-            }
-            if (changeLogSet != null && !changeLogSet.isEmptySet()) {
-                boolean hasManyChangeSets = changeLogSet.getItems().length > 1;
-                for (Entry entry : changeLogSet) {
-                    sb.append("\n");
-                    if (hasManyChangeSets) {
-                        sb.append("* ");
-                    }
-                    sb.append(entry.getAuthor()).append(": ").append(entry.getMsg());
-                }
+            // Every change set, to support multiple SCMs and multi branch pipelines
+            final ChangelogReleaseNotes changelog = application.releaseNotesMethod instanceof ChangelogReleaseNotes
+                    ? (ChangelogReleaseNotes) application.releaseNotesMethod
+                    : null;
+            final boolean sinceLastUpload = changelog != null && changelog.isSinceLastUpload();
+            final ChangelogCursor cursor = ChangelogCollector.collect(build, sinceLastUpload);
+            if (sinceLastUpload) {
+                build.addOrReplaceAction(cursor);
             }
-
-            entity.addPart("notes", new StringBody(sb.toString(), DEFAULT_CONTENT_TYPE));
-            entity.addPart("notes_type", new StringBody("0", DEFAULT_CONTENT_TYPE));
+            final String releaseNotes = formatChanges(cursor.getChanges(), cursor.getOmitted(),
+                    changelog == null ? 0 : changelog.getMaxLength());
+            return releaseNotes;
         }
+        return null;
+    }
 
+    static String formatChangeLog(@CheckForNull ChangeLogSet<? extends Entry> changeLogSet) {
+        return formatChanges(ChangelogCollector.toChanges(changeLogSet), 0, 0);
     }
 
-    private ChangeLogSet<? extends Entry> getChangeLogSetFromRun(Run<?, ?> build) {
-        ItemGroup<?> ig = build.getParent().getParent();
-        for (Item item : ig.getItems()) {
-            if (!item.getFullDisplayName().equals(build.getFullDisplayName())
-                    && !item.getFullDisplayName().equals(build.getParent().getFullDisplayName())) {
-                continue;
+    /**
+     * @param omitted   changes left out before, counted at the end of the notes.
+     * @param maxLength maximum number of characters, {@code 0} for no limit.
+     */
+    static String formatChanges(List<ChangelogCursor.Change> changes, int omitted, int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        boolean hasManyChangeSets = changes.size() + omitted > 1;
+        int limit = maxLength > 0 ? maxLength : Integer.MAX_VALUE;
+        int added = 0;
+        for (ChangelogCursor.Change change : changes) {
+            int length = sb.length();
+            sb.append("\n");
+            if (hasManyChangeSets) {
+                sb.append("* ");
             }
-
-            for (Job<?, ?> job : item.getAllJobs()) {
-                if (job instanceof AbstractProject<?, ?>) {
-                    //log("Job: " + job.getFullName());
-                    AbstractProject<?, ?> p = (AbstractProject<?, ?>) job;
-                    //log("Project: " + p.getFullName());
-                    return p.getBuilds().getLastBuild().getChangeSet();
-                }
+            sb.append(change.getAuthor()).append(": ").append(change.getMsg());
+            // Keep room for the count of omitted changes
+            if (sb.length() > limit - ((added + 1 < changes.size() || omitted > 0) ? 64 : 0)) {
+                sb.setLength(length);
+                break;
             }
+            added++;
         }
-        return null;
+        int left = changes.size() - added + omitted;
+        if (left > 0) {
+            sb.append("\n").append(Messages.CHANGELOG_TRUNCATED(left));
+        }
+        return sb.toString();
     }
 
     private URL createHostUrl(EnvVars vars) throws MalformedURLException {
@@ -612,38 +965,31 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
 
         String[] units = {"bps", "Kbps", "Mbps", "Gbps"};
         int idx = 0;
-        while (speed > 1024 && idx <= units.length - 1) {
+        while (speed > 1024 && idx < units.length - 1) {
             speed /= 1024;
             idx += 1;
         }
         logger.println("HockeyApp Upload Speed: " + String.format("%.2f", speed) + units[idx]);
     }
 
-    private File getFileLocally(FilePath workingDir, String strFile,
-                                File tempDir) throws IOException, InterruptedException {
+    private FilePath getWorkspaceFile(FilePath workingDir, String strFile) {
         // Due to the previous inconsistency about whether or not to use absolute paths,
         // here we automatically remove the workspace, so that 'strFile' is relative
         // and existing jobs continue to function, regardless of how they were configured
         if (strFile.startsWith(workingDir.getRemote())) {
             strFile = strFile.substring(workingDir.getRemote().length() + 1);
         }
-
-        if (workingDir.isRemote()) {
-            FilePath remoteFile = new FilePath(workingDir, strFile);
-            File file = new File(tempDir, remoteFile.getName());
-            if (file.createNewFile()) {
-                try (FileOutputStream fos = new FileOutputStream(file)) {
-                    remoteFile.copyTo(fos);
-                }
-                return file;
-            }
-        }
-
-        return new File(workingDir.getRemote(), strFile);
+        return workingDir.child(strFile);
     }
 
-    private File getLocalFileFromFilePath(FilePath filePath, File tempDir) throws IOException, InterruptedException {
+    private File getLocalFileFromFilePath(Run<?, ?> build, FilePath filePath, File tempDir, PrintStream logger)
+            throws IOException, InterruptedException {
         if (filePath.isRemote()) {
+            // Keep a copy across attempts so that a retried upload does not fetch the artifact from the agent again
+            File stagedFile = UploadStagingArea.stage(build, filePath, logger);
+            if (stagedFile != null) {
+                return stagedFile;
+            }
             FilePath localFilePath = new FilePath(new FilePath(tempDir), filePath.getName());
             filePath.copyTo(localFilePath);
             return new File(localFilePath.toURI());
@@ -671,8 +1017,10 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
 
         Collections.reverse(filteredList);
         for (AbstractBuild<?, ?> build : filteredList) {
-            List<HockeyappBuildAction> hockeyappActions = build
-                    .getActions(HockeyappBuildAction.class);
+            HockeyappUploadRecord record = HockeyappUploadRecord.of(build);
+            // Builds from before the record kept their links as actions
+            List<HockeyappBuildAction> hockeyappActions = record != null ? record.createLinks()
+                    : build.getActions(HockeyappBuildAction.class);
             if (hockeyappActions.size() > 0) {
                 for (HockeyappBuildAction action : hockeyappActions) {
                     actions.add(new HockeyappBuildAction(action));
@@ -684,55 +1032,26 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
         return actions;
     }
 
-    private void cleanupOldVersions(PrintStream logger, EnvVars vars, String appId, URL host,
-                                    HockeyappApplication application) {
+    private void cleanupOldVersions(HockeyappUploader uploader, PrintStream logger, String appId, UploadPlan plan) {
         try {
-            String path = "/api/2/apps/" + vars.expand(appId) + "/app_versions/delete";
-            URL url = new URL(host, path);
-            HttpClient httpclient = createPreconfiguredHttpClient(url, logger);
-            HttpPost httpPost = new HttpPost(url.toURI());
-            final Secret secret = fetchApiToken(application);
-            httpPost.setHeader("X-HockeyAppToken", vars.expand(Secret.toString(secret)));
-            List<NameValuePair> nameValuePairs = new ArrayList<>(1);
-            nameValuePairs.add(new BasicNameValuePair("keep", application.getNumberOldVersions()));
-            nameValuePairs.add(new BasicNameValuePair("sort", application.getSortOldVersions()));
-            nameValuePairs.add(new BasicNameValuePair("strategy", application.getStrategyOldVersions()));
-            httpPost.setEntity(new UrlEncodedFormEntity(nameValuePairs));
-            HttpResponse response = httpclient.execute(httpPost);
-            HttpEntity resEntity = response.getEntity();
-            if (resEntity != null) {
-                InputStream is = resEntity.getContent();
-
-                // Improved error handling.
-                if (response.getStatusLine().getStatusCode() != 200) {
-                    String responseBody = new Scanner(is, UTF8).useDelimiter(
-                            "\\A").next();
-                    logger.println(
-                            Messages.UNEXPECTED_RESPONSE_CODE(
-                                    response.getStatusLine().getStatusCode())
-                    );
-                    logger.println(responseBody);
-                    return;
-                }
-
-                JSONParser parser = new JSONParser();
-                final Map parsedMap = (Map) parser.parse(
-                        new BufferedReader(new InputStreamReader(is, DEFAULT_CHARACTER_SET)));
-                logger.println(
-                        Messages.DELETED_OLD_VERSIONS(String.valueOf(
-                                parsedMap.get("total_entries")))
-                );
+            UploadResult result = uploader.deleteOldVersions(plan.getHost(), plan.getApiToken(), appId,
+                    plan.getOldVersionsToKeep(), plan.getSortOldVersions(), plan.getStrategyOldVersions());
+            // Improved error handling.
+            if (!result.isSuccessful()) {
+                logger.println(Messages.UNEXPECTED_RESPONSE_CODE(result.getStatusCode()));
+                logger.println(result.getErrorBody());
+                return;
             }
+
+            logger.println(
+                    Messages.DELETED_OLD_VERSIONS(String.valueOf(
+                            result.getResponse().getTotalEntries()))
+            );
         } catch (Exception e) {
             e.printStackTrace(logger);
         }
     }
 
-    private String readReleaseNotesFile(File file) throws IOException {
-        try (FileInputStream inputStream = new FileInputStream(file)) {
-            return IOUtils.toString(inputStream, "UTF-8");
-        }
-    }
 
     @Deprecated
     public static class BaseUrlHolder {
@@ -757,6 +1076,7 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
         private Secret defaultToken;
         private boolean globalDebugMode = false;
         private String timeout;
+        private String stallTimeout;
 
         public DescriptorImpl() {
             super(HockeyappRecorder.class);
@@ -807,6 +1127,29 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
             }
         }
 
+        @SuppressWarnings("unused")
+        public String getStallTimeout() {
+            return stallTimeout;
+        }
+
+        @SuppressWarnings("unused")
+        public void setStallTimeout(String stallTimeout) {
+            this.stallTimeout = Util.fixEmptyAndTrim(stallTimeout);
+            save();
+        }
+
+        public int getStallTimeoutInt() {
+            if (this.stallTimeout != null) {
+                try {
+                    return Integer.parseInt(this.stallTimeout) * 1000;
+                } catch (Exception e) {
+                    return HockeyappRecorder.DEFAULT_STALL_TIMEOUT;
+                }
+            } else {
+                return HockeyappRecorder.DEFAULT_STALL_TIMEOUT;
+            }
+        }
+
         public boolean isApplicable(Class<? extends AbstractProject> aClass) {
             // Indicates that this builder can be used with all kinds of project
             // types
@@ -841,6 +1184,11 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
             }
         }
 
+        @SuppressWarnings("unused")
+        public FormValidation doCheckStallTimeout(@QueryParameter String value) {
+            return doCheckTimeout(value);
+        }
+
         @SuppressWarnings("unused")
         public FormValidation doCheckBaseUrl(@QueryParameter String value) {
             if (value == null || value.isEmpty()) {
@@ -865,33 +1213,4 @@ public class HockeyappRecorder extends Recorder implements SimpleBuildStep {
 
     }
 
-    private static class EnvAction implements EnvironmentContributingAction {
-        private final transient Map<String, String> data = new HashMap<>();
-
-        private void add(String key, String value) {
-            if (data == null) return;
-            data.put(key, value);
-        }
-
-        public void buildEnvVars(AbstractBuild<?, ?> build, EnvVars env) {
-            if (data != null) env.putAll(data);
-        }
-
-        public void buildEnvironment(@Nonnull Run<?, ?> build, @Nonnull EnvVars env) {
-            if (data != null) env.putAll(data);
-        }
-
-        public String getIconFileName() {
-            return null;
-        }
-
-        public String getDisplayName() {
-            return null;
-        }
-
-        public String getUrlName() {
-            return null;
-        }
-    }
-
 }
@@ -21,7 +21,16 @@ import java.util.Collections;
 import java.util.List;
 
 public class HockeyappRecorderConverter implements Converter {
-    private static final XStream XSTREAM = Jenkins.XSTREAM;
+    // Caches readResolve and writeReplace lookups, one created per call started empty every time
+    private final Converter reflectionConverter;
+
+    public HockeyappRecorderConverter() {
+        this(Jenkins.XSTREAM);
+    }
+
+    public HockeyappRecorderConverter(XStream xstream) {
+        this.reflectionConverter = new ReflectionConverter(xstream.getMapper(), xstream.getReflectionProvider());
+    }
 
     @Override
     public boolean canConvert(Class clazz) {
@@ -29,15 +38,13 @@ public class HockeyappRecorderConverter implements Converter {
     }
 
     public void marshal(Object value, HierarchicalStreamWriter writer, MarshallingContext context) {
-        Converter converter = new ReflectionConverter(XSTREAM.getMapper(), XSTREAM.getReflectionProvider());
-        converter.marshal(value, writer, context);
+        reflectionConverter.marshal(value, writer, context);
     }
 
     public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
         final long version = unmarshalPluginVersion(reader);
         if (version > 0) {
-            Converter converter = new ReflectionConverter(XSTREAM.getMapper(), XSTREAM.getReflectionProvider());
-            return converter.unmarshal(reader, context);
+            return reflectionConverter.unmarshal(reader, context);
         }
 
         HockeyappRecorderObsolete recorderObsolete = (HockeyappRecorderObsolete) context.convertAnother(
@@ -0,0 +1,215 @@
+package hockeyapp;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import hudson.model.EnvironmentContributingAction;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import jenkins.model.TransientActionFactory;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything a build uploaded to HockeyApp, one per build. The links in the side panel and the
+ * {@code HOCKEYAPP_*} environment variables are derived from it, so they are back after a restart.
+ */
+@ExportedBean(defaultVisibility = 2)
+public final class HockeyappUploadRecord extends InvisibleAction implements EnvironmentContributingAction {
+
+    private static final Upload[] NONE = new Upload[0];
+
+    // Copied on write, builds only ever have a handful
+    private volatile Upload[] uploads = NONE;
+
+    private HockeyappUploadRecord() {
+    }
+
+    /**
+     * Adds an upload to the record of a build, creating the record if needed.
+     */
+    static void add(@Nonnull Run<?, ?> build, @Nonnull Upload upload) {
+        final HockeyappUploadRecord record;
+        synchronized (HockeyappUploadRecord.class) {
+            final HockeyappUploadRecord existing = of(build);
+            if (existing != null) {
+                record = existing;
+            } else {
+                record = new HockeyappUploadRecord();
+                build.addAction(record);
+            }
+            final Upload[] updated = Arrays.copyOf(record.uploads, record.uploads.length + 1);
+            updated[updated.length - 1] = upload;
+            record.uploads = updated;
+        }
+    }
+
+    /**
+     * Looks only at the actions stored with the build, {@link Run#getAction(Class)} would also ask
+     * {@link LinkFactory}, which asks this.
+     */
+    @CheckForNull
+    @SuppressWarnings("deprecation")
+    static HockeyappUploadRecord of(@Nonnull Run<?, ?> build) {
+        for (Action action : build.getActions()) {
+            if (action instanceof HockeyappUploadRecord) {
+                return (HockeyappUploadRecord) action;
+            }
+        }
+        return null;
+    }
+
+    @Exported(inline = true)
+    public List<Upload> getUploads() {
+        return Collections.unmodifiableList(Arrays.asList(uploads));
+    }
+
+    /**
+     * @return the links to show for the uploads, configuration and installation pages.
+     */
+    @Nonnull
+    List<HockeyappBuildAction> createLinks() {
+        final List<HockeyappBuildAction> links = new ArrayList<>();
+        for (Upload upload : uploads) {
+            final HockeyappBuildAction configureAction = new HockeyappBuildAction();
+            configureAction.displayName = Messages.HOCKEYAPP_CONFIG_LINK();
+            configureAction.iconFileName = "gear2.gif";
+            configureAction.urlName = upload.configUrl;
+            links.add(configureAction);
+
+            final String installUrl = upload.getInstallUrl();
+            if (installUrl != null) {
+                final HockeyappBuildAction installAction = new HockeyappBuildAction();
+                installAction.displayName = Messages.HOCKEYAPP_INSTALL_LINK();
+                installAction.iconFileName = "package.gif";
+                installAction.urlName = installUrl;
+                links.add(installAction);
+            }
+        }
+        return links;
+    }
+
+    public void buildEnvVars(AbstractBuild<?, ?> build, EnvVars env) {
+        buildEnvironment(build, env);
+    }
+
+    public void buildEnvironment(@Nonnull Run<?, ?> build, @Nonnull EnvVars env) {
+        // Later uploads of an application win, as they did when every upload contributed its own variables
+        for (Upload upload : uploads) {
+            if (upload.appIndex == 0) {
+                env.put("HOCKEYAPP_CONFIG_URL", upload.configUrl);
+            }
+            env.put("HOCKEYAPP_CONFIG_URL_" + upload.appIndex, upload.configUrl);
+
+            final String installUrl = upload.getInstallUrl();
+            if (installUrl != null) {
+                if (upload.appIndex == 0) {
+                    env.put("HOCKEYAPP_INSTALL_URL", installUrl);
+                }
+                env.put("HOCKEYAPP_INSTALL_URL_" + upload.appIndex, installUrl);
+            }
+        }
+    }
+
+    /**
+     * One artifact sent to HockeyApp.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Upload {
+        private final int appIndex;
+        private final String artifact;
+        @CheckForNull
+        private final String versionId;
+        private final String configUrl;
+        @CheckForNull
+        private final String publicUrl;
+        private final long size;
+        private final long durationMillis;
+
+        Upload(int appIndex, @Nonnull String artifact, @CheckForNull String versionId, @Nonnull String configUrl,
+               @CheckForNull String publicUrl, long size, long durationMillis) {
+            this.appIndex = appIndex;
+            this.artifact = artifact;
+            this.versionId = versionId;
+            this.configUrl = configUrl;
+            this.publicUrl = publicUrl;
+            this.size = size;
+            this.durationMillis = durationMillis;
+        }
+
+        @Exported
+        public int getAppIndex() {
+            return appIndex;
+        }
+
+        @Exported
+        public String getArtifact() {
+            return artifact;
+        }
+
+        @Exported
+        @CheckForNull
+        public String getVersionId() {
+            return versionId;
+        }
+
+        @Exported
+        public String getConfigUrl() {
+            return configUrl;
+        }
+
+        @Exported
+        @CheckForNull
+        public String getInstallUrl() {
+            if (publicUrl == null) {
+                return null;
+            }
+            final int appVersion = configUrl.indexOf("/app_versions/");
+            return appVersion < 0 ? publicUrl : publicUrl + configUrl.substring(appVersion);
+        }
+
+        /**
+         * @return the size of the artifact in bytes.
+         */
+        @Exported
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return how long sending took, {@code 0} if it was sent by an earlier attempt of the build.
+         */
+        @Exported
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+
+    /**
+     * Shows the links of the uploads without storing them with the build.
+     */
+    @Extension
+    public static final class LinkFactory extends TransientActionFactory<Run> {
+
+        @Override
+        public Class<Run> type() {
+            return Run.class;
+        }
+
+        @Nonnull
+        @Override
+        public Collection<? extends Action> createFor(@Nonnull Run target) {
+            final HockeyappUploadRecord record = of(target);
+            return record == null ? Collections.emptyList() : record.createLinks();
+        }
+    }
+}
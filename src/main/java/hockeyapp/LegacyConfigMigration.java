@@ -0,0 +1,214 @@
+package hockeyapp;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractProject;
+import hudson.model.AdministrativeMonitor;
+import hudson.model.Computer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.XStream2;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rewrites the configurations of jobs whose recorder predates {@link HockeyappRecorder#SCHEMA_VERSION_NUMBER}.
+ * <p>
+ * Jobs are found once their configurations are loaded. An administrator starts the migration, which converts
+ * legacy recorders with {@link HockeyappRecorderConverter} and saves the jobs, a few at a time so that a large
+ * instance does not flood its disk. Progress is shown on the manage page.
+ */
+@Extension
+public class LegacyConfigMigration extends AdministrativeMonitor {
+
+    private static final Logger LOGGER = Logger.getLogger(LegacyConfigMigration.class.getName());
+    // Jobs saved at once
+    private static final int PARALLELISM = Integer.getInteger(LegacyConfigMigration.class.getName() + ".parallelism",
+            4);
+
+    private static final XStream XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.registerConverter(new HockeyappRecorderConverter(XSTREAM), XStream.PRIORITY_VERY_HIGH);
+    }
+
+    private volatile List<String> pending = Collections.emptyList();
+    private volatile boolean running;
+    private final AtomicInteger migrated = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    @Override
+    public String getDisplayName() {
+        return Messages.LEGACY_CONFIG_MIGRATION();
+    }
+
+    @Override
+    public boolean isActivated() {
+        return running || !pending.isEmpty() || failed.get() > 0;
+    }
+
+    public int getTotal() {
+        return pending.size();
+    }
+
+    public int getMigrated() {
+        return migrated.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Lists the jobs with a recorder that was loaded without a schema version.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void findLegacyConfigs() {
+        final LegacyConfigMigration migration = get();
+        if (migration != null) {
+            migration.pending = find();
+        }
+    }
+
+    private static List<String> find() {
+        final List<String> jobs = new ArrayList<>();
+        for (AbstractProject<?, ?> project : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
+            final HockeyappRecorder recorder = project.getPublishersList().get(HockeyappRecorder.class);
+            if (recorder != null && recorder.schemaVersion < HockeyappRecorder.SCHEMA_VERSION_NUMBER) {
+                jobs.add(project.getFullName());
+            }
+        }
+        return jobs;
+    }
+
+    @CheckForNull
+    static LegacyConfigMigration get() {
+        return AdministrativeMonitor.all().get(LegacyConfigMigration.class);
+    }
+
+    @RequirePOST
+    public synchronized HttpResponse doMigrate() {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        if (!running) {
+            running = true;
+            Computer.threadPoolForRemoting.submit(this::migrate);
+        }
+        return HttpResponses.forwardToPreviousPage();
+    }
+
+    /**
+     * Migrates every pending job, returns when all of them are done.
+     */
+    void migrate() {
+        running = true;
+        migrated.set(0);
+        failed.set(0);
+        final long startTime = System.currentTimeMillis();
+        final List<String> jobs = pending;
+        final List<Callable<Void>> tasks = new ArrayList<>(jobs.size());
+        for (String job : jobs) {
+            tasks.add(() -> {
+                try {
+                    migrateJob(job);
+                    migrated.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not migrate the HockeyApp configuration of " + job, e);
+                    failed.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM,
+                new NamingThreadFactory(new DaemonThreadFactory(), "HockeyApp configuration migration"));
+        try {
+            executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            pending = find();
+            running = false;
+        }
+        LOGGER.log(Level.INFO, "Migrated the HockeyApp configuration of {0} jobs in {1} ms, {2} failed",
+                new Object[]{migrated.get(), System.currentTimeMillis() - startTime, failed.get()});
+    }
+
+    private static void migrateJob(String job) throws IOException {
+        final AbstractProject<?, ?> project = Jenkins.getInstance().getItemByFullName(job, AbstractProject.class);
+        if (project == null) {
+            return;
+        }
+        final HockeyappRecorder loaded = project.getPublishersList().get(HockeyappRecorder.class);
+        if (loaded == null || loaded.schemaVersion >= HockeyappRecorder.SCHEMA_VERSION_NUMBER) {
+            return;
+        }
+        final HockeyappRecorder recorder;
+        if (loaded.getApplications() == null) {
+            // Saved before there were several applications, loading left them out
+            recorder = readLegacy(project.getConfigFile().getFile());
+            if (recorder == null) {
+                return;
+            }
+        } else {
+            // Current fields, only the version is missing
+            recorder = loaded;
+            recorder.schemaVersion = HockeyappRecorder.SCHEMA_VERSION_NUMBER;
+        }
+        project.getPublishersList().replace(recorder);
+    }
+
+    @CheckForNull
+    private static HockeyappRecorder readLegacy(File configFile) throws IOException {
+        final String element = XSTREAM.getMapper().serializedClass(HockeyappRecorder.class);
+        try (Reader in = new InputStreamReader(new FileInputStream(configFile), StandardCharsets.UTF_8)) {
+            final HierarchicalStreamReader reader = new XppDriver().createReader(in);
+            try {
+                return find(reader, element);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @CheckForNull
+    private static HockeyappRecorder find(HierarchicalStreamReader reader, String element) {
+        while (reader.hasMoreChildren()) {
+            reader.moveDown();
+            final HockeyappRecorder recorder = element.equals(reader.getNodeName())
+                    ? (HockeyappRecorder) XSTREAM.unmarshal(reader)
+                    : find(reader, element);
+            reader.moveUp();
+            if (recorder != null) {
+                return recorder;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,81 @@
+package hockeyapp;
+
+import hudson.model.InvisibleAction;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Outcome of sending an artifact to a {@link HockeyappMirror}, one per mirror and artifact. Shown in the remote
+ * API of the build.
+ */
+@ExportedBean(defaultVisibility = 2)
+public class MirrorUploadAction extends InvisibleAction {
+
+    private final String host;
+    private final String artifact;
+    private final int statusCode;
+    @CheckForNull
+    private final String configUrl;
+    @CheckForNull
+    private final String error;
+    private final long bytes;
+    private final long durationMillis;
+
+    MirrorUploadAction(String host, String artifact, int statusCode, @CheckForNull String configUrl,
+                       @CheckForNull String error, long bytes, long durationMillis) {
+        this.host = host;
+        this.artifact = artifact;
+        this.statusCode = statusCode;
+        this.configUrl = configUrl;
+        this.error = error;
+        this.bytes = bytes;
+        this.durationMillis = durationMillis;
+    }
+
+    @Exported
+    public String getHost() {
+        return host;
+    }
+
+    @Exported
+    public String getArtifact() {
+        return artifact;
+    }
+
+    /**
+     * @return the HTTP status of the upload, {@code 0} if there was no response.
+     */
+    @Exported
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Exported
+    @CheckForNull
+    public String getConfigUrl() {
+        return configUrl;
+    }
+
+    @Exported
+    @CheckForNull
+    public String getError() {
+        return error;
+    }
+
+    @Exported
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    @Exported
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Exported
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
@@ -0,0 +1,34 @@
+package hockeyapp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall time spent in each phase of an upload, so that slow builds can be attributed to the agent, the controller
+ * or HockeyApp. Phases are timed back to back: every {@link #lap(String)} closes the phase that started with the
+ * previous one. Repeated phases (several artifacts) add up.
+ */
+final class PhaseTimings {
+
+    private final Map<String, Long> nanos = new LinkedHashMap<>();
+    private long lap = System.nanoTime();
+
+    void lap(String phase) {
+        final long now = System.nanoTime();
+        nanos.merge(phase, now - lap, Long::sum);
+        lap = now;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> phase : nanos.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(phase.getKey()).append(' ').append(TimeUnit.NANOSECONDS.toMillis(phase.getValue())).append(" ms");
+        }
+        return sb.toString();
+    }
+}
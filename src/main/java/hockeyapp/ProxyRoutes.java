@@ -0,0 +1,129 @@
+package hockeyapp;
+
+import hudson.Extension;
+import hudson.ProxyConfiguration;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import jenkins.model.Jenkins;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.impl.client.DefaultHttpClient;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Whether requests to a host go through the Jenkins proxy, decided once per host.
+ * <p>
+ * Evaluating the no proxy patterns for every request adds up with many uploads. Decisions are kept until the proxy
+ * configuration is saved or replaced.
+ */
+final class ProxyRoutes {
+
+    private static final Map<String, Route> ROUTES = new ConcurrentHashMap<>();
+
+    private ProxyRoutes() {
+    }
+
+    static final class Route {
+        // The configuration this decision was made for, null if there is no proxy
+        @CheckForNull
+        private final ProxyConfiguration configuration;
+        @CheckForNull
+        private final HttpHost proxy;
+        @CheckForNull
+        private final UsernamePasswordCredentials credentials;
+        @CheckForNull
+        private final String matchedPattern;
+
+        private Route(@CheckForNull ProxyConfiguration configuration, @CheckForNull String matchedPattern) {
+            this.configuration = configuration;
+            this.matchedPattern = matchedPattern;
+            if (configuration == null || matchedPattern != null) {
+                this.proxy = null;
+                this.credentials = null;
+                return;
+            }
+            this.proxy = new HttpHost(configuration.name, configuration.port);
+            if (configuration.getUserName() != null && !configuration.getUserName().isEmpty()
+                    && configuration.getPassword() != null && !configuration.getPassword().isEmpty()) {
+                this.credentials = new UsernamePasswordCredentials(configuration.getUserName(),
+                        configuration.getPassword());
+            } else {
+                this.credentials = null;
+            }
+        }
+
+        void applyTo(@Nonnull DefaultHttpClient httpclient) {
+            if (proxy == null) {
+                return;
+            }
+            if (credentials != null) {
+                httpclient.getCredentialsProvider().setCredentials(
+                        new AuthScope(proxy.getHostName(), proxy.getPort()), credentials);
+            }
+            httpclient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+        }
+
+        void log(@Nonnull String url, @Nonnull PrintStream logger) {
+            final boolean hasProxy = configuration != null;
+            logger.format("Proxy Settings: For the URL [%s] %n", url)
+                    .format("  Found proxy configuration [%s] %n", hasProxy);
+            if (hasProxy) {
+                logger.format("  Used proxy configuration  [%s] %n", proxy != null);
+                if (matchedPattern != null) {
+                    logger.format("  Found matching Proxy exception rule [%s] %n", matchedPattern);
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    static Route resolve(@Nonnull String host) {
+        final ProxyConfiguration configuration = Jenkins.getInstance().proxy;
+        final Route route = ROUTES.get(host);
+        // Jenkins.proxy can be replaced without saving it, for example from the script console
+        if (route != null && route.configuration == configuration) {
+            return route;
+        }
+        final Route resolved = decide(configuration, host);
+        ROUTES.put(host, resolved);
+        return resolved;
+    }
+
+    private static Route decide(@CheckForNull ProxyConfiguration configuration, String host) {
+        if (configuration == null) {
+            return new Route(null, null);
+        }
+        // ProxyConfig might have no proxy exception for certain hosts
+        String matchedPattern = null;
+        for (Pattern noProxyPattern : configuration.getNoProxyHostPatterns()) {
+            if (noProxyPattern.matcher(host).matches()) {
+                matchedPattern = noProxyPattern.toString();
+            }
+        }
+        return new Route(configuration, matchedPattern);
+    }
+
+    static void invalidate() {
+        ROUTES.clear();
+    }
+
+    @Extension
+    public static class Invalidator extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof ProxyConfiguration) {
+                invalidate();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package hockeyapp;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a release notes file where it lives, so that only the first {@code maxBytes} bytes travel to the
+ * controller as text.
+ * <p>
+ * The charset comes from the byte order mark if there is one. Otherwise the file is read as UTF-8 if it is valid
+ * UTF-8, and in the default charset of the agent (ISO-8859-1 if that is UTF-8 as well) if not.
+ */
+final class ReleaseNotesFileReader extends MasterToSlaveFileCallable<ReleaseNotesFileReader.Notes> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxBytes;
+
+    /**
+     * @param maxBytes maximum number of bytes to read, {@code 0} for no limit.
+     */
+    ReleaseNotesFileReader(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static final class Notes implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+        private final String charset;
+        private final long omittedBytes;
+
+        Notes(String text, String charset, long omittedBytes) {
+            this.text = text;
+            this.charset = charset;
+            this.omittedBytes = omittedBytes;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        String getCharset() {
+            return charset;
+        }
+
+        /**
+         * Bytes of the file beyond the limit, {@code 0} if the whole file was read.
+         */
+        long getOmittedBytes() {
+            return omittedBytes;
+        }
+    }
+
+    @Override
+    public Notes invoke(File f, VirtualChannel channel) throws IOException {
+        final long length = f.length();
+        final int toRead = (int) (maxBytes > 0 ? Math.min(length, maxBytes) : Math.min(length, Integer.MAX_VALUE - 8));
+        final byte[] bytes = new byte[toRead];
+        int read = 0;
+        try (InputStream is = new FileInputStream(f)) {
+            int n;
+            while (read < toRead && (n = is.read(bytes, read, toRead - read)) != -1) {
+                read += n;
+            }
+        }
+        final boolean truncated = read < length;
+
+        int offset = 0;
+        Charset charset = null;
+        if (read >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            charset = StandardCharsets.UTF_8;
+            offset = 3;
+        } else if (read >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+            charset = StandardCharsets.UTF_16BE;
+            offset = 2;
+        } else if (read >= 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xFE) {
+            charset = StandardCharsets.UTF_16LE;
+            offset = 2;
+        }
+
+        final ByteBuffer in = ByteBuffer.wrap(bytes, offset, read - offset);
+        String text = null;
+        if (charset == null) {
+            text = decode(in.duplicate(), StandardCharsets.UTF_8, truncated);
+            charset = text != null ? StandardCharsets.UTF_8
+                    : Charset.defaultCharset().equals(StandardCharsets.UTF_8) ? StandardCharsets.ISO_8859_1
+                    : Charset.defaultCharset();
+        }
+        if (text == null) {
+            text = decode(in, charset, truncated);
+        }
+        if (text == null) {
+            text = new String(bytes, offset, read - offset, charset);
+        }
+        return new Notes(text, charset.name(), length - read);
+    }
+
+    /**
+     * @param truncated whether the input may end in the middle of a character, which is then left out.
+     * @return the text, or {@code null} if the input is not valid in {@code charset}.
+     */
+    private static String decode(ByteBuffer in, Charset charset, boolean truncated) {
+        final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        final CharBuffer out = CharBuffer.allocate((int) (in.remaining() * (double) decoder.maxCharsPerByte()) + 1);
+        if (decoder.decode(in, out, !truncated).isError()) {
+            return null;
+        }
+        if (!truncated) {
+            if (decoder.flush(out).isError()) {
+                return null;
+            }
+        } else if (in.remaining() > 4) {
+            // More than a cut off character left over
+            return null;
+        }
+        out.flip();
+        return out.toString();
+    }
+}
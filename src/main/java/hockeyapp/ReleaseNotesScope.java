@@ -0,0 +1,115 @@
+package hockeyapp;
+
+import hudson.EnvVars;
+import hudson.model.Run;
+import hudson.tasks.test.AbstractTestResultAction;
+import net.hockeyapp.jenkins.releaseNotes.ReleaseNotesTemplate;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Values of a build for {@link ReleaseNotesTemplate}s. Change logs and test results are only looked up if the
+ * template uses them.
+ */
+final class ReleaseNotesScope implements ReleaseNotesTemplate.Scope {
+
+    private final Run<?, ?> build;
+    private final EnvVars vars;
+    private List<ChangeScope> changes;
+    private AbstractTestResultAction<?> testResults;
+    private boolean testResultsResolved;
+
+    ReleaseNotesScope(@Nonnull Run<?, ?> build, @Nonnull EnvVars vars) {
+        this.build = build;
+        this.vars = vars;
+    }
+
+    @CheckForNull
+    @Override
+    public Object get(@Nonnull String name) {
+        switch (name) {
+            case "changes":
+                return getChanges();
+            case "changes.url":
+                return getBuildUrl() == null ? null : getBuildUrl() + "changes";
+            case "build.number":
+                return build.getNumber();
+            case "build.name":
+                return build.getDisplayName();
+            case "build.url":
+                return getBuildUrl();
+            default:
+                if (name.startsWith("tests.")) {
+                    return getTestValue(name);
+                }
+                return vars.get(name);
+        }
+    }
+
+    private List<ChangeScope> getChanges() {
+        if (changes == null) {
+            final List<ChangelogCursor.Change> collected = ChangelogCollector.collect(build, false).getChanges();
+            changes = new ArrayList<>(collected.size());
+            for (ChangelogCursor.Change change : collected) {
+                changes.add(new ChangeScope(change));
+            }
+        }
+        return changes;
+    }
+
+    @CheckForNull
+    private String getBuildUrl() {
+        return vars.get("BUILD_URL");
+    }
+
+    @CheckForNull
+    private Object getTestValue(String name) {
+        if (!testResultsResolved) {
+            testResults = build.getAction(AbstractTestResultAction.class);
+            testResultsResolved = true;
+        }
+        if (testResults == null) {
+            return null;
+        }
+        switch (name) {
+            case "tests.total":
+                return testResults.getTotalCount();
+            case "tests.failed":
+                return testResults.getFailCount();
+            case "tests.skipped":
+                return testResults.getSkipCount();
+            case "tests.passed":
+                return testResults.getTotalCount() - testResults.getFailCount() - testResults.getSkipCount();
+            case "tests.url":
+                return getBuildUrl() == null ? null : getBuildUrl() + testResults.getUrlName();
+            default:
+                return null;
+        }
+    }
+
+    private static final class ChangeScope implements ReleaseNotesTemplate.Scope {
+        private final ChangelogCursor.Change change;
+
+        ChangeScope(ChangelogCursor.Change change) {
+            this.change = change;
+        }
+
+        @CheckForNull
+        @Override
+        public Object get(@Nonnull String name) {
+            switch (name) {
+                case "author":
+                    return change.getAuthor();
+                case "message":
+                    return change.getMsg();
+                case "commitId":
+                    return change.getCommitId();
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package hockeyapp;
+
+import hudson.Extension;
+import hudson.model.Api;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import net.hockeyapp.engine.RequestPacer;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How long requests to HockeyApp waited for the rate limit of their API token, shown to administrators.
+ */
+@Extension
+@ExportedBean
+public final class RequestPacingAction implements RootAction {
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @Exported(inline = true)
+    public List<Token> getTokens() {
+        final List<Token> tokens = new ArrayList<>();
+        if (Jenkins.getInstance().hasPermission(Jenkins.ADMINISTER)) {
+            for (RequestPacer.TokenStatistics statistics : RequestPacer.getStatistics()) {
+                tokens.add(new Token(statistics));
+            }
+        }
+        return tokens;
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return "HockeyApp Request Pacing";
+    }
+
+    public String getUrlName() {
+        return "hockeyapp-pacing";
+    }
+
+    /**
+     * Requests sent with one token, known by its fingerprint.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Token {
+        private final RequestPacer.TokenStatistics statistics;
+
+        private Token(RequestPacer.TokenStatistics statistics) {
+            this.statistics = statistics;
+        }
+
+        @Exported
+        public String getFingerprint() {
+            return statistics.getFingerprint();
+        }
+
+        @Exported
+        public long getRequests() {
+            return statistics.getRequests();
+        }
+
+        @Exported
+        public long getDelayed() {
+            return statistics.getDelayed();
+        }
+
+        @Exported
+        public long getThrottled() {
+            return statistics.getThrottled();
+        }
+
+        @Exported
+        public long getWaitMillis() {
+            return statistics.getWaitMillis();
+        }
+    }
+}
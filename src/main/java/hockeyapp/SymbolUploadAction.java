@@ -0,0 +1,217 @@
+package hockeyapp;
+
+import hudson.model.Computer;
+import hudson.model.Result;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import net.hockeyapp.engine.HockeyappUploader;
+import net.hockeyapp.engine.UploadListener;
+import net.hockeyapp.engine.UploadRequest;
+import net.hockeyapp.engine.UploadResult;
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Symbols sent to an existing version once they were copied from the workspace, without holding up the build that
+ * made them. One per application, shown with its status on the build page and in the remote API of the build; the
+ * upload logs to {@link #LOG_FILE_NAME} in the build directory since the build log may be closed by then.
+ */
+@ExportedBean(defaultVisibility = 2)
+public class SymbolUploadAction implements RunAction2 {
+
+    static final String LOG_FILE_NAME = "hockeyapp-symbols.log";
+
+    private static final Logger LOGGER = Logger.getLogger(SymbolUploadAction.class.getName());
+
+    private final int appIndex;
+    private final String url;
+    private volatile boolean done;
+    private volatile int statusCode;
+    @CheckForNull
+    private volatile String error;
+    private volatile long bytes;
+    private volatile long durationMillis;
+    private transient Future<?> future;
+    private transient Run<?, ?> run;
+
+    private SymbolUploadAction(int appIndex, String url) {
+        this.appIndex = appIndex;
+        this.url = url;
+    }
+
+    /**
+     * Starts sending the symbols and adds the action to the build.
+     *
+     * @param directory      holds the copies of the symbols, deleted once they are sent.
+     * @param log            closed once the symbols are sent.
+     * @param failGracefully whether a failure leaves the result of the build alone while it is still running.
+     */
+    @Nonnull
+    static SymbolUploadAction submit(@Nonnull Run<?, ?> build, int appIndex, @Nonnull HockeyappUploader uploader,
+                                     @Nonnull UploadRequest request, @Nonnull File directory,
+                                     @Nonnull PrintStream log, boolean failGracefully) {
+        final SymbolUploadAction action = new SymbolUploadAction(appIndex, request.getUrl().toString());
+        build.addAction(action);
+        action.future = Computer.threadPoolForRemoting.submit(
+                () -> action.send(build, uploader, request, directory, log, failGracefully));
+        return action;
+    }
+
+    private void send(Run<?, ?> build, HockeyappUploader uploader, UploadRequest request, File directory,
+                      PrintStream log, boolean failGracefully) {
+        final long startTime = System.currentTimeMillis();
+        try {
+            final UploadResult result = uploader.upload(request, new UploadListener() {
+                @Override
+                public void log(@Nonnull String message) {
+                    log.println(message);
+                }
+            });
+            statusCode = result.getStatusCode();
+            bytes = result.getBytesSent();
+            durationMillis = result.getDurationMillis();
+            if (!result.isSuccessful()) {
+                error = Messages.UNEXPECTED_RESPONSE_CODE(statusCode) + " " + result.getErrorBody();
+            }
+        } catch (Exception e) {
+            e.printStackTrace(log);
+            error = e.toString();
+            durationMillis = System.currentTimeMillis() - startTime;
+        } finally {
+            FileUtils.deleteQuietly(directory);
+            done = true;
+            log.println(error == null ? Messages.SYMBOLS_SENT(url, bytes, durationMillis) : error);
+            log.close();
+            if (error != null && !failGracefully && build.isBuilding()) {
+                build.setResult(Result.FAILURE);
+            }
+            try {
+                build.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not save the symbol upload of " + build, e);
+            }
+        }
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    /**
+     * @return the build, {@code null} until the action is attached to it.
+     */
+    @CheckForNull
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public String getIconFileName() {
+        if (!done) {
+            return future == null ? "grey.png" : "clock.png";
+        }
+        return error == null ? "blue.png" : "red.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        final String status;
+        if (!done) {
+            status = future == null ? Messages.SYMBOLS_INTERRUPTED() : Messages.SYMBOLS_SENDING();
+        } else {
+            status = error == null ? Messages.SYMBOLS_SUCCEEDED() : Messages.SYMBOLS_FAILED();
+        }
+        return Messages.SYMBOLS_ACTION(appIndex + 1, status);
+    }
+
+    @Override
+    public String getUrlName() {
+        return "hockeyappSymbols" + appIndex;
+    }
+
+    /**
+     * Serves {@link #LOG_FILE_NAME}, shared by the symbol uploads of all applications of the build.
+     */
+    public void doLog(StaplerResponse rsp) throws IOException {
+        final File logFile = run == null ? null : new File(run.getRootDir(), LOG_FILE_NAME);
+        if (logFile == null || !logFile.isFile()) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        Files.copy(logFile.toPath(), rsp.getOutputStream());
+    }
+
+    /**
+     * @return the upload, {@code null} once Jenkins restarted.
+     */
+    @CheckForNull
+    Future<?> getFuture() {
+        return future;
+    }
+
+    @Exported
+    public int getAppIndex() {
+        return appIndex;
+    }
+
+    @Exported
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return whether the upload ended, {@code false} also if Jenkins restarted before it did.
+     */
+    @Exported
+    public boolean isDone() {
+        return done;
+    }
+
+    @Exported
+    public boolean isSuccessful() {
+        return done && error == null;
+    }
+
+    /**
+     * @return the HTTP status of the upload, {@code 0} if there was no response.
+     */
+    @Exported
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Exported
+    @CheckForNull
+    public String getError() {
+        return error;
+    }
+
+    @Exported
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Exported
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
@@ -0,0 +1,360 @@
+package hockeyapp;
+
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent record of the uploads of a build, stored next to {@code build.xml}.
+ * <p>
+ * Every artifact goes through {@link Phase#STAGED}, {@link Phase#UPLOADING} and {@link Phase#COMPLETED}; the
+ * HockeyApp response is kept once known. Another attempt of the same build (for example a Pipeline {@code retry}
+ * after a controller restart) does not send completed uploads again and reuses the staged artifacts of pending
+ * ones. On startup, completed uploads whose links were never added to their build are reconciled.
+ */
+public final class UploadJournal {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadJournal.class.getName());
+    private static final String FILE_NAME = "hockeyapp-journal.xml";
+    private static final String INDEX_FILE_NAME = "hockeyapp-journal-index.xml";
+
+    // Journals of the builds currently uploading, shared by parallel steps of the same build
+    private static final Map<String, UploadJournal> OPEN = new ConcurrentHashMap<>();
+
+    public enum Phase {
+        STAGED, UPLOADING, COMPLETED, INTERRUPTED
+    }
+
+    public static final class Entry {
+        private final int appIndex;
+        // Null in journals written before targets were kept, such entries are never matched
+        private final String target;
+        private final String artifact;
+        private final long size;
+        private String stagedFile;
+        private String appId;
+        private Phase phase;
+        private String versionId;
+        private String configUrl;
+        private String publicUrl;
+        private String publicIdentifier;
+        private boolean recorded;
+
+        private Entry(int appIndex, String target, String artifact, long size) {
+            this.appIndex = appIndex;
+            this.target = target;
+            this.artifact = artifact;
+            this.size = size;
+        }
+
+        public int getAppIndex() {
+            return appIndex;
+        }
+
+        /**
+         * @return where the artifact goes, see {@link UploadPlan#getTarget()}.
+         */
+        @CheckForNull
+        public String getTarget() {
+            return target;
+        }
+
+        public String getArtifact() {
+            return artifact;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @CheckForNull
+        public String getStagedFile() {
+            return stagedFile;
+        }
+
+        @CheckForNull
+        public String getAppId() {
+            return appId;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        @CheckForNull
+        public String getVersionId() {
+            return versionId;
+        }
+
+        @CheckForNull
+        public String getConfigUrl() {
+            return configUrl;
+        }
+
+        @CheckForNull
+        public String getPublicUrl() {
+            return publicUrl;
+        }
+
+        @CheckForNull
+        public String getPublicIdentifier() {
+            return publicIdentifier;
+        }
+
+        public boolean isRecorded() {
+            return recorded;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private transient String buildId;
+    // null for detached journals
+    private transient File file;
+    private transient int users;
+
+    private UploadJournal() {
+    }
+
+    @Nonnull
+    static UploadJournal open(@Nonnull Run<?, ?> build) {
+        return OPEN.compute(build.getExternalizableId(), (id, journal) -> {
+            if (journal == null) {
+                journal = load(build);
+            }
+            journal.users++;
+            return journal;
+        });
+    }
+
+    /**
+     * A journal that is kept in memory only, for uploads that must not affect later attempts (dry runs).
+     */
+    @Nonnull
+    static UploadJournal detached() {
+        return new UploadJournal();
+    }
+
+    static void close(@Nonnull Run<?, ?> build) {
+        final UploadJournal journal = OPEN.computeIfPresent(build.getExternalizableId(),
+                (id, open) -> --open.users > 0 ? open : null);
+        if (journal == null) {
+            final UploadJournal closed = load(build);
+            if (closed.isSettled()) {
+                Index.remove(build.getExternalizableId());
+            }
+        }
+    }
+
+    /**
+     * @return whether every upload the build journaled got to HockeyApp and was recorded.
+     */
+    static boolean isSettled(@Nonnull Run<?, ?> build) {
+        final UploadJournal open = OPEN.get(build.getExternalizableId());
+        return (open != null ? open : load(build)).isSettled();
+    }
+
+    @Nonnull
+    private static UploadJournal load(@Nonnull Run<?, ?> build) {
+        final File file = new File(build.getRootDir(), FILE_NAME);
+        UploadJournal journal = null;
+        if (file.exists()) {
+            try {
+                journal = (UploadJournal) new XmlFile(file).read();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not read upload journal " + file, e);
+            }
+        }
+        if (journal == null) {
+            journal = new UploadJournal();
+        }
+        journal.buildId = build.getExternalizableId();
+        journal.file = file;
+        return journal;
+    }
+
+    private synchronized void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        new XmlFile(file).write(this);
+    }
+
+    private synchronized boolean isSettled() {
+        for (Entry entry : entries) {
+            if (entry.phase != Phase.COMPLETED || !entry.recorded) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param target where the artifact goes, steps of a build may send the same artifact to several apps.
+     */
+    @CheckForNull
+    synchronized Entry find(int appIndex, @Nonnull String target, @Nonnull String artifact, long size) {
+        for (Entry entry : entries) {
+            if (entry.appIndex == appIndex && entry.size == size && target.equals(entry.target)
+                    && entry.artifact.equals(artifact)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Nonnull
+    synchronized Entry staged(int appIndex, @Nonnull String target, @Nonnull String artifact, long size,
+                              @Nonnull File stagedFile) throws IOException {
+        Entry entry = find(appIndex, target, artifact, size);
+        if (entry == null) {
+            entry = new Entry(appIndex, target, artifact, size);
+            entries.add(entry);
+        }
+        entry.stagedFile = stagedFile.getAbsolutePath();
+        entry.phase = Phase.STAGED;
+        entry.recorded = false;
+        save();
+        if (file != null) {
+            Index.add(buildId);
+        }
+        return entry;
+    }
+
+    synchronized void uploading(@Nonnull Entry entry, @CheckForNull String appId) throws IOException {
+        entry.appId = appId;
+        entry.phase = Phase.UPLOADING;
+        save();
+    }
+
+    synchronized void completed(@Nonnull Entry entry, String versionId, String configUrl, String publicUrl,
+                                String publicIdentifier) throws IOException {
+        entry.phase = Phase.COMPLETED;
+        entry.versionId = versionId;
+        entry.configUrl = configUrl;
+        entry.publicUrl = publicUrl;
+        entry.publicIdentifier = publicIdentifier;
+        save();
+    }
+
+    synchronized void recorded(@Nonnull Entry entry) throws IOException {
+        entry.recorded = true;
+        save();
+    }
+
+    /**
+     * Brings the journals of builds interrupted by a restart up to date. Completed uploads get their links,
+     * uploads that were in flight are marked as interrupted so that the next attempt sends them again.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void reconcile() {
+        for (String id : Index.list()) {
+            final Run<?, ?> build;
+            try {
+                build = Run.fromExternalizableId(id);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Could not load build " + id, e);
+                Index.remove(id);
+                continue;
+            }
+            if (build == null) {
+                Index.remove(id);
+                continue;
+            }
+
+            final UploadJournal journal = load(build);
+            try {
+                boolean changed = false;
+                synchronized (journal) {
+                    for (Entry entry : journal.entries) {
+                        if (entry.phase == Phase.COMPLETED && !entry.recorded && entry.configUrl != null) {
+                            final String name = entry.artifact.substring(
+                                    Math.max(entry.artifact.lastIndexOf('/'), entry.artifact.lastIndexOf('\\')) + 1);
+                            HockeyappUploadRecord.add(build, new HockeyappUploadRecord.Upload(entry.appIndex, name,
+                                    entry.versionId, entry.configUrl, entry.publicUrl, entry.size, 0));
+                            entry.recorded = true;
+                            changed = true;
+                        } else if (entry.phase == Phase.UPLOADING) {
+                            entry.phase = Phase.INTERRUPTED;
+                            changed = true;
+                        }
+                    }
+                    if (changed) {
+                        journal.save();
+                    }
+                }
+                if (changed) {
+                    build.save();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not reconcile upload journal of " + id, e);
+            }
+            if (journal.isSettled() || !build.isBuilding()) {
+                Index.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Builds with uploads that are not settled yet, so that startup does not have to look at every build.
+     */
+    static final class Index {
+        private final Set<String> builds = new LinkedHashSet<>();
+
+        private static XmlFile getFile() {
+            return new XmlFile(new File(Jenkins.getInstance().getRootDir(), INDEX_FILE_NAME));
+        }
+
+        private static Index read() {
+            final XmlFile file = getFile();
+            if (file.exists()) {
+                try {
+                    return (Index) file.read();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not read upload journal index", e);
+                }
+            }
+            return new Index();
+        }
+
+        static synchronized List<String> list() {
+            return new ArrayList<>(read().builds);
+        }
+
+        static synchronized void add(String id) {
+            final Index index = read();
+            if (index.builds.add(id)) {
+                write(index);
+            }
+        }
+
+        static synchronized void remove(String id) {
+            final Index index = read();
+            if (index.builds.remove(id)) {
+                write(index);
+            }
+        }
+
+        private static void write(Index index) {
+            try {
+                getFile().write(index);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not write upload journal index", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package hockeyapp;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.util.Secret;
+import net.hockeyapp.engine.UploadPreflight;
+import net.hockeyapp.jenkins.releaseNotes.FileReleaseNotes;
+import net.hockeyapp.jenkins.releaseNotes.ManualReleaseNotes;
+import net.hockeyapp.jenkins.releaseNotes.TemplateReleaseNotes;
+import net.hockeyapp.jenkins.uploadMethod.AppCreation;
+import net.hockeyapp.jenkins.uploadMethod.ChunkedUpload;
+import net.hockeyapp.jenkins.uploadMethod.VersionCreation;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Everything an upload of one application needs to know, resolved once per build before any artifact is copied.
+ * <p>
+ * Build variables are expanded and the configuration is checked here, so that the artifacts of an application and
+ * the requests running next to their transfer all work from the same values. Instances do not change once created.
+ */
+final class UploadPlan {
+
+    private final int appIndex;
+    private final String filePath;
+    @CheckForNull
+    private final String dsymPath;
+    @CheckForNull
+    private final String libsPath;
+    @CheckForNull
+    private final String tags;
+    @CheckForNull
+    private final String teams;
+    private final boolean mandatory;
+    private final boolean notifyTeam;
+    private final boolean downloadAllowed;
+    @CheckForNull
+    private final Boolean publicPage;
+    private final URL host;
+    private final URL url;
+    private final String method;
+    private final String apiToken;
+    @CheckForNull
+    private final String appId;
+    @CheckForNull
+    private final String versionCode;
+    private final boolean symbolsOnly;
+    @CheckForNull
+    private final String oldVersionsToKeep;
+    @CheckForNull
+    private final String sortOldVersions;
+    @CheckForNull
+    private final String strategyOldVersions;
+    @CheckForNull
+    private final String releaseNotes;
+    private final boolean releaseNotesMarkdown;
+    @CheckForNull
+    private final Chunking chunking;
+
+    /**
+     * Where and how an upload in chunks goes.
+     */
+    static final class Chunking {
+        private final String ownerName;
+        private final String appName;
+        private final int chunkSize;
+        private final int parallelism;
+        private final int chunkRetries;
+
+        private Chunking(String ownerName, String appName, int chunkSize, int parallelism, int chunkRetries) {
+            this.ownerName = ownerName;
+            this.appName = appName;
+            this.chunkSize = chunkSize;
+            this.parallelism = parallelism;
+            this.chunkRetries = chunkRetries;
+        }
+
+        String getOwnerName() {
+            return ownerName;
+        }
+
+        String getAppName() {
+            return appName;
+        }
+
+        /**
+         * @return the chunk size in bytes, if the server does not ask for one.
+         */
+        int getChunkSize() {
+            return chunkSize;
+        }
+
+        int getParallelism() {
+            return parallelism;
+        }
+
+        int getChunkRetries() {
+            return chunkRetries;
+        }
+    }
+
+    private UploadPlan(UploadPlan plan, URL host, URL url, String apiToken, @CheckForNull String appId,
+                       @CheckForNull String releaseNotes) {
+        this.appIndex = plan.appIndex;
+        this.filePath = plan.filePath;
+        this.dsymPath = plan.dsymPath;
+        this.libsPath = plan.libsPath;
+        this.tags = plan.tags;
+        this.teams = plan.teams;
+        this.mandatory = plan.mandatory;
+        this.notifyTeam = plan.notifyTeam;
+        this.downloadAllowed = plan.downloadAllowed;
+        this.publicPage = plan.publicPage;
+        this.host = host;
+        this.url = url;
+        this.method = plan.method;
+        this.apiToken = apiToken;
+        this.appId = appId;
+        this.versionCode = plan.versionCode;
+        this.symbolsOnly = plan.symbolsOnly;
+        this.oldVersionsToKeep = plan.oldVersionsToKeep;
+        this.sortOldVersions = plan.sortOldVersions;
+        this.strategyOldVersions = plan.strategyOldVersions;
+        this.releaseNotes = releaseNotes;
+        this.releaseNotesMarkdown = plan.releaseNotesMarkdown;
+        this.chunking = plan.chunking;
+    }
+
+    private UploadPlan(HockeyappApplication application, int appIndex, EnvVars vars, URL host, Secret apiToken)
+            throws AbortException {
+        this.appIndex = appIndex;
+        this.filePath = vars.expand(application.filePath);
+        this.dsymPath = expandToNull(vars, application.dsymPath);
+        this.libsPath = expandToNull(vars, application.libsPath);
+        this.tags = expandToNull(vars, application.tags);
+        this.teams = expandToNull(vars, application.teams);
+        this.mandatory = application.mandatory;
+        this.notifyTeam = application.notifyTeam;
+        this.downloadAllowed = application.downloadAllowed;
+        this.apiToken = vars.expand(Secret.toString(apiToken));
+
+        if (application.uploadMethod instanceof VersionCreation) {
+            final VersionCreation versionCreation = (VersionCreation) application.uploadMethod;
+            this.appId = vars.expand(versionCreation.getAppId());
+            if (appId.isEmpty()) {
+                throw new AbortException("No AppId specified!");
+            }
+            this.versionCode = expandToNull(vars, versionCreation.getVersionCode());
+            this.symbolsOnly = versionCreation.isSymbolsOnly();
+            this.publicPage = null;
+            this.chunking = null;
+            if (symbolsOnly) {
+                if (versionCode == null) {
+                    throw new AbortException("Symbols can only be sent to an existing version, set its version code.");
+                }
+                if (dsymPath == null && libsPath == null) {
+                    throw new AbortException("No dSYM or LIBS specified to send.");
+                }
+                if (application.getNumberOldVersions() != null) {
+                    throw new AbortException("Old versions are not deleted when only symbols are sent.");
+                }
+            }
+        } else if (application.uploadMethod instanceof AppCreation) {
+            this.appId = null;
+            this.versionCode = null;
+            this.symbolsOnly = false;
+            this.publicPage = ((AppCreation) application.uploadMethod).publicPage;
+            this.chunking = null;
+        } else if (application.uploadMethod instanceof ChunkedUpload) {
+            final ChunkedUpload chunkedUpload = (ChunkedUpload) application.uploadMethod;
+            this.appId = null;
+            this.versionCode = null;
+            this.symbolsOnly = false;
+            this.publicPage = null;
+            this.chunking = new Chunking(vars.expand(chunkedUpload.getOwnerName()),
+                    vars.expand(chunkedUpload.getAppName()), chunkedUpload.getChunkSize() * 1024 * 1024,
+                    chunkedUpload.getParallelism(), chunkedUpload.getChunkRetries());
+            if (chunking.ownerName.isEmpty() || chunking.appName.isEmpty()) {
+                throw new AbortException("No owner or app name specified!");
+            }
+            if (dsymPath != null || libsPath != null) {
+                throw new AbortException("Symbols and packed libraries can not be uploaded in chunks.");
+            }
+            if (application.getNumberOldVersions() != null) {
+                throw new AbortException("Old versions can not be deleted after an upload in chunks.");
+            }
+            final String apiUrl = chunkedUpload.getApiUrl();
+            host = apiUrl == null ? toUrl(ChunkedUpload.DEFAULT_API_URL) : toUrl(vars.expand(apiUrl));
+        } else {
+            throw new AbortException("No upload method specified!");
+        }
+        this.host = host;
+        if (chunking != null) {
+            // Begin an upload of a new release
+            // https://docs.microsoft.com/en-us/appcenter/distribution/uploading
+            this.url = toUrl(host, "/v0.1/apps/" + chunking.ownerName + "/" + chunking.appName + "/uploads/releases");
+            this.method = HttpPost.METHOD_NAME;
+        } else {
+            this.url = endpoint(host, appId, versionCode);
+            this.method = appId != null && versionCode != null ? HttpPut.METHOD_NAME : HttpPost.METHOD_NAME;
+        }
+
+        this.oldVersionsToKeep = application.getNumberOldVersions();
+        this.sortOldVersions = application.getSortOldVersions();
+        this.strategyOldVersions = application.getStrategyOldVersions();
+        if (oldVersionsToKeep != null) {
+            if (!StringUtils.isNumeric(oldVersionsToKeep)) {
+                throw new AbortException(Messages.COUNT_MISSING_FOR_CLEANUP() + "\n" + Messages.ABORTING_CLEANUP());
+            }
+            if (Integer.parseInt(oldVersionsToKeep) < 1) {
+                throw new AbortException(Messages.TOO_FEW_VERSIONS_RETAINED() + "\n" + Messages.ABORTING_CLEANUP());
+            }
+        }
+
+        this.releaseNotes = null;
+        if (application.releaseNotesMethod instanceof ManualReleaseNotes) {
+            this.releaseNotesMarkdown = ((ManualReleaseNotes) application.releaseNotesMethod).isMarkdown();
+        } else if (application.releaseNotesMethod instanceof FileReleaseNotes) {
+            this.releaseNotesMarkdown = ((FileReleaseNotes) application.releaseNotesMethod).isMarkdown();
+        } else if (application.releaseNotesMethod instanceof TemplateReleaseNotes) {
+            this.releaseNotesMarkdown = ((TemplateReleaseNotes) application.releaseNotesMethod).isMarkdown();
+        } else {
+            this.releaseNotesMarkdown = false;
+        }
+    }
+
+    /**
+     * @throws AbortException if the application is not configured properly, with a message for the build log.
+     */
+    @Nonnull
+    static UploadPlan resolve(@Nonnull HockeyappApplication application, int appIndex, @Nonnull EnvVars vars,
+                              @Nonnull URL host, @CheckForNull Secret apiToken) throws AbortException {
+        return new UploadPlan(application, appIndex, vars, host, apiToken);
+    }
+
+    /**
+     * @return a copy of this plan sending the given release notes, {@code null} for none.
+     */
+    @Nonnull
+    UploadPlan withReleaseNotes(@CheckForNull String releaseNotes) {
+        return new UploadPlan(this, host, url, apiToken, appId, releaseNotes);
+    }
+
+    /**
+     * @param appId the App ID on the mirror, {@code null} if it is the same as here.
+     * @return a copy of this plan sending the same artifacts to a mirror.
+     */
+    @Nonnull
+    UploadPlan forMirror(@Nonnull URL host, @Nonnull String apiToken, @CheckForNull String appId)
+            throws AbortException {
+        if (chunking != null) {
+            throw new AbortException("Mirrors can not be used with uploads in chunks.");
+        }
+        if (symbolsOnly) {
+            throw new AbortException("Mirrors can not be used when only symbols are sent.");
+        }
+        final String mirrorAppId = appId == null || this.appId == null ? this.appId : appId;
+        return new UploadPlan(this, host, endpoint(host, mirrorAppId, versionCode), apiToken, mirrorAppId,
+                releaseNotes);
+    }
+
+    private static URL endpoint(URL host, @CheckForNull String appId, @CheckForNull String versionCode)
+            throws AbortException {
+        if (appId == null) {
+            // Uploads app and assigns a new version. Only if there is no existing app?
+            // https://support.hockeyapp.net/kb/api/api-apps#upload-app
+            return toUrl(host, "/api/2/apps/upload");
+        } else if (versionCode != null) {
+            // Update an existing version
+            // https://support.hockeyapp.net/kb/api/api-versions#update-version
+            return toUrl(host, "/api/2/apps/" + appId + "/app_versions/" + versionCode);
+        } else {
+            // Upload a new version
+            // https://support.hockeyapp.net/kb/api/api-versions#upload-version
+            return toUrl(host, "/api/2/apps/" + appId + "/app_versions/upload");
+        }
+    }
+
+    @CheckForNull
+    private static String expandToNull(EnvVars vars, @CheckForNull String value) {
+        if (value == null) {
+            return null;
+        }
+        final String expanded = vars.expand(value);
+        return expanded.isEmpty() ? null : expanded;
+    }
+
+    private static URL toUrl(String url) throws AbortException {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new AbortException("Invalid URL " + url + ": " + e.getMessage());
+        }
+    }
+
+    private static URL toUrl(URL host, String path) throws AbortException {
+        try {
+            return new URL(host, path);
+        } catch (MalformedURLException e) {
+            throw new AbortException("Invalid upload URL " + host + path + ": " + e.getMessage());
+        }
+    }
+
+    int getAppIndex() {
+        return appIndex;
+    }
+
+    String getFilePath() {
+        return filePath;
+    }
+
+    @CheckForNull
+    String getDsymPath() {
+        return dsymPath;
+    }
+
+    @CheckForNull
+    String getLibsPath() {
+        return libsPath;
+    }
+
+    @CheckForNull
+    String getTags() {
+        return tags;
+    }
+
+    @CheckForNull
+    String getTeams() {
+        return teams;
+    }
+
+    boolean isMandatory() {
+        return mandatory;
+    }
+
+    boolean isNotifyTeam() {
+        return notifyTeam;
+    }
+
+    boolean isDownloadAllowed() {
+        return downloadAllowed;
+    }
+
+    @CheckForNull
+    Boolean getPublicPage() {
+        return publicPage;
+    }
+
+    URL getHost() {
+        return host;
+    }
+
+    URL getUrl() {
+        return url;
+    }
+
+    /**
+     * @return identifies where uploads go: the endpoint, which holds the App ID, and the token fingerprint.
+     */
+    String getTarget() {
+        return url + "|" + UploadPreflight.fingerprint(apiToken);
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getApiToken() {
+        return apiToken;
+    }
+
+    /**
+     * @return the App ID of an existing app, {@code null} if the upload creates the app.
+     */
+    @CheckForNull
+    String getAppId() {
+        return appId;
+    }
+
+    @CheckForNull
+    String getVersionCode() {
+        return versionCode;
+    }
+
+    /**
+     * @return whether only symbols and packed libraries are sent to the version, in the background.
+     */
+    boolean isSymbolsOnly() {
+        return symbolsOnly;
+    }
+
+    boolean isCleanupEnabled() {
+        return oldVersionsToKeep != null;
+    }
+
+    @CheckForNull
+    String getOldVersionsToKeep() {
+        return oldVersionsToKeep;
+    }
+
+    @CheckForNull
+    String getSortOldVersions() {
+        return sortOldVersions;
+    }
+
+    @CheckForNull
+    String getStrategyOldVersions() {
+        return strategyOldVersions;
+    }
+
+    @CheckForNull
+    String getReleaseNotes() {
+        return releaseNotes;
+    }
+
+    boolean isReleaseNotesMarkdown() {
+        return releaseNotesMarkdown;
+    }
+
+    /**
+     * @return how the artifact is split, {@code null} if it is sent in a single request.
+     */
+    @CheckForNull
+    Chunking getChunking() {
+        return chunking;
+    }
+}
@@ -0,0 +1,247 @@
+package hockeyapp;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Api;
+import hudson.model.Item;
+import hudson.model.RootAction;
+import hudson.model.Run;
+import jenkins.model.TransientActionFactory;
+import net.hockeyapp.engine.ThroughputHistory;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.Nonnull;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress of a running upload, reported to the build log at a limited rate and exposed through the remote API
+ * of the build ({@code actions[uploads]}) and of {@code /hockeyapp-uploads/}.
+ */
+@ExportedBean(defaultVisibility = 2)
+public final class UploadProgress {
+
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final int REPORT_PERCENT_STEP = 5;
+    // Below this the current rate is too noisy for an ETA
+    private static final long MIN_RATE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final Set<UploadProgress> ACTIVE = ConcurrentHashMap.newKeySet();
+
+    private final transient Run<?, ?> build;
+    private final transient PrintStream logger;
+    private final String fileName;
+    private final String host;
+    private final long totalBytes;
+    private final long historicalThroughput;
+    private final long startTime = System.currentTimeMillis();
+    private volatile long bytesSent;
+    private long lastReportTime = startTime;
+    private int lastReportPercent;
+
+    private UploadProgress(Run<?, ?> build, String fileName, String host, long totalBytes, PrintStream logger) {
+        this.build = build;
+        this.fileName = fileName;
+        this.host = host;
+        this.totalBytes = totalBytes;
+        this.logger = logger;
+        this.historicalThroughput = ThroughputHistory.estimate(host);
+    }
+
+    static UploadProgress start(@Nonnull Run<?, ?> build, @Nonnull String fileName, @Nonnull String host,
+                                long totalBytes, @Nonnull PrintStream logger) {
+        final UploadProgress progress = new UploadProgress(build, fileName, host, totalBytes, logger);
+        ACTIVE.add(progress);
+        return progress;
+    }
+
+    void finish() {
+        ACTIVE.remove(this);
+    }
+
+    void update(long bytesSent) {
+        update(bytesSent, System.currentTimeMillis());
+    }
+
+    /**
+     * Logs a line at most every {@link #REPORT_INTERVAL} unless the upload moved on by
+     * {@link #REPORT_PERCENT_STEP} percent in the meantime.
+     */
+    void update(long bytesSent, long now) {
+        this.bytesSent = bytesSent;
+        final int percent = getPercent();
+        if (now - lastReportTime < REPORT_INTERVAL && percent < lastReportPercent + REPORT_PERCENT_STEP) {
+            return;
+        }
+        lastReportTime = now;
+        lastReportPercent = percent;
+
+        final long etaSeconds = getEtaSeconds();
+        logger.format("HockeyApp Upload: %d%% (%s of %s) at %s/s, ETA %s%n", percent, formatBytes(bytesSent),
+                totalBytes < 0 ? "?" : formatBytes(totalBytes), formatBytes(getBytesPerSecond()),
+                etaSeconds < 0 ? "unknown" : etaSeconds + "s");
+    }
+
+    @Exported
+    public String getBuild() {
+        return build.getExternalizableId();
+    }
+
+    @Exported
+    public String getFileName() {
+        return fileName;
+    }
+
+    @Exported
+    public String getHost() {
+        return host;
+    }
+
+    @Exported
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    @Exported
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Exported
+    public int getPercent() {
+        return totalBytes <= 0 ? 0 : (int) (bytesSent * 100 / totalBytes);
+    }
+
+    @Exported
+    public long getBytesPerSecond() {
+        final long elapsed = System.currentTimeMillis() - startTime;
+        return elapsed <= 0 ? 0 : bytesSent * 1000 / elapsed;
+    }
+
+    /**
+     * Remaining time based on the current rate, or on the rate previously observed for the host until the upload
+     * has run long enough to have a meaningful one of its own.
+     */
+    @Exported
+    public long getEtaSeconds() {
+        if (totalBytes < 0) {
+            return -1;
+        }
+        final long rate = System.currentTimeMillis() - startTime < MIN_RATE_MILLIS && historicalThroughput > 0
+                ? historicalThroughput
+                : getBytesPerSecond();
+        return rate <= 0 ? -1 : (totalBytes - bytesSent) / rate;
+    }
+
+    private static String formatBytes(long bytes) {
+        final String[] units = {"B", "KB", "MB", "GB"};
+        double value = bytes;
+        int idx = 0;
+        while (value > 1024 && idx < units.length - 1) {
+            value /= 1024;
+            idx += 1;
+        }
+        return String.format("%.1f%s", value, units[idx]);
+    }
+
+    static List<UploadProgress> of(Run<?, ?> build) {
+        final List<UploadProgress> uploads = new ArrayList<>();
+        for (UploadProgress progress : ACTIVE) {
+            if (progress.build == build) {
+                uploads.add(progress);
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * Running uploads of a build.
+     */
+    @ExportedBean
+    public static final class BuildAction implements Action {
+        private final Run<?, ?> build;
+
+        BuildAction(Run<?, ?> build) {
+            this.build = build;
+        }
+
+        @Exported(inline = true)
+        public List<UploadProgress> getUploads() {
+            return of(build);
+        }
+
+        public String getIconFileName() {
+            return null;
+        }
+
+        public String getDisplayName() {
+            return null;
+        }
+
+        public String getUrlName() {
+            return null;
+        }
+    }
+
+    @Extension
+    public static final class BuildActionFactory extends TransientActionFactory<Run> {
+
+        @Override
+        public Class<Run> type() {
+            return Run.class;
+        }
+
+        @Nonnull
+        @Override
+        public Collection<? extends Action> createFor(@Nonnull Run target) {
+            for (UploadProgress progress : ACTIVE) {
+                if (progress.build == target) {
+                    return Collections.singletonList(new BuildAction(target));
+                }
+            }
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Running uploads of all builds the current user can see.
+     */
+    @Extension
+    @ExportedBean
+    public static final class RootActionImpl implements RootAction {
+
+        public Api getApi() {
+            return new Api(this);
+        }
+
+        @Exported(inline = true)
+        public List<UploadProgress> getUploads() {
+            final List<UploadProgress> uploads = new ArrayList<>();
+            for (UploadProgress progress : ACTIVE) {
+                if (progress.build.getParent().hasPermission(Item.READ)) {
+                    uploads.add(progress);
+                }
+            }
+            return uploads;
+        }
+
+        public String getIconFileName() {
+            return null;
+        }
+
+        public String getDisplayName() {
+            return "HockeyApp Uploads";
+        }
+
+        public String getUrlName() {
+            return "hockeyapp-uploads";
+        }
+    }
+}
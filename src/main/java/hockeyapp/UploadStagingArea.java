@@ -0,0 +1,214 @@
+package hockeyapp;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.FileUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller side copies of artifacts fetched from agents, kept between upload attempts of the same build.
+ * <p>
+ * Entries live in {@code $JENKINS_HOME/hockeyapp-staging/<build>/<artifact key>/}, keyed on the path, length and
+ * modification time of the artifact, so that a failed upload retried by hand or by a Pipeline {@code retry} step goes
+ * straight to the HTTP request instead of copying the artifact from the agent again. Contents are only compared when
+ * there is a copy to reuse. The total size, including copies in progress, is bounded and stale entries are removed by
+ * {@link Sweeper}.
+ */
+public final class UploadStagingArea {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadStagingArea.class.getName());
+
+    static final long TTL = TimeUnit.MINUTES.toMillis(
+            Long.getLong(UploadStagingArea.class.getName() + ".ttlMinutes", 120L));
+    static final long MAX_SIZE = Long.getLong(UploadStagingArea.class.getName() + ".maxSizeMegabytes", 10240L)
+            * FileUtils.ONE_MB;
+
+    // Builds currently uploading, their entries must not be evicted
+    private static final Map<String, Integer> ACTIVE = new ConcurrentHashMap<>();
+    // Bytes of the copies in progress, guarded by the class
+    private static long reserved;
+
+    private UploadStagingArea() {
+    }
+
+    static File getRoot() {
+        return new File(Jenkins.getInstance().getRootDir(), "hockeyapp-staging");
+    }
+
+    private static String keyOf(Run<?, ?> build) {
+        return Util.getDigestOf(build.getExternalizableId());
+    }
+
+    static void acquire(@Nonnull Run<?, ?> build) {
+        ACTIVE.merge(keyOf(build), 1, Integer::sum);
+    }
+
+    /**
+     * Releases the entries of a build. Once the upload succeeded they are not needed anymore and get deleted,
+     * otherwise they are kept until the TTL expires so that a retry can reuse them.
+     */
+    static void release(@Nonnull Run<?, ?> build, boolean uploaded) {
+        final String key = keyOf(build);
+        final Integer remaining = ACTIVE.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        if (uploaded && remaining == null) {
+            FileUtils.deleteQuietly(new File(getRoot(), key));
+        }
+    }
+
+    /**
+     * Returns a controller side copy of {@code remoteFile}, reusing the one of a previous attempt when the
+     * artifact did not change.
+     *
+     * @return the staged file, or {@code null} if the artifact does not fit into the staging area.
+     */
+    @CheckForNull
+    static File stage(@Nonnull Run<?, ?> build, @Nonnull FilePath remoteFile, @Nonnull PrintStream logger)
+            throws IOException, InterruptedException {
+        final long length = remoteFile.length();
+        final File entry = new File(new File(getRoot(), keyOf(build)),
+                Util.getDigestOf(remoteFile.getRemote() + "|" + length + "|" + remoteFile.lastModified()));
+        final File staged = new File(entry, remoteFile.getName());
+
+        // Reading the artifact is only worth it when it saves the copy
+        if (staged.isFile() && staged.length() == length && remoteFile.digest().equals(Util.getDigestOf(staged))) {
+            if (!entry.setLastModified(System.currentTimeMillis())) {
+                LOGGER.log(Level.FINE, "Could not touch {0}", entry);
+            }
+            logger.println("Reusing staged copy of " + remoteFile.getRemote());
+            return staged;
+        }
+
+        if (!reserve(length)) {
+            return null;
+        }
+        try {
+            if (!entry.isDirectory() && !entry.mkdirs()) {
+                throw new IOException("Could not create staging directory " + entry);
+            }
+            // Copy next to the final location first so that an interrupted copy is never mistaken for a staged file
+            final File part = File.createTempFile(staged.getName(), ".part", entry);
+            try {
+                remoteFile.copyTo(new FilePath(part));
+                Files.move(part.toPath(), staged.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                FileUtils.deleteQuietly(part);
+            }
+        } finally {
+            unreserve(length);
+        }
+        return staged;
+    }
+
+    /**
+     * Makes room for a copy and holds it until {@link #unreserve}, so that copies started at the same time do not
+     * all count on the same free space.
+     */
+    private static synchronized boolean reserve(long length) {
+        if (!makeRoom(length)) {
+            return false;
+        }
+        reserved += length;
+        return true;
+    }
+
+    private static synchronized void unreserve(long length) {
+        reserved -= length;
+    }
+
+    // Called with the class lock held
+    private static boolean makeRoom(long length) {
+        if (length > MAX_SIZE) {
+            return false;
+        }
+        final List<File> entries = listEntries();
+        long size = reserved;
+        for (File entry : entries) {
+            size += FileUtils.sizeOfDirectory(entry);
+        }
+        // Oldest first
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (size + length <= MAX_SIZE) {
+                break;
+            }
+            if (!ACTIVE.containsKey(entry.getParentFile().getName())) {
+                size -= FileUtils.sizeOfDirectory(entry);
+                FileUtils.deleteQuietly(entry);
+            }
+        }
+        return size + length <= MAX_SIZE;
+    }
+
+    private static List<File> listEntries() {
+        final List<File> entries = new ArrayList<>();
+        final File[] builds = getRoot().listFiles(File::isDirectory);
+        if (builds != null) {
+            for (File build : builds) {
+                final File[] artifacts = build.listFiles(File::isDirectory);
+                if (artifacts != null) {
+                    Collections.addAll(entries, artifacts);
+                }
+            }
+        }
+        return entries;
+    }
+
+    static synchronized void sweep() {
+        final long expiry = System.currentTimeMillis() - TTL;
+        for (File entry : listEntries()) {
+            if (entry.lastModified() < expiry && !ACTIVE.containsKey(entry.getParentFile().getName())) {
+                LOGGER.log(Level.FINE, "Evicting stale staged artifact {0}", entry);
+                FileUtils.deleteQuietly(entry);
+            }
+        }
+        final File[] builds = getRoot().listFiles(File::isDirectory);
+        if (builds != null) {
+            for (File build : builds) {
+                final String[] children = build.list();
+                if (children != null && children.length == 0 && !ACTIVE.containsKey(build.getName())) {
+                    FileUtils.deleteQuietly(build);
+                }
+            }
+        }
+    }
+
+    @Extension
+    public static class Sweeper extends AsyncPeriodicWork {
+
+        public Sweeper() {
+            super("HockeyApp staging area sweeper");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN * 10;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            sweep();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package hockeyapp;
+
+import hudson.model.Job;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Size and duration of the recent uploads of a job, one line per upload in a small file next to the job
+ * configuration. Lines are appended as uploads complete, so showing the trend never loads builds; once the file holds
+ * twice {@link #MAX_ENTRIES} lines it is cut back to the newest ones. An artifact is compared with the same artifact
+ * of the same application in earlier builds, and only counts once per build.
+ */
+final class UploadTrend {
+
+    static final String FILE_NAME = "hockeyapp-trend.csv";
+
+    private static final Logger LOGGER = Logger.getLogger(UploadTrend.class.getName());
+    // Uploads shown in the trend
+    static final int MAX_ENTRIES = Integer.getInteger(UploadTrend.class.getName() + ".maxEntries", 100);
+
+    private UploadTrend() {
+    }
+
+    static File getFile(@Nonnull Job<?, ?> job) {
+        return new File(job.getRootDir(), FILE_NAME);
+    }
+
+    /**
+     * Appends an upload to the trend of its job, unless the build already has one of the artifact.
+     *
+     * @return the previous upload of the same artifact and application, {@code null} if there is none or the
+     * upload was not appended.
+     */
+    @CheckForNull
+    static Entry append(@Nonnull Job<?, ?> job, @Nonnull Entry entry) throws IOException {
+        final File file = getFile(job);
+        synchronized (UploadTrend.class) {
+            final List<Entry> entries = read(file);
+            Entry previous = null;
+            for (Entry existing : entries) {
+                if (existing.isSameArtifact(entry)) {
+                    if (existing.build == entry.build) {
+                        return null;
+                    } else if (existing.build < entry.build) {
+                        previous = existing;
+                    }
+                }
+            }
+
+            if (entries.size() + 1 < 2 * MAX_ENTRIES) {
+                try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                    out.write(entry.toLine());
+                }
+            } else {
+                entries.add(entry);
+                final File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+                try (Writer out = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+                    for (Entry kept : entries.subList(entries.size() - MAX_ENTRIES, entries.size())) {
+                        out.write(kept.toLine());
+                    }
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * @return the newest {@link #MAX_ENTRIES} uploads of the job, oldest first.
+     */
+    @Nonnull
+    static List<Entry> read(@Nonnull Job<?, ?> job) {
+        final List<Entry> entries;
+        synchronized (UploadTrend.class) {
+            entries = read(getFile(job));
+        }
+        return entries.size() > MAX_ENTRIES ? entries.subList(entries.size() - MAX_ENTRIES, entries.size()) : entries;
+    }
+
+    private static List<Entry> read(File file) {
+        if (!file.isFile()) {
+            return new ArrayList<>();
+        }
+        final List<Entry> entries = new ArrayList<>();
+        // Written before duplicates were skipped
+        final Set<String> seen = new HashSet<>();
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                final Entry entry = Entry.parse(line);
+                if (entry != null && seen.add(entry.build + "," + entry.appIndex + "," + entry.artifact)) {
+                    entries.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read the upload trend " + file, e);
+            return Collections.emptyList();
+        }
+        return entries;
+    }
+
+    /**
+     * One upload, a line of {@code build,application,size,duration,artifact}. Lines written before the artifact was
+     * kept have none.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Entry {
+        private final int build;
+        private final int appIndex;
+        private final long size;
+        private final long durationMillis;
+        @CheckForNull
+        private final String artifact;
+
+        Entry(int build, int appIndex, long size, long durationMillis, @CheckForNull String artifact) {
+            this.build = build;
+            this.appIndex = appIndex;
+            this.size = size;
+            this.durationMillis = durationMillis;
+            this.artifact = artifact;
+        }
+
+        @CheckForNull
+        private static Entry parse(String line) {
+            // The artifact comes last, its name may hold commas
+            final String[] fields = line.split(",", 5);
+            if (fields.length < 4) {
+                return null;
+            }
+            try {
+                return new Entry(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+                        Long.parseLong(fields[3]), fields.length == 5 ? fields[4] : null);
+            } catch (NumberFormatException e) {
+                // A line cut short by a crash
+                return null;
+            }
+        }
+
+        private String toLine() {
+            return build + "," + appIndex + "," + size + "," + durationMillis
+                    + (artifact == null ? "" : "," + artifact) + "\n";
+        }
+
+        private boolean isSameArtifact(Entry other) {
+            return appIndex == other.appIndex && artifact != null && Objects.equals(artifact, other.artifact);
+        }
+
+        @Exported
+        public int getBuild() {
+            return build;
+        }
+
+        @Exported
+        public int getAppIndex() {
+            return appIndex;
+        }
+
+        /**
+         * @return the file name of the artifact, {@code null} for uploads recorded before it was kept.
+         */
+        @Exported
+        @CheckForNull
+        public String getArtifact() {
+            return artifact;
+        }
+
+        @Exported
+        public long getSize() {
+            return size;
+        }
+
+        @Exported
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return bytes sent per second, {@code 0} if the duration is unknown.
+         */
+        @Exported
+        public long getThroughput() {
+            return durationMillis > 0 ? size * 1000 / durationMillis : 0;
+        }
+    }
+}
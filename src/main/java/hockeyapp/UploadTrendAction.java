@@ -0,0 +1,144 @@
+package hockeyapp;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Api;
+import hudson.model.Job;
+import hudson.util.DataSetBuilder;
+import hudson.util.Graph;
+import hudson.util.ShiftedCategoryAxis;
+import jenkins.model.TransientActionFactory;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryAxis;
+import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.ui.RectangleInsets;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.Nonnull;
+import java.awt.Color;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Trend of the artifact size, upload duration and throughput of a job, read from its {@link UploadTrend}. The
+ * uploads are also available from the remote API, {@code hockeyappTrend/api/json}.
+ */
+@ExportedBean(defaultVisibility = 2)
+public class UploadTrendAction implements Action {
+
+    private static final int WIDTH = 500;
+    private static final int HEIGHT = 200;
+
+    private final Job<?, ?> job;
+
+    UploadTrendAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "graph.gif";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.UPLOAD_TREND();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "hockeyappTrend";
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @Exported(inline = true)
+    public List<UploadTrend.Entry> getUploads() {
+        return UploadTrend.read(job);
+    }
+
+    public Graph getSizeGraph() {
+        return new TrendGraph(Messages.UPLOAD_TREND_SIZE(), entry -> entry.getSize() / 1024d);
+    }
+
+    public Graph getDurationGraph() {
+        return new TrendGraph(Messages.UPLOAD_TREND_DURATION(), entry -> entry.getDurationMillis() / 1000d);
+    }
+
+    public Graph getThroughputGraph() {
+        return new TrendGraph(Messages.UPLOAD_TREND_THROUGHPUT(), entry -> entry.getThroughput() / 1024d);
+    }
+
+    private final class TrendGraph extends Graph {
+        private final String label;
+        private final ToDoubleFunction<UploadTrend.Entry> value;
+
+        private TrendGraph(String label, ToDoubleFunction<UploadTrend.Entry> value) {
+            super(UploadTrend.getFile(job).lastModified(), WIDTH, HEIGHT);
+            this.label = label;
+            this.value = value;
+        }
+
+        @Override
+        protected JFreeChart createGraph() {
+            final DataSetBuilder<String, Integer> data = new DataSetBuilder<>();
+            for (UploadTrend.Entry entry : getUploads()) {
+                final String series = Messages.APPLICATION() + " " + (entry.getAppIndex() + 1)
+                        + (entry.getArtifact() == null ? "" : " " + entry.getArtifact());
+                data.add(value.applyAsDouble(entry), series, entry.getBuild());
+            }
+
+            final JFreeChart chart = ChartFactory.createLineChart(null, null, label, data.build(),
+                    PlotOrientation.VERTICAL, true, true, false);
+            chart.setBackgroundPaint(Color.white);
+
+            final CategoryPlot plot = chart.getCategoryPlot();
+            plot.setBackgroundPaint(Color.WHITE);
+            plot.setOutlinePaint(null);
+            plot.setRangeGridlinesVisible(true);
+            plot.setRangeGridlinePaint(Color.black);
+            plot.setInsets(new RectangleInsets(0, 0, 0, 5.0));
+
+            final CategoryAxis domainAxis = new ShiftedCategoryAxis(null);
+            plot.setDomainAxis(domainAxis);
+            domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+            domainAxis.setLowerMargin(0.0);
+            domainAxis.setUpperMargin(0.0);
+            domainAxis.setCategoryMargin(0.0);
+            return chart;
+        }
+    }
+
+    /**
+     * Shows the trend of jobs that uploaded at least once.
+     */
+    @Extension
+    public static final class Factory extends TransientActionFactory<Job> {
+
+        @Override
+        public Class<Job> type() {
+            return Job.class;
+        }
+
+        @Nonnull
+        @Override
+        public Collection<? extends Action> createFor(@Nonnull Job target) {
+            if (!UploadTrend.getFile(target).isFile()) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(new UploadTrendAction(target));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * File part of known length read from an {@link ArtifactSource}, like {@code FileBody} does for a file.
+ */
+final class ArtifactBody extends AbstractContentBody {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ArtifactSource source;
+
+    ArtifactBody(ArtifactSource source) {
+        super(ContentType.DEFAULT_BINARY);
+        this.source = source;
+    }
+
+    @Override
+    public String getFilename() {
+        return source.getName();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        try (InputStream in = source.open()) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return MIME.ENC_BINARY;
+    }
+
+    @Override
+    public long getContentLength() {
+        return source.getLength();
+    }
+}
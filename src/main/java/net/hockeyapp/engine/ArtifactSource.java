@@ -0,0 +1,51 @@
+package net.hockeyapp.engine;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A file sent with an upload. It may be read more than once, for example when a request is sent again.
+ */
+public interface ArtifactSource {
+
+    @Nonnull
+    String getName();
+
+    /**
+     * @return the number of bytes {@link #open()} reads.
+     */
+    long getLength();
+
+    @Nonnull
+    InputStream open() throws IOException;
+
+    @Nonnull
+    static ArtifactSource of(@Nonnull File file) {
+        return new ArtifactSource() {
+            @Nonnull
+            @Override
+            public String getName() {
+                return file.getName();
+            }
+
+            @Override
+            public long getLength() {
+                return file.length();
+            }
+
+            @Nonnull
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+
+            @Override
+            public String toString() {
+                return file.toString();
+            }
+        };
+    }
+}
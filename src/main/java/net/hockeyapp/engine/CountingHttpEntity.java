@@ -0,0 +1,76 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import javax.annotation.CheckForNull;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Keeps track of how many bytes of a request body went out and when the last ones did.
+ */
+public class CountingHttpEntity extends HttpEntityWrapper {
+
+    @CheckForNull
+    private final UploadListener listener;
+    private volatile long bytesWritten;
+    private volatile long lastProgress = System.currentTimeMillis();
+
+    public CountingHttpEntity(HttpEntity wrappedEntity) {
+        this(wrappedEntity, null);
+    }
+
+    public CountingHttpEntity(HttpEntity wrappedEntity, @CheckForNull UploadListener listener) {
+        super(wrappedEntity);
+        this.listener = listener;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    long getLastProgress() {
+        return lastProgress;
+    }
+
+    boolean isComplete() {
+        final long contentLength = getContentLength();
+        return contentLength >= 0 && bytesWritten >= contentLength;
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        bytesWritten = 0;
+        lastProgress = System.currentTimeMillis();
+        super.writeTo(new CountingOutputStream(outStream));
+    }
+
+    private final class CountingOutputStream extends FilterOutputStream {
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count(len);
+        }
+
+        private void count(int len) {
+            bytesWritten += len;
+            lastProgress = System.currentTimeMillis();
+            if (listener != null) {
+                listener.progress(bytesWritten);
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The few top level fields of a HockeyApp or App Center response that the plugin uses.
+ * <p>
+ * App and version responses list every build, device family and owner detail there is. They are streamed through
+ * the parser instead of being read into a string and a tree of maps, and parsing stops as soon as the wanted fields
+ * are known. Entities are always consumed so that their connection can be reused.
+ */
+public final class HockeyappResponse {
+
+    public static final String ID = "id";
+    public static final String CONFIG_URL = "config_url";
+    public static final String PUBLIC_URL = "public_url";
+    public static final String PUBLIC_IDENTIFIER = "public_identifier";
+    public static final String TOTAL_ENTRIES = "total_entries";
+
+    public static final String[] UPLOAD_FIELDS = {ID, CONFIG_URL, PUBLIC_URL, PUBLIC_IDENTIFIER};
+    public static final String[] CLEANUP_FIELDS = {TOTAL_ENTRIES};
+
+    // Characters of an error response kept for the build log
+    static final int MAX_ERROR_BODY = Integer.getInteger(HockeyappResponse.class.getName() + ".maxErrorBody", 4096);
+
+    private final Map<String, Object> values;
+    private final boolean listed;
+
+    private HockeyappResponse(Map<String, Object> values, boolean listed) {
+        this.values = values;
+        this.listed = listed;
+    }
+
+    /**
+     * Reads the given top level fields and consumes the rest of the entity.
+     */
+    @Nonnull
+    public static HockeyappResponse read(@Nonnull HttpEntity entity, @Nonnull String... fields)
+            throws IOException, ParseException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(entity.getContent(), charsetOf(entity)))) {
+            return read(reader, fields);
+        } finally {
+            EntityUtils.consumeQuietly(entity);
+        }
+    }
+
+    @Nonnull
+    public static HockeyappResponse read(@Nonnull Reader reader, @Nonnull String... fields)
+            throws IOException, ParseException {
+        return parse(reader, new FieldHandler(fields));
+    }
+
+    /**
+     * Looks for the object with the given {@code id} in a top level array, such as a version in a list of versions,
+     * and reads the given top level fields. Parsing stops at the first match, later fields are then left unread.
+     * {@link #get(String)} of the array tells whether it was there at all.
+     *
+     * @see #isListed()
+     */
+    @Nonnull
+    public static HockeyappResponse readListing(@Nonnull HttpEntity entity, @Nonnull String array,
+                                                @Nonnull String id, @Nonnull String... fields)
+            throws IOException, ParseException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(entity.getContent(), charsetOf(entity)))) {
+            return parse(reader, new ListingHandler(array, id, fields));
+        } finally {
+            EntityUtils.consumeQuietly(entity);
+        }
+    }
+
+    private static HockeyappResponse parse(Reader reader, FieldHandler handler) throws IOException, ParseException {
+        new JSONParser().parse(reader, handler);
+        if (!handler.isObject) {
+            throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN);
+        }
+        return new HockeyappResponse(handler.values, handler.isFound());
+    }
+
+    /**
+     * Reads the beginning of an error response for the build log and consumes the rest of the entity.
+     */
+    @Nonnull
+    public static String readErrorBody(@CheckForNull HttpEntity entity) throws IOException {
+        if (entity == null) {
+            return "";
+        }
+        try (Reader reader = new InputStreamReader(entity.getContent(), charsetOf(entity))) {
+            final char[] buffer = new char[MAX_ERROR_BODY];
+            int length = 0;
+            int read;
+            while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+            }
+            final String body = new String(buffer, 0, length);
+            return length == buffer.length && reader.read() != -1 ? body + "..." : body;
+        } finally {
+            EntityUtils.consumeQuietly(entity);
+        }
+    }
+
+    private static Charset charsetOf(HttpEntity entity) {
+        final ContentType contentType = ContentType.get(entity);
+        final Charset charset = contentType == null ? null : contentType.getCharset();
+        return charset == null ? StandardCharsets.UTF_8 : charset;
+    }
+
+    @CheckForNull
+    public Long getId() {
+        return getLong(ID);
+    }
+
+    @CheckForNull
+    public String getConfigUrl() {
+        return getString(CONFIG_URL);
+    }
+
+    @CheckForNull
+    public String getPublicUrl() {
+        return getString(PUBLIC_URL);
+    }
+
+    @CheckForNull
+    public String getPublicIdentifier() {
+        return getString(PUBLIC_IDENTIFIER);
+    }
+
+    @CheckForNull
+    public Long getTotalEntries() {
+        return getLong(TOTAL_ENTRIES);
+    }
+
+    /**
+     * @return whether a {@link #readListing listing} holds the object looked for.
+     */
+    public boolean isListed() {
+        return listed;
+    }
+
+    @CheckForNull
+    public Object get(String field) {
+        return values.get(field);
+    }
+
+    @CheckForNull
+    public String getString(String field) {
+        final Object value = values.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    @CheckForNull
+    public Long getLong(String field) {
+        final Object value = values.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+
+    /**
+     * Picks primitive values of the wanted keys of the outermost object, nested values are skipped.
+     */
+    private static class FieldHandler implements ContentHandler {
+        final Set<String> wanted;
+        final Map<String, Object> values = new HashMap<>();
+        int depth;
+        boolean isObject;
+        String key;
+
+        FieldHandler(String[] fields) {
+            this.wanted = new HashSet<>(Arrays.asList(fields));
+        }
+
+        boolean isFound() {
+            return false;
+        }
+
+        @Override
+        public void startJSON() {
+        }
+
+        @Override
+        public void endJSON() {
+        }
+
+        @Override
+        public boolean startObject() {
+            if (depth == 0) {
+                isObject = true;
+            }
+            depth++;
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            if (depth == 1) {
+                this.key = key;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            if (depth == 1) {
+                key = null;
+            }
+            // Everything else is of no interest
+            return values.size() < wanted.size();
+        }
+
+        @Override
+        public boolean startArray() {
+            depth++;
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            if (depth == 1 && key != null && wanted.contains(key)) {
+                values.put(key, value);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Also watches the {@code id} of the objects in one top level array, and stops once it matches.
+     */
+    private static final class ListingHandler extends FieldHandler {
+        private final String array;
+        private final String id;
+        private boolean inArray;
+        // Key of the entry of an object in the array
+        private String elementKey;
+        private boolean found;
+
+        ListingHandler(String array, String id, String[] fields) {
+            super(fields);
+            this.array = array;
+            this.id = id;
+        }
+
+        @Override
+        boolean isFound() {
+            return found;
+        }
+
+        @Override
+        public boolean startArray() {
+            if (depth == 1 && array.equals(key)) {
+                inArray = true;
+                values.put(array, Boolean.TRUE);
+            }
+            return super.startArray();
+        }
+
+        @Override
+        public boolean endArray() {
+            super.endArray();
+            if (depth == 1) {
+                inArray = false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            if (inArray && depth == 3) {
+                elementKey = key;
+            }
+            return super.startObjectEntry(key);
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            if (inArray && depth == 3) {
+                elementKey = null;
+            }
+            super.endObjectEntry();
+            // The whole array has to be seen unless the object is found
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            if (inArray && depth == 3 && ID.equals(elementKey) && id.equals(String.valueOf(value))) {
+                found = true;
+                return false;
+            }
+            return super.primitive(value);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package net.hockeyapp.engine;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.http.Consts;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.json.simple.parser.ParseException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Sends apps and versions to HockeyApp. Nothing here depends on Jenkins, the plugin decides where artifacts come
+ * from, how clients are configured and where progress goes.
+ */
+public final class HockeyappUploader {
+
+    private static final ContentType DEFAULT_CONTENT_TYPE = ContentType.create("text/plain", Consts.UTF_8);
+
+    private final Transport transport;
+    private final ScheduledExecutorService scheduler;
+    private final int timeoutMillis;
+    private final int stallTimeoutMillis;
+
+    /**
+     * @param scheduler runs the watchdogs of uploads.
+     */
+    public HockeyappUploader(@Nonnull Transport transport, @Nonnull ScheduledExecutorService scheduler,
+                             int timeoutMillis, int stallTimeoutMillis) {
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.timeoutMillis = timeoutMillis;
+        this.stallTimeoutMillis = stallTimeoutMillis;
+    }
+
+    /**
+     * @return the outcome of an upload the server answered, whatever the status.
+     * @throws IOException if there was no answer, including when the upload was aborted.
+     */
+    @Nonnull
+    public UploadResult upload(@Nonnull UploadRequest request, @Nonnull UploadListener listener)
+            throws IOException, URISyntaxException, ParseException {
+        return send(request, listener, false);
+    }
+
+    /**
+     * Encodes the request as an upload would, but into a sink instead of the network.
+     */
+    @Nonnull
+    public UploadResult discard(@Nonnull UploadRequest request, @Nonnull UploadListener listener)
+            throws IOException, URISyntaxException, ParseException {
+        return send(request, listener, true);
+    }
+
+    private UploadResult send(UploadRequest request, UploadListener listener, boolean dryRun)
+            throws IOException, URISyntaxException, ParseException {
+        for (int attempt = 0; ; attempt++) {
+            if (!dryRun) {
+                pace(request.getApiToken(), listener);
+            }
+            final UploadResult result = sendOnce(request, listener, dryRun, attempt < RequestPacer.RETRIES);
+            if (result != null) {
+                return result;
+            }
+            listener.log("Too many requests to HockeyApp, sending " + getName(request) + " again.");
+        }
+    }
+
+    /**
+     * @return {@code null} if the request was rejected for being one too many and may be sent again.
+     */
+    @CheckForNull
+    private UploadResult sendOnce(UploadRequest request, UploadListener listener, boolean dryRun, boolean mayRetry)
+            throws IOException, URISyntaxException, ParseException {
+        final String host = request.getUrl().getHost();
+        final HttpEntityEnclosingRequestBase httpRequest = HttpPut.METHOD_NAME.equals(request.getMethod())
+                ? new HttpPut(request.getUrl().toURI())
+                : new HttpPost(request.getUrl().toURI());
+        httpRequest.setHeader("X-HockeyAppToken", request.getApiToken());
+        final MultipartEntity entity = createEntity(request);
+        listener.started(getName(request), host, entity.getContentLength());
+        final CountingHttpEntity countingEntity = new CountingHttpEntity(entity, listener);
+        httpRequest.setEntity(countingEntity);
+
+        final long deadline = ThroughputHistory.deadlineMillis(host, countingEntity.getContentLength(), timeoutMillis);
+        final long startTime = System.currentTimeMillis();
+        HttpResponse response = null;
+        try (UploadWatchdog ignored = UploadWatchdog.watch(scheduler, httpRequest, countingEntity,
+                stallTimeoutMillis, deadline, listener)) {
+            if (dryRun) {
+                countingEntity.writeTo(new NullOutputStream());
+            } else {
+                response = transport.client(request.getUrl()).execute(httpRequest);
+            }
+        } finally {
+            listener.finished();
+        }
+        final long duration = System.currentTimeMillis() - startTime;
+        final long bytes = countingEntity.getBytesWritten();
+        if (response == null) {
+            return UploadResult.discarded(bytes, duration);
+        }
+        ThroughputHistory.record(host, bytes, duration);
+
+        final int statusCode = response.getStatusLine().getStatusCode();
+        if (RequestPacer.throttled(request.getApiToken(), response) && mayRetry) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            return null;
+        }
+        if (statusCode != 201) {
+            return UploadResult.failed(statusCode, HockeyappResponse.readErrorBody(response.getEntity()),
+                    bytes, duration);
+        }
+        return UploadResult.succeeded(statusCode,
+                HockeyappResponse.read(response.getEntity(), HockeyappResponse.UPLOAD_FIELDS), bytes, duration);
+    }
+
+    private static void pace(String apiToken, UploadListener listener) throws InterruptedIOException {
+        final long waitMillis = RequestPacer.acquire(apiToken);
+        if (waitMillis >= 1000) {
+            listener.log("Waited " + waitMillis + " ms for the HockeyApp rate limit of token "
+                    + UploadPreflight.fingerprint(apiToken) + ".");
+        }
+    }
+
+    /**
+     * Deletes versions of an app, {@link HockeyappResponse#getTotalEntries()} of a successful result tells how many.
+     */
+    @Nonnull
+    public UploadResult deleteOldVersions(@Nonnull URL host, @Nonnull String apiToken, @Nonnull String appId,
+                                          String keep, String sort, String strategy)
+            throws IOException, URISyntaxException, ParseException {
+        final URL url = new URL(host, "/api/2/apps/" + appId + "/app_versions/delete");
+        final HttpPost httpPost = new HttpPost(url.toURI());
+        httpPost.setHeader("X-HockeyAppToken", apiToken);
+        final List<NameValuePair> nameValuePairs = new ArrayList<>(3);
+        nameValuePairs.add(new BasicNameValuePair("keep", keep));
+        nameValuePairs.add(new BasicNameValuePair("sort", sort));
+        nameValuePairs.add(new BasicNameValuePair("strategy", strategy));
+        httpPost.setEntity(new UrlEncodedFormEntity(nameValuePairs));
+        final long startTime = System.currentTimeMillis();
+        HttpResponse response;
+        for (int attempt = 0; ; attempt++) {
+            RequestPacer.acquire(apiToken);
+            response = transport.client(url).execute(httpPost);
+            if (!RequestPacer.throttled(apiToken, response) || attempt >= RequestPacer.RETRIES) {
+                break;
+            }
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+        final long duration = System.currentTimeMillis() - startTime;
+
+        final int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode != 200) {
+            return UploadResult.failed(statusCode, HockeyappResponse.readErrorBody(response.getEntity()),
+                    0, duration);
+        }
+        return UploadResult.succeeded(statusCode,
+                HockeyappResponse.read(response.getEntity(), HockeyappResponse.CLEANUP_FIELDS), 0, duration);
+    }
+
+    /**
+     * Checks the target, or only {@link #warmUp warms up} the connection when it passed a check recently.
+     *
+     * @see UploadPreflight#check
+     */
+    @CheckForNull
+    public String preflight(@Nonnull URL host, @Nonnull String apiToken, @CheckForNull String appId,
+                            @CheckForNull String versionCode, @Nonnull UploadListener listener) {
+        if (UploadPreflight.remembered(host, apiToken, appId, versionCode)) {
+            warmUp(host);
+            return null;
+        }
+        return UploadPreflight.check(transport.client(host), host, apiToken, appId, versionCode, listener);
+    }
+
+    /**
+     * Resolves the host and opens a connection to it, through the proxy and TLS handshake, with a request that
+     * needs no token and so does not count against the rate limit. Only worth it with a {@link ReusingTransport},
+     * where the upload then goes through that connection. Failures are left for the upload to report.
+     */
+    public void warmUp(@Nonnull URL host) {
+        try {
+            final HttpResponse response = transport.client(host).execute(
+                    new HttpHead(new URL(host, "/api/2/apps").toURI()));
+            EntityUtils.consumeQuietly(response.getEntity());
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            // The upload will tell
+        }
+    }
+
+    @Nonnull
+    public static MultipartEntity createEntity(@Nonnull UploadRequest request) {
+        final MultipartEntity entity = new MultipartEntity();
+
+        final ArtifactSource artifact = request.getArtifact();
+        if (artifact == null) {
+            // Any other field would also update the version
+            addSymbolParts(entity, request);
+            return entity;
+        }
+
+        if (request.getReleaseNotes() != null) {
+            entity.addPart("notes", new StreamingStringBody(request.getReleaseNotes()));
+            entity.addPart("notes_type", new StringBody(request.isReleaseNotesMarkdown() ? "1" : "0",
+                    DEFAULT_CONTENT_TYPE));
+        }
+
+        entity.addPart("ipa", new ArtifactBody(artifact));
+        addSymbolParts(entity, request);
+
+        addMetadataParts(entity, request);
+        return entity;
+    }
+
+    private static void addSymbolParts(MultipartEntity entity, UploadRequest request) {
+        if (request.getDsym() != null) {
+            entity.addPart("dsym", new ArtifactBody(request.getDsym()));
+        }
+        if (request.getLibs() != null) {
+            entity.addPart("libs", new ArtifactBody(request.getLibs()));
+        }
+    }
+
+    // What progress is shown for, the app or the first file sent in its place
+    private static String getName(UploadRequest request) {
+        if (request.getArtifact() != null) {
+            return request.getArtifact().getName();
+        }
+        return request.getDsym() != null ? request.getDsym().getName() : request.getLibs().getName();
+    }
+
+    // Form fields sent along with the files, tags and teams already expanded
+    private static void addMetadataParts(MultipartEntity entity, UploadRequest request) {
+        final String tags = request.getTags();
+        if (tags != null && !tags.isEmpty())
+            entity.addPart("tags", new StringBody(tags, DEFAULT_CONTENT_TYPE));
+
+        entity.addPart("mandatory", new StringBody(request.isMandatory() ? "1" : "0", DEFAULT_CONTENT_TYPE));
+
+        final String teams = request.getTeams();
+        if (teams != null && !teams.isEmpty())
+            entity.addPart("teams", new StringBody(teams, DEFAULT_CONTENT_TYPE));
+
+        entity.addPart("notify", new StringBody(request.isNotifyTeam() ? "1" : "0", DEFAULT_CONTENT_TYPE));
+        entity.addPart("status", new StringBody(request.isDownloadAllowed() ? "2" : "1", DEFAULT_CONTENT_TYPE));
+        final Boolean publicPage = request.getPublicPage();
+        if (publicPage != null) {
+            entity.addPart("private", new StringBody(publicPage ? "false" : "true", DEFAULT_CONTENT_TYPE));
+        }
+    }
+}
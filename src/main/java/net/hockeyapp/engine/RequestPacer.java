@@ -0,0 +1,199 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+
+import javax.annotation.Nonnull;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces the requests sent with an API token, HockeyApp limits how many it accepts per token.
+ * <p>
+ * Every token has a bucket shared by all uploads in this JVM: requests take from it and wait in line once it is
+ * empty instead of being rejected. A {@code 429} answer stops all requests of the token for as long as its
+ * {@code Retry-After} says. Tokens are only known by their {@link UploadPreflight#fingerprint(String) fingerprint}.
+ * Properties, all prefixed with the class name: {@code requestsPerMinute} (60, {@code 0} to only honor
+ * {@code Retry-After}), {@code burst} (10), {@code retryAfterSeconds} (30, when the answer does not say) and
+ * {@code retries} (5, times a rejected request is sent again).
+ */
+public final class RequestPacer {
+
+    static final int REQUESTS_PER_MINUTE = Integer.getInteger(RequestPacer.class.getName() + ".requestsPerMinute",
+            60);
+    static final int BURST = Math.max(1, Integer.getInteger(RequestPacer.class.getName() + ".burst", 10));
+    static final int RETRIES = Integer.getInteger(RequestPacer.class.getName() + ".retries", 5);
+    static final long DEFAULT_RETRY_AFTER = TimeUnit.SECONDS.toMillis(
+            Long.getLong(RequestPacer.class.getName() + ".retryAfterSeconds", 30L));
+
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private static final Map<String, Bucket> BUCKETS = new ConcurrentHashMap<>();
+
+    private RequestPacer() {
+    }
+
+    /**
+     * Waits until a request may be sent with the token.
+     *
+     * @return milliseconds waited.
+     * @throws InterruptedIOException if interrupted while waiting, so that callers handle it as a failed request.
+     */
+    public static long acquire(@Nonnull String apiToken) throws InterruptedIOException {
+        final Bucket bucket = bucket(apiToken);
+        final long waitMillis = bucket.reserve(System.currentTimeMillis());
+        if (waitMillis <= 0) {
+            return 0;
+        }
+        final long start = System.nanoTime();
+        try {
+            Thread.sleep(waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the HockeyApp rate limit");
+        } finally {
+            bucket.waited(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return waitMillis;
+    }
+
+    /**
+     * Holds back the requests of the token if the server said there were too many.
+     *
+     * @return whether the request was rejected for that reason and may be sent again.
+     */
+    public static boolean throttled(@Nonnull String apiToken, @Nonnull HttpResponse response) {
+        if (response.getStatusLine().getStatusCode() != TOO_MANY_REQUESTS) {
+            return false;
+        }
+        final long now = System.currentTimeMillis();
+        bucket(apiToken).block(now + retryAfter(response, now));
+        return true;
+    }
+
+    static long retryAfter(HttpResponse response, long now) {
+        final Header header = response.getFirstHeader("Retry-After");
+        if (header == null) {
+            return DEFAULT_RETRY_AFTER;
+        }
+        final String value = header.getValue().trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // Or an HTTP date
+            final Date date = DateUtils.parseDate(value);
+            return date == null ? DEFAULT_RETRY_AFTER : Math.max(0, date.getTime() - now);
+        }
+    }
+
+    private static Bucket bucket(String apiToken) {
+        return BUCKETS.computeIfAbsent(UploadPreflight.fingerprint(apiToken), fingerprint -> new Bucket());
+    }
+
+    /**
+     * @return how long the requests of each token waited so far, by token fingerprint.
+     */
+    @Nonnull
+    public static List<TokenStatistics> getStatistics() {
+        final List<TokenStatistics> statistics = new ArrayList<>();
+        for (Map.Entry<String, Bucket> entry : BUCKETS.entrySet()) {
+            statistics.add(entry.getValue().statistics(entry.getKey()));
+        }
+        return statistics;
+    }
+
+    private static final class Bucket {
+        // May go below zero, requests waiting in line took those already
+        private double tokens = BURST;
+        private long refilledAt = System.currentTimeMillis();
+        private long blockedUntil;
+        private long requests;
+        private long delayed;
+        private long throttled;
+        private long waitMillis;
+
+        synchronized long reserve(long now) {
+            requests++;
+            long wait = Math.max(0, blockedUntil - now);
+            if (REQUESTS_PER_MINUTE > 0) {
+                final double perMilli = REQUESTS_PER_MINUTE / 60000d;
+                tokens = Math.min(BURST, tokens + (now - refilledAt) * perMilli);
+                refilledAt = now;
+                tokens--;
+                if (tokens < 0) {
+                    wait = Math.max(wait, (long) Math.ceil(-tokens / perMilli));
+                }
+            }
+            if (wait > 0) {
+                delayed++;
+            }
+            return wait;
+        }
+
+        synchronized void block(long until) {
+            throttled++;
+            blockedUntil = Math.max(blockedUntil, until);
+            // Start over once the server takes requests again
+            tokens = Math.min(tokens, 0);
+        }
+
+        synchronized void waited(long millis) {
+            waitMillis += millis;
+        }
+
+        synchronized TokenStatistics statistics(String fingerprint) {
+            return new TokenStatistics(fingerprint, requests, delayed, throttled, waitMillis);
+        }
+    }
+
+    /**
+     * Pacing of the requests of one token since Jenkins started.
+     */
+    public static final class TokenStatistics {
+        private final String fingerprint;
+        private final long requests;
+        private final long delayed;
+        private final long throttled;
+        private final long waitMillis;
+
+        private TokenStatistics(String fingerprint, long requests, long delayed, long throttled, long waitMillis) {
+            this.fingerprint = fingerprint;
+            this.requests = requests;
+            this.delayed = delayed;
+            this.throttled = throttled;
+            this.waitMillis = waitMillis;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return requests that had to wait.
+         */
+        public long getDelayed() {
+            return delayed;
+        }
+
+        /**
+         * @return answers telling that there were too many requests.
+         */
+        public long getThrottled() {
+            return throttled;
+        }
+
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.client.HttpClient;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out the same client for every request to a host, so that a connection opened early, including its proxy
+ * tunnel and TLS session, carries the requests that follow. Requests through it go one after the other, as the
+ * clients of a {@link Transport} are only used by one thread at a time; {@link #close()} closes the connections.
+ */
+public final class ReusingTransport implements Transport, Closeable {
+
+    private final Transport transport;
+    // Guarded by this
+    private final Map<String, HttpClient> clients = new HashMap<>();
+
+    public ReusingTransport(@Nonnull Transport transport) {
+        this.transport = transport;
+    }
+
+    @Nonnull
+    @Override
+    public synchronized HttpClient client(@Nonnull URL url) {
+        final String key = url.getProtocol() + "://" + url.getHost() + ":"
+                + (url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+        return clients.computeIfAbsent(key, k -> transport.client(url));
+    }
+
+    @Override
+    public synchronized void close() {
+        for (HttpClient client : clients.values()) {
+            if (client instanceof Closeable) {
+                try {
+                    ((Closeable) client).close();
+                } catch (IOException e) {
+                    // Nothing left to send through it
+                }
+            }
+        }
+        clients.clear();
+    }
+}
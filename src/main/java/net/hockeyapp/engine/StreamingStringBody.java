@@ -0,0 +1,79 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.Consts;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * UTF-8 text part that is encoded while the request is written, unlike {@code StringBody} which keeps an encoded
+ * copy of the whole text for the lifetime of the request. Large release notes thus exist once in memory.
+ */
+final class StreamingStringBody extends AbstractContentBody {
+
+    private static final int CHUNK = 8192;
+
+    private final String text;
+    private final long contentLength;
+
+    StreamingStringBody(String text) {
+        super(ContentType.create("text/plain", Consts.UTF_8));
+        this.text = text;
+        this.contentLength = utf8Length(text);
+    }
+
+    /**
+     * The number of bytes of {@code text} in UTF-8, without encoding it.
+     */
+    static long utf8Length(CharSequence text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // Replaced by '?' when encoding
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public String getFilename() {
+        return null;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        final Writer writer = new OutputStreamWriter(out, Consts.UTF_8);
+        for (int i = 0; i < text.length(); i += CHUNK) {
+            writer.write(text, i, Math.min(CHUNK, text.length() - i));
+        }
+        // Not closed, the stream belongs to the caller
+        writer.flush();
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return MIME.ENC_8BIT;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+}
@@ -0,0 +1,48 @@
+package net.hockeyapp.engine;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rolling upload throughput per host, used to size deadlines and estimate remaining upload time.
+ */
+public final class ThroughputHistory {
+
+    // Lowest throughput assumed when computing deadlines, in bytes per second
+    static final long MIN_THROUGHPUT = 32 * 1024;
+    // Uploads may be this many times slower than usual before they hit their deadline
+    private static final int SLOWDOWN_TOLERANCE = 4;
+    // Weight of the latest sample in the moving average
+    private static final double ALPHA = 0.3;
+    // Uploads shorter than this say more about latency than about throughput
+    private static final long MIN_SAMPLE_MILLIS = 1000;
+
+    private static final Map<String, Double> ESTIMATES = new ConcurrentHashMap<>();
+
+    private ThroughputHistory() {
+    }
+
+    public static void record(String host, long bytes, long millis) {
+        if (millis < MIN_SAMPLE_MILLIS || bytes <= 0) {
+            return;
+        }
+        final double sample = bytes * 1000d / millis;
+        ESTIMATES.merge(host, sample, (previous, latest) -> previous + ALPHA * (latest - previous));
+    }
+
+    /**
+     * @return the estimated throughput in bytes per second, or {@code -1} if nothing has been uploaded to the host yet.
+     */
+    public static long estimate(String host) {
+        final Double estimate = ESTIMATES.get(host);
+        return estimate == null ? -1 : estimate.longValue();
+    }
+
+    /**
+     * Time an upload of {@code bytes} may take before it is considered hung, on top of the connection timeout.
+     */
+    public static long deadlineMillis(String host, long bytes, int timeoutMillis) {
+        final long throughput = Math.max(estimate(host) / SLOWDOWN_TOLERANCE, MIN_THROUGHPUT);
+        return timeoutMillis + Math.max(bytes, 0) * 1000 / throughput;
+    }
+}
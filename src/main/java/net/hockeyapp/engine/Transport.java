@@ -0,0 +1,18 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.client.HttpClient;
+
+import javax.annotation.Nonnull;
+import java.net.URL;
+
+/**
+ * Creates the HTTP clients requests go through, where timeouts and proxies are decided.
+ */
+public interface Transport {
+
+    /**
+     * @return a client for requests to the given URL. A client is only used by one thread at a time.
+     */
+    @Nonnull
+    HttpClient client(@Nonnull URL url);
+}
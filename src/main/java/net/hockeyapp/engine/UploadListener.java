@@ -0,0 +1,31 @@
+package net.hockeyapp.engine;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Told about the progress of an upload. Calls for one upload come from one thread at a time, except for
+ * {@link #log(String)}.
+ */
+public interface UploadListener {
+
+    UploadListener NONE = new UploadListener() {
+    };
+
+    default void started(@Nonnull String artifact, @Nonnull String host, long totalBytes) {
+    }
+
+    /**
+     * @param bytesSent bytes of the request body sent so far.
+     */
+    default void progress(long bytesSent) {
+    }
+
+    default void finished() {
+    }
+
+    /**
+     * Something worth telling whoever follows the upload, such as why it was aborted.
+     */
+    default void log(@Nonnull String message) {
+    }
+}
@@ -0,0 +1,192 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.json.simple.parser.ParseException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cheap requests against the upload target, sent while the artifact is still being copied from the agent.
+ * <p>
+ * A wrong App ID, a revoked token or a missing version to update only surface as a 401 or 404 once the whole
+ * artifact has been uploaded. Checking them up front lets the build fail in well under a second. Only definite
+ * answers fail the check; anything else (server errors, timeouts, a 403 from a token that may upload but not read
+ * the app) leaves the decision to the upload itself.
+ * Only checks that verified the target are remembered for a while per host, token, App ID and version, an
+ * inconclusive one is sent again by the next upload.
+ */
+public final class UploadPreflight {
+
+    static final long TTL = TimeUnit.MINUTES.toMillis(
+            Long.getLong(UploadPreflight.class.getName() + ".ttlMinutes", 10L));
+
+    private static final Map<String, Long> PASSED = new ConcurrentHashMap<>();
+
+    private static final String APP_VERSIONS = "app_versions";
+    private static final String TOTAL_PAGES = "total_pages";
+
+    private UploadPreflight() {
+    }
+
+    /**
+     * @param listener told about answers that are not conclusive but worth knowing.
+     * @return {@code null} if the target looks usable, otherwise the reason why it is not.
+     */
+    @CheckForNull
+    public static String check(@Nonnull HttpClient httpClient, @Nonnull URL host, @Nonnull String apiToken,
+                               @CheckForNull String appId, @CheckForNull String versionCode,
+                               @Nonnull UploadListener listener) {
+        if (remembered(host, apiToken, appId, versionCode)) {
+            return null;
+        }
+
+        final Outcome outcome;
+        try {
+            outcome = appId == null
+                    ? checkToken(httpClient, host, apiToken, listener)
+                    : checkApp(httpClient, host, apiToken, appId, versionCode, listener);
+        } catch (IOException | URISyntaxException | ParseException | RuntimeException e) {
+            // Not conclusive, the upload will tell
+            return null;
+        }
+        if (outcome == Outcome.PASSED) {
+            PASSED.put(key(host, apiToken, appId, versionCode), System.currentTimeMillis());
+        }
+        return outcome.error;
+    }
+
+    /**
+     * @return whether the target passed a check recently enough not to be checked again.
+     */
+    static boolean remembered(@Nonnull URL host, @Nonnull String apiToken, @CheckForNull String appId,
+                              @CheckForNull String versionCode) {
+        final Long passedAt = PASSED.get(key(host, apiToken, appId, versionCode));
+        return passedAt != null && System.currentTimeMillis() - passedAt < TTL;
+    }
+
+    private static String key(URL host, String apiToken, String appId, String versionCode) {
+        return host + "|" + fingerprint(apiToken) + "|" + appId + "|" + versionCode;
+    }
+
+    @Nonnull
+    private static Outcome checkToken(HttpClient httpClient, URL host, String apiToken, UploadListener listener)
+            throws IOException, URISyntaxException {
+        final HttpGet request = new HttpGet(new URL(host, "/api/2/apps").toURI());
+        request.setHeader("X-HockeyAppToken", apiToken);
+        RequestPacer.acquire(apiToken);
+        final HttpResponse response = httpClient.execute(request);
+        // Not retried, a rejected check is not conclusive
+        RequestPacer.throttled(apiToken, response);
+        try {
+            return rejection(response.getStatusLine().getStatusCode(), request, null, listener);
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    @Nonnull
+    private static Outcome checkApp(HttpClient httpClient, URL host, String apiToken, String appId,
+                                   @CheckForNull String versionCode, UploadListener listener)
+            throws IOException, URISyntaxException, ParseException {
+        final HttpGet request = new HttpGet(new URL(host, "/api/2/apps/" + appId + "/app_versions").toURI());
+        request.setHeader("X-HockeyAppToken", apiToken);
+        RequestPacer.acquire(apiToken);
+        final HttpResponse response = httpClient.execute(request);
+        // Not retried, a rejected check is not conclusive
+        RequestPacer.throttled(apiToken, response);
+        try {
+            final Outcome outcome = rejection(response.getStatusLine().getStatusCode(), request, appId, listener);
+            if (outcome != Outcome.PASSED || versionCode == null || versionCode.isEmpty()) {
+                return outcome;
+            }
+
+            // Streamed, apps may have a long history of versions
+            final HockeyappResponse versions = HockeyappResponse.readListing(response.getEntity(), APP_VERSIONS,
+                    versionCode, TOTAL_PAGES);
+            if (versions.isListed()) {
+                return Outcome.PASSED;
+            }
+            // The list may be paginated, only a complete list proves that the version is missing
+            final Long totalPages = versions.getLong(TOTAL_PAGES);
+            if (versions.get(APP_VERSIONS) == null || totalPages != null && totalPages > 1) {
+                return Outcome.INCONCLUSIVE;
+            }
+            return Outcome.rejected("Version " + versionCode + " does not exist for App ID " + appId + ".");
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    @Nonnull
+    private static Outcome rejection(int statusCode, HttpGet request, @CheckForNull String appId,
+                                     UploadListener listener) {
+        switch (statusCode) {
+            case 200:
+                return Outcome.PASSED;
+            case 401:
+                return Outcome.rejected("The API Token was rejected by HockeyApp (" + statusCode + ").");
+            case 403:
+                // Upload-only tokens may not read apps, the upload will tell
+                listener.log("The API Token may not read " + request.getURI().getPath()
+                        + " (403), uploading anyway.");
+                return Outcome.INCONCLUSIVE;
+            case 404:
+                return Outcome.rejected(appId == null
+                        ? "HockeyApp API not found on this server (404)."
+                        : "App ID " + appId + " does not exist on HockeyApp (404).");
+            default:
+                return Outcome.INCONCLUSIVE;
+        }
+    }
+
+    /**
+     * Whether a check verified the target, rejected it, or could not tell.
+     */
+    private static final class Outcome {
+
+        static final Outcome PASSED = new Outcome(null);
+        static final Outcome INCONCLUSIVE = new Outcome(null);
+
+        @CheckForNull
+        final String error;
+
+        private Outcome(@CheckForNull String error) {
+            this.error = error;
+        }
+
+        static Outcome rejected(@Nonnull String error) {
+            return new Outcome(error);
+        }
+    }
+
+    /**
+     * Identifies a token without keeping the token itself around.
+     */
+    @Nonnull
+    public static String fingerprint(@Nonnull String apiToken) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(apiToken.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.net.URL;
+
+/**
+ * An upload of an app or a version to HockeyApp: where it goes and every part it is made of.
+ * Instances do not change once built.
+ */
+public final class UploadRequest {
+
+    private final URL url;
+    private final String method;
+    private final String apiToken;
+    @CheckForNull
+    private final ArtifactSource artifact;
+    @CheckForNull
+    private final ArtifactSource dsym;
+    @CheckForNull
+    private final ArtifactSource libs;
+    @CheckForNull
+    private final String releaseNotes;
+    private final boolean releaseNotesMarkdown;
+    @CheckForNull
+    private final String tags;
+    @CheckForNull
+    private final String teams;
+    private final boolean mandatory;
+    private final boolean notifyTeam;
+    private final boolean downloadAllowed;
+    @CheckForNull
+    private final Boolean publicPage;
+
+    private UploadRequest(Builder builder) {
+        this.url = builder.url;
+        this.method = builder.method;
+        this.apiToken = builder.apiToken;
+        this.artifact = builder.artifact;
+        this.dsym = builder.dsym;
+        this.libs = builder.libs;
+        this.releaseNotes = builder.releaseNotes;
+        this.releaseNotesMarkdown = builder.releaseNotesMarkdown;
+        this.tags = builder.tags;
+        this.teams = builder.teams;
+        this.mandatory = builder.mandatory;
+        this.notifyTeam = builder.notifyTeam;
+        this.downloadAllowed = builder.downloadAllowed;
+        this.publicPage = builder.publicPage;
+    }
+
+    /**
+     * @param method {@code POST} to upload a new app or version, {@code PUT} to update a version.
+     */
+    @Nonnull
+    public static Builder builder(@Nonnull URL url, @Nonnull String method, @Nonnull String apiToken,
+                                  @Nonnull ArtifactSource artifact) {
+        if (!HttpPost.METHOD_NAME.equals(method) && !HttpPut.METHOD_NAME.equals(method)) {
+            throw new IllegalArgumentException("Unsupported method " + method);
+        }
+        return new Builder(url, method, apiToken, artifact);
+    }
+
+    /**
+     * Sends only symbols and packed libraries to an existing version, leaving its binary and everything else about
+     * it as they are.
+     *
+     * @param url the URL of the version.
+     */
+    @Nonnull
+    public static Builder symbolsBuilder(@Nonnull URL url, @Nonnull String apiToken) {
+        return new Builder(url, HttpPut.METHOD_NAME, apiToken, null);
+    }
+
+    public static final class Builder {
+        private final URL url;
+        private final String method;
+        private final String apiToken;
+        private final ArtifactSource artifact;
+        private ArtifactSource dsym;
+        private ArtifactSource libs;
+        private String releaseNotes;
+        private boolean releaseNotesMarkdown;
+        private String tags;
+        private String teams;
+        private boolean mandatory;
+        private boolean notifyTeam;
+        private boolean downloadAllowed;
+        private Boolean publicPage;
+
+        private Builder(URL url, String method, String apiToken, ArtifactSource artifact) {
+            this.url = url;
+            this.method = method;
+            this.apiToken = apiToken;
+            this.artifact = artifact;
+        }
+
+        public Builder dsym(@CheckForNull ArtifactSource dsym) {
+            this.dsym = dsym;
+            return this;
+        }
+
+        public Builder libs(@CheckForNull ArtifactSource libs) {
+            this.libs = libs;
+            return this;
+        }
+
+        public Builder releaseNotes(@CheckForNull String releaseNotes, boolean markdown) {
+            this.releaseNotes = releaseNotes;
+            this.releaseNotesMarkdown = markdown;
+            return this;
+        }
+
+        public Builder tags(@CheckForNull String tags) {
+            this.tags = tags;
+            return this;
+        }
+
+        public Builder teams(@CheckForNull String teams) {
+            this.teams = teams;
+            return this;
+        }
+
+        public Builder mandatory(boolean mandatory) {
+            this.mandatory = mandatory;
+            return this;
+        }
+
+        public Builder notifyTeam(boolean notifyTeam) {
+            this.notifyTeam = notifyTeam;
+            return this;
+        }
+
+        public Builder downloadAllowed(boolean downloadAllowed) {
+            this.downloadAllowed = downloadAllowed;
+            return this;
+        }
+
+        /**
+         * @param publicPage whether the page of a new app is public, {@code null} when updating an existing app.
+         */
+        public Builder publicPage(@CheckForNull Boolean publicPage) {
+            this.publicPage = publicPage;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException if a request of {@link #symbolsBuilder(URL, String)} has nothing to send.
+         */
+        @Nonnull
+        public UploadRequest build() {
+            if (artifact == null && dsym == null && libs == null) {
+                throw new IllegalStateException("No symbols or packed libraries to send");
+            }
+            return new UploadRequest(this);
+        }
+    }
+
+    @Nonnull
+    public URL getUrl() {
+        return url;
+    }
+
+    @Nonnull
+    public String getMethod() {
+        return method;
+    }
+
+    @Nonnull
+    public String getApiToken() {
+        return apiToken;
+    }
+
+    /**
+     * @return the app, {@code null} if only symbols and packed libraries are sent.
+     */
+    @CheckForNull
+    public ArtifactSource getArtifact() {
+        return artifact;
+    }
+
+    public boolean isSymbolsOnly() {
+        return artifact == null;
+    }
+
+    @CheckForNull
+    public ArtifactSource getDsym() {
+        return dsym;
+    }
+
+    @CheckForNull
+    public ArtifactSource getLibs() {
+        return libs;
+    }
+
+    @CheckForNull
+    public String getReleaseNotes() {
+        return releaseNotes;
+    }
+
+    public boolean isReleaseNotesMarkdown() {
+        return releaseNotesMarkdown;
+    }
+
+    @CheckForNull
+    public String getTags() {
+        return tags;
+    }
+
+    @CheckForNull
+    public String getTeams() {
+        return teams;
+    }
+
+    public boolean isMandatory() {
+        return mandatory;
+    }
+
+    public boolean isNotifyTeam() {
+        return notifyTeam;
+    }
+
+    public boolean isDownloadAllowed() {
+        return downloadAllowed;
+    }
+
+    @CheckForNull
+    public Boolean getPublicPage() {
+        return publicPage;
+    }
+}
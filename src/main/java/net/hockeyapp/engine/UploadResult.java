@@ -0,0 +1,84 @@
+package net.hockeyapp.engine;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Outcome of a request the server answered, successfully or not.
+ */
+public final class UploadResult {
+
+    private final int statusCode;
+    @CheckForNull
+    private final HockeyappResponse response;
+    @CheckForNull
+    private final String errorBody;
+    private final long bytesSent;
+    private final long durationMillis;
+
+    private UploadResult(int statusCode, @CheckForNull HockeyappResponse response, @CheckForNull String errorBody,
+                         long bytesSent, long durationMillis) {
+        this.statusCode = statusCode;
+        this.response = response;
+        this.errorBody = errorBody;
+        this.bytesSent = bytesSent;
+        this.durationMillis = durationMillis;
+    }
+
+    @Nonnull
+    static UploadResult succeeded(int statusCode, @Nonnull HockeyappResponse response, long bytesSent,
+                                  long durationMillis) {
+        return new UploadResult(statusCode, response, null, bytesSent, durationMillis);
+    }
+
+    /**
+     * A dry run: the request was encoded but not sent.
+     */
+    @Nonnull
+    static UploadResult discarded(long bytesSent, long durationMillis) {
+        return new UploadResult(0, null, null, bytesSent, durationMillis);
+    }
+
+    @Nonnull
+    static UploadResult failed(int statusCode, @Nonnull String errorBody, long bytesSent, long durationMillis) {
+        return new UploadResult(statusCode, null, errorBody, bytesSent, durationMillis);
+    }
+
+    /**
+     * @return the HTTP status, {@code 0} for a dry run.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public boolean isSuccessful() {
+        return errorBody == null;
+    }
+
+    /**
+     * @return the fields of a successful response, {@code null} for a dry run.
+     */
+    @CheckForNull
+    public HockeyappResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the beginning of the body of an unsuccessful response.
+     */
+    @CheckForNull
+    public String getErrorBody() {
+        return errorBody;
+    }
+
+    /**
+     * @return bytes of the request body sent, or encoded for a dry run.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
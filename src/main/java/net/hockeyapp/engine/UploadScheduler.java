@@ -0,0 +1,194 @@
+package net.hockeyapp.engine;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides which uploads share the bandwidth of the controller, so that a huge artifact does not hold up small ones.
+ * <p>
+ * A few uploads run at once. The next one to start is the smallest waiting, except that every {@code agingMillis}
+ * spent waiting halves the size it is ranked by, so large uploads get their turn. Uploads of at most
+ * {@code smallBytes} also have a lane of their own they can use when all other slots are taken.
+ * The {@link #get() shared instance} is configured with properties, all prefixed with the class name:
+ * {@code slots} (4, {@code 0} to never wait), {@code smallSlots} (2), {@code smallMegabytes} (100) and
+ * {@code agingSeconds} (60).
+ */
+public final class UploadScheduler {
+
+    private static final String PREFIX = UploadScheduler.class.getName() + ".";
+    private static final UploadScheduler INSTANCE = new UploadScheduler(
+            Integer.getInteger(PREFIX + "slots", 4),
+            Integer.getInteger(PREFIX + "smallSlots", 2),
+            Long.getLong(PREFIX + "smallMegabytes", 100L) * 1024 * 1024,
+            TimeUnit.SECONDS.toMillis(Long.getLong(PREFIX + "agingSeconds", 60L)));
+
+    private final int slots;
+    private final int smallSlots;
+    private final long smallBytes;
+    private final long agingMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dispatched = lock.newCondition();
+    // Guarded by lock
+    private final List<Permit> waiting = new ArrayList<>();
+    private int running;
+    private int runningSmall;
+
+    public UploadScheduler(int slots, int smallSlots, long smallBytes, long agingMillis) {
+        this.slots = slots;
+        this.smallSlots = smallSlots;
+        this.smallBytes = smallBytes;
+        this.agingMillis = Math.max(1, agingMillis);
+    }
+
+    @Nonnull
+    public static UploadScheduler get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Waits for the turn of an upload.
+     *
+     * @param bytes size of everything the upload sends.
+     * @return to be closed once the upload is over.
+     */
+    @Nonnull
+    public Permit acquire(long bytes) throws InterruptedException {
+        final Permit permit = new Permit(bytes, System.currentTimeMillis());
+        if (slots <= 0) {
+            permit.granted = true;
+            return permit;
+        }
+        lock.lock();
+        try {
+            waiting.add(permit);
+            dispatch();
+            while (!permit.granted) {
+                try {
+                    dispatched.await();
+                } catch (InterruptedException e) {
+                    if (!waiting.remove(permit)) {
+                        // Granted meanwhile, pass the slot on
+                        release(permit);
+                    }
+                    throw e;
+                }
+            }
+            return permit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return uploads waiting for their turn.
+     */
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void dispatch() {
+        boolean changed = false;
+        while (!waiting.isEmpty()) {
+            final long now = System.currentTimeMillis();
+            final boolean small = running >= slots;
+            if (small && runningSmall >= smallSlots) {
+                break;
+            }
+            // In order of arrival, which breaks ties
+            Permit next = null;
+            for (Permit permit : waiting) {
+                if ((!small || permit.bytes <= smallBytes)
+                        && (next == null || permit.rank(now) < next.rank(now))) {
+                    next = permit;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            waiting.remove(next);
+            next.small = small;
+            next.granted = true;
+            next.waitMillis = now - next.enqueuedAt;
+            if (small) {
+                runningSmall++;
+            } else {
+                running++;
+            }
+            changed = true;
+        }
+        if (changed) {
+            dispatched.signalAll();
+        }
+    }
+
+    private void release(Permit permit) {
+        lock.lock();
+        try {
+            if (permit.small) {
+                runningSmall--;
+            } else {
+                running--;
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The turn of one upload.
+     */
+    public final class Permit implements AutoCloseable {
+        private final long bytes;
+        private final long enqueuedAt;
+        // Guarded by lock, except for permits that never waited
+        private boolean granted;
+        private boolean small;
+        private long waitMillis;
+        private boolean closed;
+
+        private Permit(long bytes, long enqueuedAt) {
+            this.bytes = Math.max(0, bytes);
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        // Smaller goes first
+        private long rank(long now) {
+            return bytes >> Math.min(62, (now - enqueuedAt) / agingMillis);
+        }
+
+        /**
+         * @return how long the upload waited for its turn.
+         */
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+
+        /**
+         * @return whether the upload runs in the lane of small uploads.
+         */
+        public boolean isSmallLane() {
+            return small;
+        }
+
+        @Override
+        public void close() {
+            if (slots <= 0 || closed) {
+                return;
+            }
+            closed = true;
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package net.hockeyapp.engine;
+
+import org.apache.http.client.methods.AbstractExecutionAwareRequest;
+
+import java.io.Closeable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aborts an upload whose body stopped moving or which took longer than its deadline.
+ * <p>
+ * Socket timeouts only cover reads, a blocked write can hang forever, see
+ * http://stackoverflow.com/questions/1338885/java-socket-output-stream-writes-do-they-block
+ */
+public final class UploadWatchdog implements Closeable, Runnable {
+
+    private final AbstractExecutionAwareRequest request;
+    private final CountingHttpEntity entity;
+    private final long stallMillis;
+    private final long deadline;
+    private final UploadListener listener;
+    private final ScheduledFuture<?> future;
+
+    private UploadWatchdog(ScheduledExecutorService executor, AbstractExecutionAwareRequest request,
+                           CountingHttpEntity entity, long stallMillis, long deadlineMillis, UploadListener listener) {
+        this.request = request;
+        this.entity = entity;
+        this.stallMillis = stallMillis;
+        this.deadline = System.currentTimeMillis() + deadlineMillis;
+        this.listener = listener;
+        this.future = executor.scheduleWithFixedDelay(this, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public static UploadWatchdog watch(ScheduledExecutorService executor, AbstractExecutionAwareRequest request,
+                                       CountingHttpEntity entity, long stallMillis, long deadlineMillis,
+                                       UploadListener listener) {
+        return new UploadWatchdog(executor, request, entity, stallMillis, deadlineMillis, listener);
+    }
+
+    @Override
+    public void run() {
+        final long now = System.currentTimeMillis();
+        if (!entity.isComplete() && now - entity.getLastProgress() > stallMillis) {
+            listener.log(String.format("Upload stalled, no data sent for %d seconds. Aborting.",
+                    TimeUnit.MILLISECONDS.toSeconds(stallMillis)));
+            abort();
+        } else if (now > deadline) {
+            listener.log("Upload did not finish in time. Aborting.");
+            abort();
+        }
+    }
+
+    private void abort() {
+        future.cancel(false);
+        request.abort();
+    }
+
+    @Override
+    public void close() {
+        future.cancel(false);
+    }
+}
@@ -2,21 +2,57 @@ package net.hockeyapp.jenkins.releaseNotes;
 
 import hudson.Extension;
 import hudson.model.Descriptor;
+import hudson.util.FormValidation;
 import jenkins.model.Jenkins;
 import net.hockeyapp.jenkins.RadioButtonSupport;
 import net.hockeyapp.jenkins.RadioButtonSupportDescriptor;
-import net.sf.json.JSONObject;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
-import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.export.Exported;
 
 public class ChangelogReleaseNotes extends RadioButtonSupport {
 
+    public static final int DEFAULT_MAX_LENGTH = 20000;
+
+    @Exported
+    private boolean sinceLastUpload;
+
+    // null for configurations saved before the limit existed
+    @Exported
+    private Integer maxLength;
+
     @DataBoundConstructor
     public ChangelogReleaseNotes() {
 
     }
 
+    public boolean isSinceLastUpload() {
+        return sinceLastUpload;
+    }
+
+    public boolean getSinceLastUpload() {
+        return sinceLastUpload;
+    }
+
+    @DataBoundSetter
+    public void setSinceLastUpload(boolean sinceLastUpload) {
+        this.sinceLastUpload = sinceLastUpload;
+    }
+
+    /**
+     * @return the maximum number of characters of the release notes, {@code 0} for no limit.
+     */
+    public int getMaxLength() {
+        return maxLength == null ? DEFAULT_MAX_LENGTH : maxLength;
+    }
+
+    @DataBoundSetter
+    public void setMaxLength(int maxLength) {
+        this.maxLength = Math.max(0, maxLength);
+    }
+
     public Descriptor<RadioButtonSupport> getDescriptor() {
         final Jenkins instance = Jenkins.getInstance();
         return instance.getDescriptorOrDie(this.getClass());
@@ -36,10 +72,17 @@ public class ChangelogReleaseNotes extends RadioButtonSupport {
             return "Use Change Log";
         }
 
-        @Override
-        public RadioButtonSupport newInstance(StaplerRequest req, JSONObject formData) throws FormException {
-            return new ChangelogReleaseNotes();
+        @SuppressWarnings("unused")
+        public FormValidation doCheckMaxLength(@QueryParameter String value) {
+            try {
+                if (Integer.parseInt(value) >= 0) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            return FormValidation.error("You must enter a number of characters, or 0 for no limit.");
         }
     }
 
-}
\ No newline at end of file
+}
@@ -9,6 +9,7 @@ import net.hockeyapp.jenkins.RadioButtonSupport;
 import net.hockeyapp.jenkins.RadioButtonSupportDescriptor;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.export.Exported;
 
@@ -17,12 +18,18 @@ import java.io.IOException;
 
 public class FileReleaseNotes extends RadioButtonSupport {
 
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
     @Exported
     private String fileName;
 
     @Exported
     private boolean isMarkdown;
 
+    // null for configurations saved before the limit existed
+    @Exported
+    private Integer maxBytes;
+
     @DataBoundConstructor
     public FileReleaseNotes(String fileName, boolean isMarkdown) {
         this.fileName = Util.fixEmptyAndTrim(fileName);
@@ -41,6 +48,18 @@ public class FileReleaseNotes extends RadioButtonSupport {
         return isMarkdown;
     }
 
+    /**
+     * @return the maximum number of bytes read from the file, {@code 0} for no limit.
+     */
+    public int getMaxBytes() {
+        return maxBytes == null ? DEFAULT_MAX_BYTES : maxBytes;
+    }
+
+    @DataBoundSetter
+    public void setMaxBytes(int maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
     public Descriptor<RadioButtonSupport> getDescriptor() {
         final Jenkins instance = Jenkins.getInstance();
         return instance.getDescriptorOrDie(this.getClass());
@@ -69,6 +88,18 @@ public class FileReleaseNotes extends RadioButtonSupport {
             }
 
         }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckMaxBytes(@QueryParameter String value) {
+            try {
+                if (Integer.parseInt(value) >= 0) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            return FormValidation.error("You must enter a number of bytes, or 0 for no limit.");
+        }
     }
 
 }
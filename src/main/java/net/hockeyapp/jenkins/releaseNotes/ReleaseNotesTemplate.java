@@ -0,0 +1,306 @@
+package net.hockeyapp.jenkins.releaseNotes;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Release notes template, parsed once and rendered for every upload.
+ * <p>
+ * The syntax is a small subset of Mustache: {@code {{name}}} inserts a value, {@code {{#name}}...{{/name}}} repeats
+ * its content for every element of a list or renders it once if the value is set, {@code {{^name}}...{{/name}}}
+ * renders its content if the value is not set or empty and {@code {{! comment }}} is left out. Build variables can
+ * be used as {@code ${NAME}} or {@code $NAME}, like in manual release notes. Lines holding nothing but a section
+ * tag or a comment do not show up in the output.
+ */
+public final class ReleaseNotesTemplate {
+
+    /**
+     * Values available to a template.
+     */
+    public interface Scope {
+        /**
+         * @return the value, an {@link Iterable} of {@link Scope}s for lists, or {@code null} if there is none.
+         */
+        @CheckForNull
+        Object get(@Nonnull String name);
+    }
+
+    // Larger buffers are not kept around between renderings
+    private static final int MAX_BUFFER_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(1024);
+        }
+    };
+
+    private final List<Node> nodes;
+
+    private ReleaseNotesTemplate(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the template is malformed.
+     */
+    @Nonnull
+    public static ReleaseNotesTemplate compile(@Nonnull String template) {
+        return new ReleaseNotesTemplate(new Parser(template).parse());
+    }
+
+    @Nonnull
+    public String render(@Nonnull Scope scope) {
+        final StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        renderTo(scope, out);
+        final String notes = out.toString();
+        if (out.capacity() > MAX_BUFFER_CAPACITY) {
+            BUFFER.remove();
+        }
+        return notes;
+    }
+
+    public void renderTo(@Nonnull Scope scope, @Nonnull StringBuilder out) {
+        render(nodes, scope, out);
+    }
+
+    private static void render(List<Node> nodes, Scope scope, StringBuilder out) {
+        for (Node node : nodes) {
+            node.render(scope, out);
+        }
+    }
+
+    private static boolean isSet(@CheckForNull Object value) {
+        if (value == null) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue() != 0;
+        } else if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() > 0;
+        } else if (value instanceof Iterable) {
+            return ((Iterable<?>) value).iterator().hasNext();
+        }
+        return true;
+    }
+
+    private interface Node {
+        void render(Scope scope, StringBuilder out);
+    }
+
+    private static final class Text implements Node {
+        private final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    private static final class Value implements Node {
+        private final String name;
+        // Written out as is when the value is missing, like unknown build variables
+        @CheckForNull
+        private final String fallback;
+
+        Value(String name, @CheckForNull String fallback) {
+            this.name = name;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            final Object value = scope.get(name);
+            if (value != null) {
+                out.append(value);
+            } else if (fallback != null) {
+                out.append(fallback);
+            }
+        }
+    }
+
+    private static final class Section implements Node {
+        private final String name;
+        private final boolean inverted;
+        private final List<Node> nodes = new ArrayList<>();
+
+        Section(String name, boolean inverted) {
+            this.name = name;
+            this.inverted = inverted;
+        }
+
+        @Override
+        public void render(final Scope scope, StringBuilder out) {
+            final Object value = scope.get(name);
+            if (inverted) {
+                if (!isSet(value)) {
+                    ReleaseNotesTemplate.render(nodes, scope, out);
+                }
+            } else if (value instanceof Iterable) {
+                for (final Object item : (Iterable<?>) value) {
+                    ReleaseNotesTemplate.render(nodes, new Scope() {
+                        @Override
+                        public Object get(@Nonnull String name) {
+                            if (".".equals(name)) {
+                                return item;
+                            }
+                            final Object value = item instanceof Scope ? ((Scope) item).get(name) : null;
+                            return value != null ? value : scope.get(name);
+                        }
+                    }, out);
+                }
+            } else if (isSet(value)) {
+                ReleaseNotesTemplate.render(nodes, scope, out);
+            }
+        }
+    }
+
+    private static final class Parser {
+        private final String template;
+        private final Deque<Section> sections = new ArrayDeque<>();
+        private final List<Node> root = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private int pos;
+
+        Parser(String template) {
+            this.template = template;
+        }
+
+        List<Node> parse() {
+            while (pos < template.length()) {
+                final char c = template.charAt(pos);
+                if (c == '{' && template.startsWith("{{", pos)) {
+                    tag();
+                } else if (c == '$' && pos + 1 < template.length()) {
+                    variable();
+                } else {
+                    text.append(c);
+                    pos++;
+                }
+            }
+            if (!sections.isEmpty()) {
+                throw new IllegalArgumentException("Section {{#" + sections.peek().name + "}} is not closed.");
+            }
+            flushText();
+            return Collections.unmodifiableList(root);
+        }
+
+        private void tag() {
+            final int start = pos;
+            final int end = template.indexOf("}}", start + 2);
+            if (end < 0) {
+                throw new IllegalArgumentException("Tag at position " + start + " is not closed.");
+            }
+            final String content = template.substring(start + 2, end).trim();
+            pos = end + 2;
+            final char kind = content.isEmpty() ? 0 : content.charAt(0);
+            if (kind != '#' && kind != '^' && kind != '/' && kind != '!') {
+                if (content.isEmpty()) {
+                    throw new IllegalArgumentException("Tag at position " + start + " has no name.");
+                }
+                flushText();
+                add(new Value(content, null));
+                return;
+            }
+
+            final String name = content.substring(1).trim();
+            if (name.isEmpty() && kind != '!') {
+                throw new IllegalArgumentException("Tag at position " + start + " has no name.");
+            }
+            skipStandaloneLine(start);
+            flushText();
+            if (kind == '#' || kind == '^') {
+                final Section section = new Section(name, kind == '^');
+                add(section);
+                sections.push(section);
+            } else if (kind == '/') {
+                if (sections.isEmpty() || !sections.peek().name.equals(name)) {
+                    throw new IllegalArgumentException("Unexpected {{/" + name + "}} at position " + start + ".");
+                }
+                sections.pop();
+            }
+        }
+
+        private void variable() {
+            final int start = pos;
+            if (template.charAt(start + 1) == '{') {
+                final int end = template.indexOf('}', start + 2);
+                if (end > start + 2) {
+                    flushText();
+                    add(new Value(template.substring(start + 2, end), template.substring(start, end + 1)));
+                    pos = end + 1;
+                    return;
+                }
+            } else {
+                int end = start + 1;
+                while (end < template.length()
+                        && (Character.isLetterOrDigit(template.charAt(end)) || template.charAt(end) == '_')) {
+                    end++;
+                }
+                if (end > start + 1) {
+                    flushText();
+                    add(new Value(template.substring(start + 1, end), template.substring(start, end)));
+                    pos = end;
+                    return;
+                }
+            }
+            text.append('$');
+            pos++;
+        }
+
+        /**
+         * Drops the line of a section tag or comment if there is nothing else on it.
+         */
+        private void skipStandaloneLine(int tagStart) {
+            int lineStart = tagStart;
+            while (lineStart > 0 && isBlank(template.charAt(lineStart - 1))) {
+                lineStart--;
+            }
+            if (lineStart > 0 && template.charAt(lineStart - 1) != '\n') {
+                return;
+            }
+            int lineEnd = pos;
+            while (lineEnd < template.length() && isBlank(template.charAt(lineEnd))) {
+                lineEnd++;
+            }
+            if (lineEnd < template.length() && template.charAt(lineEnd) == '\r') {
+                lineEnd++;
+            }
+            if (lineEnd == template.length() || template.charAt(lineEnd) == '\n') {
+                // The indentation of the tag is the end of the pending text
+                text.setLength(text.length() - (tagStart - lineStart));
+                pos = Math.min(lineEnd + 1, template.length());
+            }
+        }
+
+        private static boolean isBlank(char c) {
+            return c == ' ' || c == '\t';
+        }
+
+        private void flushText() {
+            if (text.length() > 0) {
+                add(new Text(text.toString()));
+                text.setLength(0);
+            }
+        }
+
+        private void add(Node node) {
+            if (sections.isEmpty()) {
+                root.add(node);
+            } else {
+                sections.peek().nodes.add(node);
+            }
+        }
+    }
+}
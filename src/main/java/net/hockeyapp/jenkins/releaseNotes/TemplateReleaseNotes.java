@@ -0,0 +1,91 @@
+package net.hockeyapp.jenkins.releaseNotes;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import net.hockeyapp.jenkins.RadioButtonSupport;
+import net.hockeyapp.jenkins.RadioButtonSupportDescriptor;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.export.Exported;
+
+import javax.annotation.Nonnull;
+
+public class TemplateReleaseNotes extends RadioButtonSupport {
+
+    @Exported
+    private String template;
+
+    @Exported
+    private boolean isMarkdown;
+
+    // Parsed on first use, a new configuration comes with a new instance
+    private transient volatile ReleaseNotesTemplate compiledTemplate;
+
+    @DataBoundConstructor
+    public TemplateReleaseNotes(String template, boolean isMarkdown) {
+        this.template = template;
+        this.isMarkdown = isMarkdown;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public boolean isMarkdown() {
+        return isMarkdown;
+    }
+
+    public boolean getIsMarkdown() {
+        return isMarkdown;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the template is malformed.
+     */
+    @Nonnull
+    public ReleaseNotesTemplate getCompiledTemplate() {
+        ReleaseNotesTemplate compiled = compiledTemplate;
+        if (compiled == null) {
+            compiled = ReleaseNotesTemplate.compile(template == null ? "" : template);
+            compiledTemplate = compiled;
+        }
+        return compiled;
+    }
+
+    public Descriptor<RadioButtonSupport> getDescriptor() {
+        final Jenkins instance = Jenkins.getInstance();
+        return instance.getDescriptorOrDie(this.getClass());
+    }
+
+    @Symbol("template")
+    @Extension
+    public static class DescriptorImpl extends RadioButtonSupportDescriptor<TemplateReleaseNotes> {
+
+        public DescriptorImpl() {
+            super();
+            load();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Use Release Notes Template";
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckTemplate(@QueryParameter String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.error("You must enter a template.");
+            }
+            try {
+                ReleaseNotesTemplate.compile(value);
+                return FormValidation.ok();
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+    }
+}
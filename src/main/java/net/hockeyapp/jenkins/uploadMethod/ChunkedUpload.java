@@ -0,0 +1,193 @@
+package net.hockeyapp.jenkins.uploadMethod;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import net.hockeyapp.jenkins.RadioButtonSupport;
+import net.hockeyapp.jenkins.RadioButtonSupportDescriptor;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.export.Exported;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Uploads a release to App Center, the successor of HockeyApp, in chunks sent over several connections.
+ */
+public class ChunkedUpload extends RadioButtonSupport {
+
+    public static final String DEFAULT_API_URL = "https://api.appcenter.ms";
+    public static final int DEFAULT_CHUNK_SIZE = 4;
+    // Chunks are held in memory, one per connection
+    public static final int MAX_CHUNK_SIZE = 256;
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_CHUNK_RETRIES = 3;
+
+    @Exported
+    private final String ownerName;
+
+    @Exported
+    private final String appName;
+
+    @Exported
+    @CheckForNull
+    private String apiUrl;
+
+    // In MB, used when the server leaves the chunk size to the client
+    @Exported
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    @Exported
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    @Exported
+    private int chunkRetries = DEFAULT_CHUNK_RETRIES;
+
+    @DataBoundConstructor
+    public ChunkedUpload(@Nonnull String ownerName, @Nonnull String appName) {
+        this.ownerName = Util.fixNull(ownerName).trim();
+        this.appName = Util.fixNull(appName).trim();
+    }
+
+    @Nonnull
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    @Nonnull
+    public String getAppName() {
+        return appName;
+    }
+
+    /**
+     * @return the API host, {@code null} for {@link #DEFAULT_API_URL}.
+     */
+    @CheckForNull
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    @DataBoundSetter
+    public void setApiUrl(@CheckForNull String apiUrl) {
+        this.apiUrl = Util.fixEmptyAndTrim(apiUrl);
+    }
+
+    /**
+     * @return the chunk size in MB, between 1 and {@link #MAX_CHUNK_SIZE}.
+     */
+    public int getChunkSize() {
+        // Configurations loaded from disk do not go through the setter
+        return Math.min(MAX_CHUNK_SIZE, Math.max(1, chunkSize));
+    }
+
+    @DataBoundSetter
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(1, chunkSize));
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @DataBoundSetter
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getChunkRetries() {
+        return chunkRetries;
+    }
+
+    @DataBoundSetter
+    public void setChunkRetries(int chunkRetries) {
+        this.chunkRetries = Math.max(0, chunkRetries);
+    }
+
+    public Descriptor<RadioButtonSupport> getDescriptor() {
+        final Jenkins instance = Jenkins.getInstance();
+        return instance.getDescriptorOrDie(this.getClass());
+    }
+
+    @Symbol("chunkedUpload")
+    @Extension
+    public static class DescriptorImpl extends RadioButtonSupportDescriptor<ChunkedUpload> {
+
+        public DescriptorImpl() {
+            super();
+            load();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Upload Release in Chunks (App Center)";
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckOwnerName(@QueryParameter String value) {
+            if (value.isEmpty()) {
+                return FormValidation.error("You must enter the owner of the app.");
+            } else {
+                return FormValidation.ok();
+            }
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckAppName(@QueryParameter String value) {
+            if (value.isEmpty()) {
+                return FormValidation.error("You must enter the name of the app.");
+            } else {
+                return FormValidation.ok();
+            }
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckApiUrl(@QueryParameter String value) {
+            if (value == null || value.isEmpty()) {
+                return FormValidation.ok();
+            } else if (!(value.startsWith("http://") || value.startsWith("https://"))) {
+                return FormValidation.error("Must use http or https protocol.");
+            } else if (value.endsWith("/")) {
+                return FormValidation.error("Must not end with / character.");
+            } else {
+                return FormValidation.ok();
+            }
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckChunkSize(@QueryParameter String value) {
+            return checkNumber(value, 1, MAX_CHUNK_SIZE,
+                    "You must enter a chunk size between 1 and " + MAX_CHUNK_SIZE + " MB.");
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckParallelism(@QueryParameter String value) {
+            return checkNumber(value, 1, "You must enter at least 1 connection.");
+        }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckChunkRetries(@QueryParameter String value) {
+            return checkNumber(value, 0, "You must enter a number of retries, or 0 for none.");
+        }
+
+        private static FormValidation checkNumber(String value, int min, String message) {
+            return checkNumber(value, min, Integer.MAX_VALUE, message);
+        }
+
+        private static FormValidation checkNumber(String value, int min, int max, String message) {
+            try {
+                final int number = Integer.parseInt(value);
+                if (number >= min && number <= max) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            return FormValidation.error(message);
+        }
+    }
+}
@@ -25,6 +25,9 @@ public class VersionCreation extends RadioButtonSupport {
     @CheckForNull
     private String versionCode;
 
+    @Exported
+    private boolean symbolsOnly;
+
     @DataBoundConstructor
     public VersionCreation(@Nonnull String appId) {
         this.appId = Util.fixNull(appId);
@@ -51,6 +54,15 @@ public class VersionCreation extends RadioButtonSupport {
         this.versionCode = Util.fixNull(versionCode);
     }
 
+    public boolean isSymbolsOnly() {
+        return symbolsOnly;
+    }
+
+    @DataBoundSetter
+    public void setSymbolsOnly(boolean symbolsOnly) {
+        this.symbolsOnly = symbolsOnly;
+    }
+
     public Descriptor<RadioButtonSupport> getDescriptor() {
         final Jenkins instance = Jenkins.getInstance();
         return instance.getDescriptorOrDie(this.getClass());
@@ -0,0 +1,91 @@
+package hockeyapp;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the JMH benchmarks of this package, see the {@code benchmark} profile.
+ * <p>
+ * {@code -Dhockeyapp.benchmark.include=<regexp>} selects benchmarks,
+ * {@code -Dhockeyapp.benchmark.sizes=10,100} limits the artifact sizes in megabytes.
+ */
+public class BenchmarkRunner {
+
+    private static final String ALLOCATION = "\u00b7gc.alloc.rate.norm";
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        final File resultFile = new File("target", "jmh-result.json");
+        FileUtils.forceMkdirParent(resultFile);
+        final ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("hockeyapp.benchmark.include", "hockeyapp\\..*Benchmark"))
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.getPath());
+        final String sizes = System.getProperty("hockeyapp.benchmark.sizes");
+        if (sizes != null) {
+            options.param("sizeMegabytes", sizes.split(","));
+        }
+
+        final Collection<RunResult> results = new Runner(options.build()).run();
+
+        System.out.println();
+        System.out.format("%-60s %14s %14s %12s %14s%n", "Benchmark", "mean", "p99", "MB/s", "alloc B/op");
+        for (RunResult result : results) {
+            final Result primary = result.getPrimaryResult();
+            final double mean = primary.getScore();
+            final String unit = primary.getScoreUnit();
+            final String sizeMegabytes = result.getParams().getParam("sizeMegabytes");
+            final String throughput = sizeMegabytes == null
+                    ? "-"
+                    : String.format("%.1f", Double.parseDouble(sizeMegabytes) / toSeconds(mean, unit));
+            final Result allocation = result.getSecondaryResults().get(ALLOCATION);
+            System.out.format("%-60s %10.3f %-3s %10.3f %-3s %12s %14s%n",
+                    result.getParams().getBenchmark().replaceFirst("^hockeyapp\\.", "") + describeParams(result),
+                    mean, shortUnit(unit), primary.getStatistics().getPercentile(99), shortUnit(unit), throughput,
+                    allocation == null ? "-" : String.format("%.0f", allocation.getScore()));
+        }
+    }
+
+    private static String describeParams(RunResult result) {
+        final StringBuilder sb = new StringBuilder();
+        for (String key : result.getParams().getParamsKeys()) {
+            sb.append(' ').append(key).append('=').append(result.getParams().getParam(key));
+        }
+        return sb.toString();
+    }
+
+    private static String shortUnit(String unit) {
+        return unit.replace("/op", "");
+    }
+
+    private static double toSeconds(double value, String unit) {
+        final TimeUnit timeUnit;
+        switch (shortUnit(unit)) {
+            case "ns":
+                timeUnit = TimeUnit.NANOSECONDS;
+                break;
+            case "us":
+                timeUnit = TimeUnit.MICROSECONDS;
+                break;
+            case "ms":
+                timeUnit = TimeUnit.MILLISECONDS;
+                break;
+            default:
+                timeUnit = TimeUnit.SECONDS;
+        }
+        return value * timeUnit.toNanos(1) / TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,193 @@
+package hockeyapp;
+
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.ChangeLogSet.Entry;
+import jenkins.scm.RunWithSCM;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.FakeChangeLogSCM.EntryImpl;
+import org.jvnet.hudson.test.FakeChangeLogSCM.FakeChangeLogSet;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Change sets of run types that do not implement {@link RunWithSCM}, as some plugins still define them.
+ */
+public class ChangelogCollectorTest {
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private LegacyJob job;
+
+    @Before
+    public void before() {
+        job = new LegacyJob(jenkinsRule.jenkins);
+    }
+
+    @Test
+    public void should_FindChangeSet_When_RunHasSingleChangeSetGetter() {
+        // Given
+        final SingleChangeSetRun run = new SingleChangeSetRun(job);
+        run.changeSet = changeSet(run, "First change");
+
+        // When
+        final List<ChangeLogSet<? extends Entry>> changeSets = ChangelogCollector.changeSetsOf(run);
+
+        // Then
+        assertThat(run, is(not(instanceOf(RunWithSCM.class))));
+        assertThat(changeSets.size(), is(1));
+        assertThat(ChangelogCollector.collect(run, false).getChanges().get(0).getMsg(), is("First change"));
+    }
+
+    @Test
+    public void should_FindAllChangeSets_When_RunHasChangeSetsGetter() {
+        // Given
+        final ChangeSetsRun run = new ChangeSetsRun(job);
+        run.changeSets = Arrays.asList(changeSet(run, "First change"), changeSet(run, "Second change"));
+
+        // When
+        final ChangelogCursor cursor = ChangelogCollector.collect(run, false);
+
+        // Then
+        assertThat(ChangelogCollector.changeSetsOf(run).size(), is(2));
+        assertThat(cursor.getChanges().size(), is(2));
+        assertThat(cursor.getChanges().get(1).getMsg(), is("Second change"));
+    }
+
+    @Test
+    public void should_FindNoChangeSets_When_RunHasNoChangeSetGetter() {
+        // Given
+        final LegacyRun run = new LegacyRun(job);
+
+        // When
+        final List<ChangeLogSet<? extends Entry>> changeSets = ChangelogCollector.changeSetsOf(run);
+
+        // Then
+        assertThat(changeSets.isEmpty(), is(true));
+        assertThat(ChangelogCollector.collect(run, false).getChanges().isEmpty(), is(true));
+    }
+
+    @Test
+    public void should_FindNoChangeSets_When_GetterIsUnrelatedOrFails() {
+        // Given
+        final UnrelatedGetterRun unrelated = new UnrelatedGetterRun(job);
+        final FailingGetterRun failing = new FailingGetterRun(job);
+
+        // When
+        final List<ChangeLogSet<? extends Entry>> unrelatedChangeSets = ChangelogCollector.changeSetsOf(unrelated);
+        final List<ChangeLogSet<? extends Entry>> failingChangeSets = ChangelogCollector.changeSetsOf(failing);
+
+        // Then
+        assertThat(unrelatedChangeSets.isEmpty(), is(true));
+        assertThat(failingChangeSets.isEmpty(), is(true));
+    }
+
+    @Test
+    public void should_FindNoChangeSets_When_GetterReturnsNull() {
+        // Given
+        final SingleChangeSetRun run = new SingleChangeSetRun(job);
+
+        // When
+        final List<ChangeLogSet<? extends Entry>> changeSets = ChangelogCollector.changeSetsOf(run);
+
+        // Then
+        assertThat(changeSets.isEmpty(), is(true));
+    }
+
+    private static FakeChangeLogSet changeSet(Run<?, ?> run, String message) {
+        return new FakeChangeLogSet(run, Collections.singletonList(new EntryImpl().withAuthor("alice")
+                .withMsg(message)));
+    }
+
+    private static final class LegacyJob extends Job<LegacyJob, LegacyRun> {
+
+        private LegacyJob(ItemGroup parent) {
+            super(parent, "legacy");
+        }
+
+        @Override
+        public boolean isBuildable() {
+            return false;
+        }
+
+        @Override
+        protected SortedMap<Integer, LegacyRun> _getRuns() {
+            return new TreeMap<>();
+        }
+
+        @Override
+        protected void removeRun(LegacyRun run) {
+        }
+    }
+
+    /**
+     * Has neither {@code getChangeSet()} nor {@code getChangeSets()}.
+     */
+    private static class LegacyRun extends Run<LegacyJob, LegacyRun> {
+
+        private LegacyRun(LegacyJob job) {
+            super(job, 0L);
+        }
+    }
+
+    public static final class SingleChangeSetRun extends LegacyRun {
+        private ChangeLogSet<? extends Entry> changeSet;
+
+        private SingleChangeSetRun(LegacyJob job) {
+            super(job);
+        }
+
+        public ChangeLogSet<? extends Entry> getChangeSet() {
+            return changeSet;
+        }
+    }
+
+    public static final class ChangeSetsRun extends LegacyRun {
+        private List<ChangeLogSet<? extends Entry>> changeSets;
+
+        private ChangeSetsRun(LegacyJob job) {
+            super(job);
+        }
+
+        public List<ChangeLogSet<? extends Entry>> getChangeSets() {
+            return changeSets;
+        }
+    }
+
+    public static final class UnrelatedGetterRun extends LegacyRun {
+
+        private UnrelatedGetterRun(LegacyJob job) {
+            super(job);
+        }
+
+        public String getChangeSet() {
+            return "not a change set";
+        }
+    }
+
+    public static final class FailingGetterRun extends LegacyRun {
+
+        private FailingGetterRun(LegacyJob job) {
+            super(job);
+        }
+
+        public ChangeLogSet<? extends Entry> getChangeSet() {
+            throw new IllegalStateException("Change log not parsed");
+        }
+    }
+}
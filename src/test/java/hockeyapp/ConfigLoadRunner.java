@@ -0,0 +1,160 @@
+package hockeyapp;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import hudson.model.FreeStyleProject;
+import hudson.util.XStream2;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Measures loading of job configurations with a HockeyApp recorder, see the {@code benchmark} profile.
+ * <p>
+ * Reports the time to convert recorders with a converter created per call and with a cached one, and the time to
+ * reload jobs saved in the legacy format before and after {@link LegacyConfigMigration} rewrote them. The report is
+ * printed and written to {@code target/config-load-report.txt}. Properties, all prefixed with
+ * {@code hockeyapp.benchmark.}: {@code jobs} (500) and {@code conversions} (20000).
+ */
+public class ConfigLoadRunner {
+
+    private static final String PREFIX = "hockeyapp.benchmark.";
+    private static final int JOBS = Integer.getInteger(PREFIX + "jobs", 500);
+    private static final int CONVERSIONS = Integer.getInteger(PREFIX + "conversions", 20000);
+
+    private static final String LEGACY_RECORDER = "<hockeyapp.HockeyappRecorder>\n"
+            + "  <apiToken>0123456789abcdef</apiToken>\n"
+            + "  <appId>fedcba9876543210</appId>\n"
+            + "  <notifyTeam>true</notifyTeam>\n"
+            + "  <buildNotes>Built by Jenkins</buildNotes>\n"
+            + "  <filePath>build/*.ipa</filePath>\n"
+            + "  <dsymPath>build/*.dSYM.zip</dsymPath>\n"
+            + "  <tags>beta</tags>\n"
+            + "  <mandatory>false</mandatory>\n"
+            + "  <downloadAllowed>true</downloadAllowed>\n"
+            + "  <useChangelog>false</useChangelog>\n"
+            + "  <numberOldVersions>5</numberOldVersions>\n"
+            + "  <useAppVersionURL>true</useAppVersionURL>\n"
+            + "  <debugMode>false</debugMode>\n"
+            + "  <useNotesTypeMarkdown>false</useNotesTypeMarkdown>\n"
+            + "  <failGracefully>false</failGracefully>\n"
+            + "</hockeyapp.HockeyappRecorder>";
+
+    @Rule
+    public JenkinsRule jenkinsRule = createJenkinsRule();
+
+    private static JenkinsRule createJenkinsRule() {
+        final JenkinsRule jenkinsRule = new JenkinsRule();
+        jenkinsRule.timeout = 0;
+        return jenkinsRule;
+    }
+
+    @Test
+    public void runConfigLoadBenchmark() throws Exception {
+        final StringBuilder report = new StringBuilder();
+
+        // Conversion of a single recorder
+        final XStream perCall = new XStream2();
+        perCall.processAnnotations(HockeyappRecorder.class);
+        perCall.registerConverter(new PerCallConverter(perCall), XStream.PRIORITY_VERY_HIGH);
+        final XStream cached = new XStream2();
+        cached.processAnnotations(HockeyappRecorder.class);
+        cached.registerConverter(new HockeyappRecorderConverter(cached), XStream.PRIORITY_VERY_HIGH);
+        final String currentRecorder = cached.toXML(cached.fromXML(LEGACY_RECORDER));
+        report.append(String.format("%-40s %10s %10s%n", "Conversion (us/op)", "legacy", "current"));
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up
+            final String perCallLine = String.format("%-40s %10.2f %10.2f%n", "converter created per call",
+                    convert(perCall, LEGACY_RECORDER), convert(perCall, currentRecorder));
+            final String cachedLine = String.format("%-40s %10.2f %10.2f%n", "cached converter",
+                    convert(cached, LEGACY_RECORDER), convert(cached, currentRecorder));
+            if (round > 0) {
+                report.append(perCallLine).append(cachedLine);
+            }
+        }
+
+        // Reload of jobs saved in the legacy format
+        final String legacyProject = "<project>\n<builders/>\n<publishers>\n" + LEGACY_RECORDER
+                + "\n</publishers>\n<buildWrappers/>\n</project>";
+        for (int i = 0; i < JOBS; i++) {
+            jenkinsRule.jenkins.createProjectFromXML("job" + i,
+                    new ByteArrayInputStream(legacyProject.getBytes(StandardCharsets.UTF_8)));
+        }
+        final long legacyReload = reload();
+        LegacyConfigMigration.findLegacyConfigs();
+        final LegacyConfigMigration migration = LegacyConfigMigration.get();
+        assertThat(migration, notNullValue());
+        assertThat(migration.getTotal(), is(JOBS));
+
+        long start = System.nanoTime();
+        migration.migrate();
+        final long migrationMillis = (System.nanoTime() - start) / 1000000;
+        assertThat(migration.getMigrated(), is(JOBS));
+        assertThat(migration.getTotal(), is(0));
+
+        final long migratedReload = reload();
+        final FreeStyleProject job = jenkinsRule.jenkins.getItemByFullName("job0", FreeStyleProject.class);
+        assertThat(job.getPublishersList().get(HockeyappRecorder.class).getApplications().size(), is(1));
+
+        report.append(String.format("%n%-40s %10d ms%n", "Reload of " + JOBS + " legacy jobs", legacyReload));
+        report.append(String.format("%-40s %10d ms%n", "Migration", migrationMillis));
+        report.append(String.format("%-40s %10d ms%n", "Reload after migration", migratedReload));
+
+        System.out.println(report);
+        FileUtils.writeStringToFile(new File("target", "config-load-report.txt"), report.toString(),
+                StandardCharsets.UTF_8);
+    }
+
+    private static double convert(XStream xstream, String xml) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < CONVERSIONS; i++) {
+            xstream.fromXML(xml);
+        }
+        return (System.nanoTime() - start) / 1000d / CONVERSIONS;
+    }
+
+    private long reload() throws Exception {
+        final long start = System.nanoTime();
+        jenkinsRule.jenkins.reload();
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * How the converter behaved before it was cached.
+     */
+    private static final class PerCallConverter implements Converter {
+        private final XStream xstream;
+
+        private PerCallConverter(XStream xstream) {
+            this.xstream = xstream;
+        }
+
+        @Override
+        public boolean canConvert(Class type) {
+            return type.equals(HockeyappRecorder.class);
+        }
+
+        @Override
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+            new HockeyappRecorderConverter(xstream).marshal(source, writer, context);
+        }
+
+        @Override
+        public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+            return new HockeyappRecorderConverter(xstream).unmarshal(reader, context);
+        }
+    }
+}
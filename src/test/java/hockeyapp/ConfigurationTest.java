@@ -3,8 +3,12 @@ package hockeyapp;
 import com.gargoylesoftware.htmlunit.html.HtmlForm;
 import hockeyapp.builder.HockeyappApplicationBuilder;
 import hudson.model.FreeStyleProject;
+import hudson.util.FormValidation;
 import net.hockeyapp.jenkins.releaseNotes.ChangelogReleaseNotes;
+import net.hockeyapp.jenkins.releaseNotes.FileReleaseNotes;
+import net.hockeyapp.jenkins.releaseNotes.TemplateReleaseNotes;
 import net.hockeyapp.jenkins.uploadMethod.AppCreation;
+import net.hockeyapp.jenkins.uploadMethod.ChunkedUpload;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -15,6 +19,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
 public class ConfigurationTest {
     @ClassRule
     public static JenkinsRule jenkinsRule = new JenkinsRule();
@@ -76,6 +83,102 @@ public class ConfigurationTest {
         jenkinsRule.assertEqualDataBoundBeans(hockeyappRecorder, project.getPublishersList().get(HockeyappRecorder.class));
     }
 
+    @Test
+    public void should_Configure_WithChangelogSinceLastUpload_Success() throws Exception {
+        // Given
+        final ChangelogReleaseNotes changelogReleaseNotes = new ChangelogReleaseNotes();
+        changelogReleaseNotes.setSinceLastUpload(true);
+        changelogReleaseNotes.setMaxLength(5000);
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setReleaseNotesMethod(changelogReleaseNotes)
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(applications);
+        final HtmlForm freeStyleJob = configureFreeStyleJob(hockeyappRecorder);
+
+        // When
+        jenkinsRule.submit(freeStyleJob);
+
+        // Then
+        jenkinsRule.assertEqualDataBoundBeans(hockeyappRecorder, project.getPublishersList().get(HockeyappRecorder.class));
+    }
+
+    @Test
+    public void should_Configure_WithTemplateReleaseNotes_Success() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setReleaseNotesMethod(new TemplateReleaseNotes("{{#changes}}* {{message}}\n{{/changes}}", false))
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(applications);
+        final HtmlForm freeStyleJob = configureFreeStyleJob(hockeyappRecorder);
+
+        // When
+        jenkinsRule.submit(freeStyleJob);
+
+        // Then
+        jenkinsRule.assertEqualDataBoundBeans(hockeyappRecorder, project.getPublishersList().get(HockeyappRecorder.class));
+    }
+
+    @Test
+    public void should_Configure_WithChunkedUpload_Success() throws Exception {
+        // Given
+        final ChunkedUpload chunkedUpload = new ChunkedUpload("owner", "app");
+        chunkedUpload.setApiUrl("https://appcenter.example.com");
+        chunkedUpload.setChunkSize(8);
+        chunkedUpload.setParallelism(6);
+        chunkedUpload.setChunkRetries(5);
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setUploadMethod(chunkedUpload)
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(applications);
+        final HtmlForm freeStyleJob = configureFreeStyleJob(hockeyappRecorder);
+
+        // When
+        jenkinsRule.submit(freeStyleJob);
+
+        // Then
+        jenkinsRule.assertEqualDataBoundBeans(hockeyappRecorder, project.getPublishersList().get(HockeyappRecorder.class));
+    }
+
+    @Test
+    public void should_Configure_WithMirror_Success() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(applications);
+        final HockeyappMirror mirror = new HockeyappMirror("https://hockeyapp.example.com", "MIRROR_TOKEN");
+        mirror.setAppId("mirrorappid");
+        hockeyappRecorder.setMirrors(Collections.singletonList(mirror));
+        final HtmlForm freeStyleJob = configureFreeStyleJob(hockeyappRecorder);
+
+        // When
+        jenkinsRule.submit(freeStyleJob);
+
+        // Then
+        jenkinsRule.assertEqualDataBoundBeans(hockeyappRecorder, project.getPublishersList().get(HockeyappRecorder.class));
+    }
+
+    @Test
+    public void should_Configure_WithFileReleaseNotesLimit_Success() throws Exception {
+        // Given
+        final FileReleaseNotes fileReleaseNotes = new FileReleaseNotes("notes.txt", true);
+        fileReleaseNotes.setMaxBytes(4096);
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setReleaseNotesMethod(fileReleaseNotes)
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(applications);
+        final HtmlForm freeStyleJob = configureFreeStyleJob(hockeyappRecorder);
+
+        // When
+        jenkinsRule.submit(freeStyleJob);
+
+        // Then
+        jenkinsRule.assertEqualDataBoundBeans(hockeyappRecorder, project.getPublishersList().get(HockeyappRecorder.class));
+    }
+
     @Test
     public void should_Configure_WithDebugMode_Success() throws Exception {
         // Given
@@ -124,6 +227,22 @@ public class ConfigurationTest {
         jenkinsRule.assertEqualDataBoundBeans(hockeyappRecorder, project.getPublishersList().get(HockeyappRecorder.class));
     }
 
+    @Test
+    public void should_Configure_WithDryRun_Success() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(applications);
+        hockeyappRecorder.setDryRun(true);
+        final HtmlForm freeStyleJob = configureFreeStyleJob(hockeyappRecorder);
+
+        // When
+        jenkinsRule.submit(freeStyleJob);
+
+        // Then
+        jenkinsRule.assertEqualDataBoundBeans(hockeyappRecorder, project.getPublishersList().get(HockeyappRecorder.class));
+    }
+
     @Test
     public void should_Configure_WithBaseUrl_AndDebugMode_AndFailGracefully_Success() throws Exception {
         // Given
@@ -142,6 +261,21 @@ public class ConfigurationTest {
         jenkinsRule.assertEqualDataBoundBeans(hockeyappRecorder, project.getPublishersList().get(HockeyappRecorder.class));
     }
 
+    @Test
+    public void should_RequireTemplate_When_TemplateIsMissing() {
+        // Given
+        final TemplateReleaseNotes.DescriptorImpl descriptor =
+                jenkinsRule.jenkins.getDescriptorByType(TemplateReleaseNotes.DescriptorImpl.class);
+
+        // When
+        final FormValidation missing = descriptor.doCheckTemplate(null);
+        final FormValidation blank = descriptor.doCheckTemplate("  ");
+
+        // Then
+        assertThat(missing.kind, is(FormValidation.Kind.ERROR));
+        assertThat(blank.kind, is(FormValidation.Kind.ERROR));
+    }
+
     private HtmlForm configureFreeStyleJob(HockeyappRecorder hockeyappRecorder) throws IOException, SAXException {
         project = jenkinsRule.createFreeStyleProject();
         project.getPublishersList().add(hockeyappRecorder);
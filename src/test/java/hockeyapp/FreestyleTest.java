@@ -1,27 +1,54 @@
 package hockeyapp;
 
+import com.github.tomakehurst.wiremock.http.RequestMethod;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
 import hockeyapp.builder.HockeyappApplicationBuilder;
+import hudson.EnvVars;
 import hudson.Launcher;
+import hudson.ProxyConfiguration;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import net.hockeyapp.jenkins.releaseNotes.ChangelogReleaseNotes;
+import net.hockeyapp.jenkins.releaseNotes.FileReleaseNotes;
 import net.hockeyapp.jenkins.releaseNotes.ManualReleaseNotes;
+import net.hockeyapp.jenkins.releaseNotes.TemplateReleaseNotes;
+import net.hockeyapp.jenkins.uploadMethod.ChunkedUpload;
 import net.hockeyapp.jenkins.uploadMethod.VersionCreation;
 import org.junit.Before;
 import org.junit.Test;
+import org.jvnet.hudson.test.FakeChangeLogSCM;
 import org.jvnet.hudson.test.TestBuilder;
 
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
 import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.moreThanOrExactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.notMatching;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.patch;
+import static com.github.tomakehurst.wiremock.client.WireMock.patchRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
 import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.putRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static hockeyapp.builder.HockeyappApplicationBuilder.FILE_PATH;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
 
 public class FreestyleTest extends ProjectTest {
 
@@ -176,6 +203,367 @@ public class FreestyleTest extends ProjectTest {
         failOnUnmatchedRequests();
     }
 
+    @Test
+    public void should_Not_SendUploadRequest_When_PreflightIsRejected() throws Exception {
+        // Given
+        apiKeyIsRevoked();
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setApiToken("REVOKED_API_TOKEN")
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        jenkinsRule.assertBuildStatus(Result.FAILURE, build);
+        jenkinsRule.assertLogContains("The API Token was rejected by HockeyApp (401).", build);
+        mockHockeyAppServer.verify(0, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL)));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_SendUploadRequest_When_PreflightIsForbidden() throws Exception {
+        // Given
+        apiKeyMayOnlyUpload();
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setApiToken("UPLOAD_ONLY_API_TOKEN")
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        jenkinsRule.assertLogContains("The API Token may not read /api/2/apps (403), uploading anyway.", build);
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL)));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_CheckAgain_When_PreflightWasForbidden() throws Exception {
+        // Given
+        apiKeyMayOnlyUpload();
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setApiToken("UPLOAD_ONLY_API_TOKEN")
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+        assertBuildSuccessful(project.scheduleBuild2(0).get());
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        jenkinsRule.assertLogContains("The API Token may not read /api/2/apps (403), uploading anyway.", build);
+        mockHockeyAppServer.verify(2, getRequestedFor(urlEqualTo(HOCKEY_APP_LIST_URL)));
+        mockHockeyAppServer.verify(2, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL)));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_Not_SendAnyRequest_When_OldVersionCountIsInvalid() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setOldVersionHolder(new HockeyappApplication.OldVersionHolder(
+                        "0",
+                        "version",
+                        "purge"))
+                .create();
+        addFreeStyleJob(Collections.singletonList(hockeyappApplication));
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        jenkinsRule.assertBuildStatus(Result.FAILURE, build);
+        jenkinsRule.assertLogContains("You need to keep at least one version!", build);
+        mockHockeyAppServer.verify(0, anyRequestedFor(anyUrl()));
+    }
+
+    @Test
+    public void should_BypassProxy_When_HostMatchesNoProxyPattern() throws Exception {
+        // Given
+        final ProxyConfiguration proxy = new ProxyConfiguration("proxy.invalid", 3128, null, null, "localhost");
+        jenkinsRule.jenkins.proxy = proxy;
+        proxy.save();
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(
+                Collections.singletonList(hockeyappApplication));
+        hockeyappRecorder.setBaseUrl("http://localhost:" + mockHockeyAppServer.port());
+        hockeyappRecorder.setDebugMode(true);
+        project.getPublishersList().add(hockeyappRecorder);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        jenkinsRule.assertLogContains("Found matching Proxy exception rule [localhost]", build);
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL)));
+    }
+
+    @Test
+    public void should_SendUploadRequestToMirror_When_MirrorIsConfigured() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(
+                Collections.singletonList(hockeyappApplication));
+        hockeyappRecorder.setBaseUrl("http://localhost:" + mockHockeyAppServer.port());
+        hockeyappRecorder.setMirrors(Collections.singletonList(
+                new HockeyappMirror("http://127.0.0.1:" + mockHockeyAppServer.port(), "MIRROR_TOKEN")));
+        project.getPublishersList().add(hockeyappRecorder);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        mockHockeyAppServer.verify(2, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withRequestBody(ipaFormData()));
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withHeader("X-HockeyAppToken", equalTo("MIRROR_TOKEN")));
+        final MirrorUploadAction mirrorUpload = build.getAction(MirrorUploadAction.class);
+        assertThat(mirrorUpload.isSuccessful(), is(true));
+        assertThat(mirrorUpload.getHost(), is("127.0.0.1"));
+        assertThat(mirrorUpload.getStatusCode(), is(201));
+    }
+
+    @Test
+    public void should_UploadInChunks_When_ChunkedUploadIsSelected() throws Exception {
+        // Given
+        final String uploadsUrl = "/v0.1/apps/owner/app/uploads/releases";
+        final String chunkUrl = "/upload/upload_chunk/asset";
+        mockHockeyAppServer.stubFor(post(urlEqualTo(uploadsUrl))
+                .willReturn(okJson("{\"id\": \"upload\", \"package_asset_id\": \"asset\", "
+                        + "\"upload_domain\": \"http://localhost:" + mockHockeyAppServer.port() + "\", "
+                        + "\"url_encoded_token\": \"token\"}").withStatus(201)));
+        mockHockeyAppServer.stubFor(post(urlPathEqualTo("/upload/set_metadata/asset"))
+                .willReturn(okJson("{\"chunk_size\": 4, \"chunk_list\": [1, 2, 3]}")));
+        // The first chunk sent fails once
+        mockHockeyAppServer.stubFor(post(urlPathEqualTo(chunkUrl))
+                .inScenario("chunks").whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(503))
+                .willSetStateTo("retried"));
+        mockHockeyAppServer.stubFor(post(urlPathEqualTo(chunkUrl))
+                .inScenario("chunks").whenScenarioStateIs("retried")
+                .willReturn(okJson("{\"error\": false}")));
+        mockHockeyAppServer.stubFor(post(urlPathEqualTo("/upload/finished/asset"))
+                .willReturn(okJson("{\"error\": false, \"state\": \"Done\"}")));
+        mockHockeyAppServer.stubFor(patch(urlEqualTo(uploadsUrl + "/upload"))
+                .willReturn(okJson("{\"id\": \"upload\", \"upload_status\": \"uploadFinished\"}")));
+        mockHockeyAppServer.stubFor(get(urlEqualTo(uploadsUrl + "/upload"))
+                .willReturn(okJson("{\"id\": \"upload\", \"upload_status\": \"readyToBeReleased\", "
+                        + "\"release_distinct_id\": 42}")));
+        mockHockeyAppServer.stubFor(patch(urlEqualTo("/v0.1/apps/owner/app/releases/42"))
+                .willReturn(okJson("{}")));
+        final ChunkedUpload chunkedUpload = new ChunkedUpload("owner", "app");
+        chunkedUpload.setApiUrl("http://localhost:" + mockHockeyAppServer.port());
+        chunkedUpload.setParallelism(2);
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setUploadMethod(chunkedUpload)
+                .setReleaseNotesMethod(new ManualReleaseNotes("releaseNotes", false))
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        jenkinsRule.assertLogContains("in 3 chunks over 2 connections", build);
+        jenkinsRule.assertLogContains("failed, sending it again", build);
+        mockHockeyAppServer.verify(postRequestedFor(urlEqualTo(uploadsUrl))
+                .withHeader("X-API-Token", equalTo("API_TOKEN")));
+        mockHockeyAppServer.verify(postRequestedFor(urlPathEqualTo(chunkUrl))
+                .withQueryParam("block_number", equalTo("1"))
+                .withQueryParam("token", equalTo("token"))
+                .withRequestBody(equalTo("Lore")));
+        mockHockeyAppServer.verify(postRequestedFor(urlPathEqualTo(chunkUrl))
+                .withQueryParam("block_number", equalTo("2"))
+                .withRequestBody(equalTo("m Ip")));
+        mockHockeyAppServer.verify(postRequestedFor(urlPathEqualTo(chunkUrl))
+                .withQueryParam("block_number", equalTo("3"))
+                .withRequestBody(equalTo("sum")));
+        mockHockeyAppServer.verify(patchRequestedFor(urlEqualTo(uploadsUrl + "/upload"))
+                .withRequestBody(containing("uploadFinished")));
+        mockHockeyAppServer.verify(patchRequestedFor(urlEqualTo("/v0.1/apps/owner/app/releases/42"))
+                .withRequestBody(containing("releaseNotes")));
+        mockHockeyAppServer.verify(0, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL)));
+    }
+
+    @Test
+    public void should_Not_SendAnyRequest_When_DryRun() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setOldVersionHolder(new HockeyappApplication.OldVersionHolder(
+                        "5",
+                        "version",
+                        "purge"))
+                .create();
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(
+                Collections.singletonList(hockeyappApplication));
+        hockeyappRecorder.setBaseUrl("http://localhost:" + mockHockeyAppServer.port());
+        hockeyappRecorder.setDryRun(true);
+        project.getPublishersList().add(hockeyappRecorder);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        assertConfigurationLinkActionIsCreated(build);
+        jenkinsRule.assertLogContains("Dry run: discarded", build);
+        jenkinsRule.assertLogContains("Upload phase timings: resolve", build);
+        jenkinsRule.assertLogContains(", list ", build);
+        mockHockeyAppServer.verify(0, anyRequestedFor(anyUrl()));
+    }
+
+    @Test
+    public void should_SendTruncatedReleaseNotes_When_FileIsLargerThanLimit() throws Exception {
+        // Given
+        project.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build,
+                                   Launcher launcher,
+                                   BuildListener listener)
+                    throws InterruptedException, IOException {
+                build.getWorkspace().child("notes.txt").write("Fixed all the bugs. Then some more.", "UTF-8");
+                return true;
+            }
+        });
+        final FileReleaseNotes fileReleaseNotes = new FileReleaseNotes("notes.txt", false);
+        fileReleaseNotes.setMaxBytes(19);
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setReleaseNotesMethod(fileReleaseNotes)
+                .create();
+        addFreeStyleJob(Collections.singletonList(hockeyappApplication));
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withRequestBody(releaseNotesTypeFormData())
+                .withRequestBody(containing("Fixed all the bugs.\n[... 16 more bytes of release notes not shown]")));
+        mockHockeyAppServer.verify(0, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withRequestBody(containing("Then some more.")));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_SendChangesOfCurrentBuild_When_ChangelogIsSelected() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setReleaseNotesMethod(new ChangelogReleaseNotes())
+                .create();
+        addFreeStyleJob(Collections.singletonList(hockeyappApplication));
+        final FakeChangeLogSCM scm = new FakeChangeLogSCM();
+        project.setScm(scm);
+        scm.addChange().withAuthor("alice").withMsg("First change");
+        jenkinsRule.assertBuildStatusSuccess(project.scheduleBuild2(0));
+        scm.addChange().withAuthor("bob").withMsg("Second change");
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withRequestBody(containing("Second change")));
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withRequestBody(containing("First change")));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_SendRenderedTemplate_When_TemplateIsSelected() throws Exception {
+        // Given
+        final String template = "Build {{build.number}} of ${JOB_NAME}\n"
+                + "{{#changes}}\n"
+                + "- {{message}} ({{author}})\n"
+                + "{{/changes}}\n"
+                + "{{^tests.total}}\n"
+                + "No tests.\n"
+                + "{{/tests.total}}";
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setReleaseNotesMethod(new TemplateReleaseNotes(template, true))
+                .create();
+        addFreeStyleJob(Collections.singletonList(hockeyappApplication));
+        final FakeChangeLogSCM scm = new FakeChangeLogSCM();
+        project.setScm(scm);
+        scm.addChange().withAuthor("alice").withMsg("First change");
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withRequestBody(containing("Build 1 of " + project.getName() + "\n- First change (alice)\nNo tests.")));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_SendChangesOfFailedBuilds_When_ChangelogIsSinceLastUpload() throws Exception {
+        // Given
+        firstUploadIsUnavailable();
+        final ChangelogReleaseNotes changelogReleaseNotes = new ChangelogReleaseNotes();
+        changelogReleaseNotes.setSinceLastUpload(true);
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setReleaseNotesMethod(changelogReleaseNotes)
+                .create();
+        addFreeStyleJob(Collections.singletonList(hockeyappApplication));
+        final FakeChangeLogSCM scm = new FakeChangeLogSCM();
+        project.setScm(scm);
+        scm.addChange().withAuthor("alice").withMsg("First change");
+        jenkinsRule.assertBuildStatus(Result.FAILURE, project.scheduleBuild2(0).get());
+        scm.addChange().withAuthor("bob").withMsg("Second change");
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        mockHockeyAppServer.verify(postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withRequestBody(containing("First change"))
+                .withRequestBody(containing("Second change")));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_SendChangesOfGracefullyFailedBuilds_When_ChangelogIsSinceLastUpload() throws Exception {
+        // Given
+        firstUploadIsUnavailable();
+        final ChangelogReleaseNotes changelogReleaseNotes = new ChangelogReleaseNotes();
+        changelogReleaseNotes.setSinceLastUpload(true);
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setReleaseNotesMethod(changelogReleaseNotes)
+                .create();
+        addFreeStyleJob(Collections.singletonList(hockeyappApplication));
+        project.getPublishersList().get(HockeyappRecorder.class).setFailGracefully(true);
+        final FakeChangeLogSCM scm = new FakeChangeLogSCM();
+        project.setScm(scm);
+        scm.addChange().withAuthor("alice").withMsg("First change");
+        jenkinsRule.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0).get());
+        scm.addChange().withAuthor("bob").withMsg("Second change");
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        mockHockeyAppServer.verify(postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withRequestBody(containing("First change"))
+                .withRequestBody(containing("Second change")));
+        failOnUnmatchedRequests();
+    }
+
     @Test
     public void should_SendUploadRequest_When_VersionCreationIsSelected_And_VersionIsNotSpecified() throws Exception {
         // Given
@@ -247,6 +635,197 @@ public class FreestyleTest extends ProjectTest {
         failOnUnmatchedRequests();
     }
 
+    @Test
+    public void should_KeepUploadInRecord_When_UploadSucceeds() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        final HockeyappUploadRecord record = HockeyappUploadRecord.of(build);
+        assertThat(record.getUploads().size(), is(1));
+        assertThat(record.getUploads().get(0).getConfigUrl(),
+                is("https://rink.hockeyapp.net/manage/apps/bar/app_versions/1"));
+        assertThat(record.getUploads().get(0).getSize(), is((long) IPA_CONTENTS.length()));
+        assertConfigurationLinkActionIsCreated(build);
+        assertInstallationLinkActionIsCreated(build);
+        final EnvVars env = build.getEnvironment(TaskListener.NULL);
+        assertThat(env.get("HOCKEYAPP_CONFIG_URL_0"), is("https://rink.hockeyapp.net/manage/apps/bar/app_versions/1"));
+        assertThat(env.get("HOCKEYAPP_INSTALL_URL"), is("https://rink.hockeyapp.net/apps/foo/app_versions/1"));
+    }
+
+    @Test
+    public void should_MarkBuildUnstable_When_ArtifactGrowsBeyondThreshold() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+        project.getPublishersList().get(HockeyappRecorder.class).setSizeGrowthThreshold(50);
+        jenkinsRule.assertBuildStatusSuccess(project.scheduleBuild2(0));
+        project.getBuildersList().clear();
+        project.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build,
+                                   Launcher launcher,
+                                   BuildListener listener)
+                    throws InterruptedException, IOException {
+                build.getWorkspace().child(FILE_PATH).write(IPA_CONTENTS + IPA_CONTENTS, "UTF-8");
+                return true;
+            }
+        });
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        jenkinsRule.assertBuildStatus(Result.UNSTABLE, build);
+        final UploadTrendAction trend = project.getAction(UploadTrendAction.class);
+        assertThat(trend.getUploads().size(), is(2));
+        assertThat(trend.getUploads().get(1).getSize(), is(2L * IPA_CONTENTS.length()));
+    }
+
+    @Test
+    public void should_SendOnlySymbols_When_SymbolsOnlyIsSelected() throws Exception {
+        // Given
+        final String version = "1";
+        final VersionCreation versionCreation = new VersionCreation(APP_ID);
+        versionCreation.setVersionCode(version);
+        versionCreation.setSymbolsOnly(true);
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setUploadMethod(versionCreation)
+                .setDsymPath(FILE_PATH)
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+        final SymbolUploadAction symbolUpload = build.getAction(SymbolUploadAction.class);
+        symbolUpload.getFuture().get();
+
+        // Then
+        jenkinsRule.assertBuildStatusSuccess(build);
+        assertThat(symbolUpload.isSuccessful(), is(true));
+        assertThat(symbolUpload.getDisplayName(), is(Messages.SYMBOLS_ACTION(1, Messages.SYMBOLS_SUCCEEDED())));
+        mockHockeyAppServer.verify(1, putRequestedFor(urlEqualTo(HOCKEY_VERSION_UPLOAD_EXISTING_BASE_URL + version))
+                .withRequestBody(containing("name=\"dsym\""))
+                .withRequestBody(notMatching("(?s).*name=\"(ipa|notify|status)\".*")));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_FailBeforeDetaching_When_SymbolsGoToMissingVersion() throws Exception {
+        // Given
+        final VersionCreation versionCreation = new VersionCreation(APP_ID);
+        versionCreation.setVersionCode("3");
+        versionCreation.setSymbolsOnly(true);
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setUploadMethod(versionCreation)
+                .setDsymPath(FILE_PATH)
+                .create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        jenkinsRule.assertBuildStatus(Result.FAILURE, build);
+        jenkinsRule.assertLogContains("Version 3 does not exist for App ID " + APP_ID + ".", build);
+        assertThat(build.getAction(SymbolUploadAction.class), is(nullValue()));
+        mockHockeyAppServer.verify(0, putRequestedFor(urlEqualTo(HOCKEY_VERSION_UPLOAD_EXISTING_BASE_URL + "3")));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_SendUploadRequestAgain_When_TooManyRequests() throws Exception {
+        // Given
+        mockHockeyAppServer.stubFor(post(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .inScenario("throttled").whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(429).withHeader("Retry-After", "1"))
+                .willSetStateTo("retried"));
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        jenkinsRule.assertLogContains("Too many requests to HockeyApp", build);
+        mockHockeyAppServer.verify(2, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .withRequestBody(ipaFormData()));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_WarmUpConnection_When_PreflightIsRemembered() throws Exception {
+        // Given
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+        jenkinsRule.assertBuildStatusSuccess(project.scheduleBuild2(0).get());
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        mockHockeyAppServer.verify(moreThanOrExactly(1),
+                new RequestPatternBuilder(RequestMethod.HEAD, urlEqualTo(HOCKEY_APP_LIST_URL))
+                        .withoutHeader("X-HockeyAppToken"));
+        mockHockeyAppServer.verify(2, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL)));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_FailBuild_When_UploadIsAborted() throws Exception {
+        // Given
+        hockeyAppStopsAnsweringUploads();
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        jenkinsRule.assertBuildStatus(Result.FAILURE, build);
+        assertInstallationLinkActionIsNotCreated(build);
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL)));
+        failOnUnmatchedRequests();
+    }
+
+    @Test
+    public void should_KeepBuildSuccessful_When_UploadIsAborted_And_FailGracefullyIsSelected() throws Exception {
+        // Given
+        hockeyAppStopsAnsweringUploads();
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder().create();
+        final List<HockeyappApplication> applications = Collections.singletonList(hockeyappApplication);
+        addFreeStyleJob(applications);
+        project.getPublishersList().get(HockeyappRecorder.class).setFailGracefully(true);
+
+        // When
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+        // Then
+        jenkinsRule.assertBuildStatus(Result.SUCCESS, build);
+        assertInstallationLinkActionIsNotCreated(build);
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_APP_UPLOAD_URL)));
+        failOnUnmatchedRequests();
+    }
+
+    private void hockeyAppStopsAnsweringUploads() {
+        jenkinsRule.jenkins.getDescriptorByType(HockeyappRecorder.DescriptorImpl.class).setTimeout("1");
+        mockHockeyAppServer.stubFor(post(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .willReturn(aResponse().withStatus(201).withFixedDelay(10000)));
+    }
+
     private void addFreeStyleJob(List<HockeyappApplication> applications) {
         final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(applications);
         hockeyappRecorder.setBaseUrl("http://localhost:" + mockHockeyAppServer.port());
@@ -0,0 +1,128 @@
+package hockeyapp;
+
+import hockeyapp.builder.HockeyappApplicationBuilder;
+import hudson.model.FreeStyleProject;
+import hudson.util.Secret;
+import net.hockeyapp.jenkins.releaseNotes.ManualReleaseNotes;
+import net.hockeyapp.jenkins.uploadMethod.VersionCreation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LegacyConfigMigrationTest {
+
+    private static final String LEGACY_PROJECT = "<project>\n"
+            + "  <builders/>\n"
+            + "  <publishers>\n"
+            + "    <hockeyapp.HockeyappRecorder>\n"
+            + "      <apiToken>0123456789abcdef</apiToken>\n"
+            + "      <appId>fedcba9876543210</appId>\n"
+            + "      <notifyTeam>true</notifyTeam>\n"
+            + "      <buildNotes>Built by Jenkins</buildNotes>\n"
+            + "      <filePath>build/*.ipa</filePath>\n"
+            + "      <dsymPath>build/*.dSYM.zip</dsymPath>\n"
+            + "      <tags>beta</tags>\n"
+            + "      <mandatory>false</mandatory>\n"
+            + "      <downloadAllowed>true</downloadAllowed>\n"
+            + "      <useChangelog>false</useChangelog>\n"
+            + "      <numberOldVersions>5</numberOldVersions>\n"
+            + "      <useAppVersionURL>true</useAppVersionURL>\n"
+            + "      <debugMode>true</debugMode>\n"
+            + "      <useNotesTypeMarkdown>false</useNotesTypeMarkdown>\n"
+            + "      <baseUrl>https://hockeyapp.example.com/</baseUrl>\n"
+            + "      <failGracefully>true</failGracefully>\n"
+            + "    </hockeyapp.HockeyappRecorder>\n"
+            + "  </publishers>\n"
+            + "  <buildWrappers/>\n"
+            + "</project>";
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private LegacyConfigMigration migration;
+
+    @Before
+    public void before() {
+        migration = LegacyConfigMigration.get();
+        assertThat(migration, is(notNullValue()));
+    }
+
+    @Test
+    public void should_MigrateJob_When_ConfigIsLegacy() throws Exception {
+        // Given
+        jenkinsRule.jenkins.createProjectFromXML("legacy",
+                new ByteArrayInputStream(LEGACY_PROJECT.getBytes(StandardCharsets.UTF_8)));
+        LegacyConfigMigration.findLegacyConfigs();
+        assertThat(migration.getTotal(), is(1));
+
+        // When
+        migration.migrate();
+        jenkinsRule.jenkins.reload();
+
+        // Then
+        assertThat(migration.getMigrated(), is(1));
+        assertThat(migration.getFailed(), is(0));
+        assertThat(migration.getTotal(), is(0));
+        final FreeStyleProject project = jenkinsRule.jenkins.getItemByFullName("legacy", FreeStyleProject.class);
+        final String config = project.getConfigFile().asString();
+        assertThat(config, containsString("schemaVersion=\"" + HockeyappRecorder.SCHEMA_VERSION_NUMBER + "\""));
+        assertThat(config, containsString("<applications"));
+        assertThat(config, not(containsString("<useAppVersionURL>")));
+
+        final HockeyappRecorder recorder = project.getPublishersList().get(HockeyappRecorder.class);
+        assertThat(recorder.getDebugMode(), is(true));
+        assertThat(recorder.getFailGracefully(), is(true));
+        assertThat(recorder.getBaseUrl(), is("https://hockeyapp.example.com/"));
+        assertThat(recorder.getApplications().size(), is(1));
+        final HockeyappApplication application = recorder.getApplications().get(0);
+        assertThat(Secret.toString(application.apiToken), is("0123456789abcdef"));
+        assertThat(application.appId, is("fedcba9876543210"));
+        assertThat(application.notifyTeam, is(true));
+        assertThat(application.filePath, is("build/*.ipa"));
+        assertThat(application.dsymPath, is("build/*.dSYM.zip"));
+        assertThat(application.tags, is("beta"));
+        assertThat(application.downloadAllowed, is(true));
+        assertThat(application.getNumberOldVersions(), is("5"));
+        assertThat(application.getUploadMethod(), is(instanceOf(VersionCreation.class)));
+        assertThat(((VersionCreation) application.getUploadMethod()).getAppId(), is("fedcba9876543210"));
+        assertThat(application.getReleaseNotesMethod(), is(instanceOf(ManualReleaseNotes.class)));
+        assertThat(((ManualReleaseNotes) application.getReleaseNotesMethod()).getReleaseNotes(),
+                is("Built by Jenkins"));
+    }
+
+    @Test
+    public void should_LeaveJobUntouched_When_ConfigIsMigrated() throws Exception {
+        // Given
+        final FreeStyleProject current = jenkinsRule.createFreeStyleProject("current");
+        current.getPublishersList().add(new HockeyappRecorder(Collections.singletonList(
+                new HockeyappApplicationBuilder().create())));
+        final String config = current.getConfigFile().asString();
+        final FreeStyleProject legacy = (FreeStyleProject) jenkinsRule.jenkins.createProjectFromXML("legacy",
+                new ByteArrayInputStream(LEGACY_PROJECT.getBytes(StandardCharsets.UTF_8)));
+        LegacyConfigMigration.findLegacyConfigs();
+        migration.migrate();
+        final String migratedConfig = legacy.getConfigFile().asString();
+
+        // When
+        LegacyConfigMigration.findLegacyConfigs();
+        migration.migrate();
+
+        // Then
+        assertThat(migration.getTotal(), is(0));
+        assertThat(migration.getMigrated(), is(0));
+        assertThat(current.getConfigFile().asString(), is(config));
+        assertThat(legacy.getConfigFile().asString(), is(migratedConfig));
+    }
+}
@@ -0,0 +1,482 @@
+package hockeyapp;
+
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformer;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.RequestMethod;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import hockeyapp.builder.HockeyappApplicationBuilder;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.console.ConsoleLogFilter;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.FreeStyleProject;
+import hudson.model.Node;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.DumbSlave;
+import hudson.slaves.RetentionStrategy;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+import jenkins.tasks.SimpleBuildStep;
+import org.apache.commons.io.FileUtils;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Runs many freestyle and Pipeline uploads at once against a local HockeyApp stand-in, see the {@code loadtest}
+ * profile.
+ * <p>
+ * The stand-in adds latency, emulates a bandwidth cap by delaying the response in proportion to the upload size
+ * and fails a share of the uploads. The report (wall time, per-phase timings and resource peaks) is printed and
+ * written to {@code target/loadtest-report.txt}. Properties, all prefixed with {@code hockeyapp.loadtest.}:
+ * {@code builds} (200), {@code pipelineShare} (0.5), {@code agents} (4), {@code sizeMegabytes} (1),
+ * {@code latencyMillis} (50), {@code bandwidthKilobytes} (per second and upload, 0 for none) and
+ * {@code errorRate} (0.0).
+ */
+public class LoadTestRunner {
+
+    private static final String PREFIX = "hockeyapp.loadtest.";
+    private static final String ARTIFACT = "load.ipa";
+    private static final String LABEL = "loadtest";
+
+    private static final int BUILDS = Integer.getInteger(PREFIX + "builds", 200);
+    private static final double PIPELINE_SHARE = Double.parseDouble(System.getProperty(PREFIX + "pipelineShare", "0.5"));
+    private static final int AGENTS = Integer.getInteger(PREFIX + "agents", 4);
+    private static final int SIZE_MEGABYTES = Integer.getInteger(PREFIX + "sizeMegabytes", 1);
+    private static final int LATENCY_MILLIS = Integer.getInteger(PREFIX + "latencyMillis", 50);
+    private static final int BANDWIDTH_KILOBYTES = Integer.getInteger(PREFIX + "bandwidthKilobytes", 0);
+    private static final double ERROR_RATE = Double.parseDouble(System.getProperty(PREFIX + "errorRate", "0.0"));
+
+    // Build log milestones, by build
+    private static final Map<String, Map<Milestone, Long>> MILESTONES = new ConcurrentHashMap<>();
+
+    @Rule
+    public JenkinsRule jenkinsRule = createJenkinsRule();
+    @Rule
+    public WireMockRule mockHockeyAppServer = new WireMockRule(options()
+            .dynamicPort()
+            .containerThreads(BUILDS + 10)
+            .disableRequestJournal()
+            .extensions(new StandIn()));
+    @Rule
+    public TemporaryFolder agentRoots = new TemporaryFolder();
+
+    private static JenkinsRule createJenkinsRule() {
+        final JenkinsRule jenkinsRule = new JenkinsRule();
+        jenkinsRule.timeout = 0;
+        return jenkinsRule;
+    }
+
+    private enum Milestone {
+        UPLOAD_STEP, STAGED, UPLOADED
+    }
+
+    private enum Phase {
+        QUEUE("queue"),
+        STEPS("build steps"),
+        TRANSFER("agent copy + preflight"),
+        UPLOAD("upload request"),
+        FINISH("after upload"),
+        TOTAL("total");
+
+        private final String description;
+
+        Phase(String description) {
+            this.description = description;
+        }
+    }
+
+    @Test
+    public void runLoadTest() throws Exception {
+        // Given
+        mockHockeyAppServer.stubFor(post(urlEqualTo(ProjectTest.HOCKEY_APP_UPLOAD_URL))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(201)
+                        .withBody(LocalHockeyappSink.UPLOAD_RESPONSE)));
+        mockHockeyAppServer.stubFor(get(urlEqualTo(ProjectTest.HOCKEY_APP_LIST_URL))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(200)
+                        .withBody("{ \"apps\": [], \"status\": \"success\" }")));
+
+        jenkinsRule.jenkins.setNumExecutors(0);
+        final int executorsPerAgent = (BUILDS + AGENTS - 1) / AGENTS;
+        final List<DumbSlave> agents = new ArrayList<>();
+        for (int i = 0; i < AGENTS; i++) {
+            @SuppressWarnings("deprecation")
+            final DumbSlave agent = new DumbSlave("agent" + i, "", agentRoots.newFolder().getPath(),
+                    String.valueOf(executorsPerAgent), Node.Mode.NORMAL, LABEL,
+                    jenkinsRule.createComputerLauncher(null), RetentionStrategy.NOOP, Collections.emptyList());
+            jenkinsRule.jenkins.addNode(agent);
+            agents.add(agent);
+        }
+        for (DumbSlave agent : agents) {
+            jenkinsRule.waitOnline(agent);
+        }
+
+        final int pipelines = (int) Math.round(BUILDS * PIPELINE_SHARE);
+        final List<Runnable> schedules = new ArrayList<>();
+        final List<Future<? extends Run>> builds = Collections.synchronizedList(new ArrayList<>());
+        final Map<Future<? extends Run>, Long> scheduledAt = new ConcurrentHashMap<>();
+        for (int i = 0; i < BUILDS; i++) {
+            if (i < pipelines) {
+                final WorkflowJob job = createPipelineJob("pipeline" + i);
+                schedules.add(() -> {
+                    final Future<? extends Run> build = job.scheduleBuild2(0);
+                    scheduledAt.put(build, System.currentTimeMillis());
+                    builds.add(build);
+                });
+            } else {
+                final FreeStyleProject project = createFreeStyleJob("freestyle" + i);
+                schedules.add(() -> {
+                    final Future<? extends Run> build = project.scheduleBuild2(0);
+                    scheduledAt.put(build, System.currentTimeMillis());
+                    builds.add(build);
+                });
+            }
+        }
+
+        final ResourceSampler sampler = new ResourceSampler();
+        final ScheduledExecutorService sampling = Executors.newSingleThreadScheduledExecutor();
+        sampling.scheduleAtFixedRate(sampler, 0, 200, TimeUnit.MILLISECONDS);
+
+        // When
+        final long start = System.currentTimeMillis();
+        for (Runnable schedule : schedules) {
+            schedule.run();
+        }
+        final Map<Result, Integer> results = new TreeMap<>((a, b) -> a.ordinal - b.ordinal);
+        final Map<Phase, List<Long>> timings = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            timings.put(phase, new ArrayList<>());
+        }
+        for (Future<? extends Run> future : new ArrayList<>(builds)) {
+            final Run<?, ?> build = future.get();
+            results.merge(build.getResult(), 1, Integer::sum);
+            addTimings(timings, build, scheduledAt.get(future));
+        }
+        final long wallTime = System.currentTimeMillis() - start;
+        sampling.shutdownNow();
+        sampler.run();
+
+        // Then
+        final String report = createReport(pipelines, wallTime, results, timings, sampler);
+        System.out.println(report);
+        final File reportFile = new File("target", "loadtest-report.txt");
+        FileUtils.writeStringToFile(reportFile, report, StandardCharsets.UTF_8);
+
+        assertThat(builds.size(), is(BUILDS));
+        if (ERROR_RATE == 0.0) {
+            assertThat(results.get(Result.SUCCESS), is(BUILDS));
+        }
+    }
+
+    private FreeStyleProject createFreeStyleJob(String name) throws IOException {
+        final FreeStyleProject project = jenkinsRule.createFreeStyleProject(name);
+        project.setAssignedLabel(jenkinsRule.jenkins.getLabel(LABEL));
+        project.getBuildersList().add(new SyntheticArtifactBuilder(SIZE_MEGABYTES));
+        final HockeyappApplication hockeyappApplication = new HockeyappApplicationBuilder()
+                .setFilePath(ARTIFACT)
+                .create();
+        final HockeyappRecorder hockeyappRecorder = new HockeyappRecorder(
+                Collections.singletonList(hockeyappApplication));
+        hockeyappRecorder.setBaseUrl("http://localhost:" + mockHockeyAppServer.port());
+        project.getPublishersList().add(hockeyappRecorder);
+        return project;
+    }
+
+    private WorkflowJob createPipelineJob(String name) throws IOException {
+        final WorkflowJob job = jenkinsRule.jenkins.createProject(WorkflowJob.class, name);
+        job.setDefinition(new CpsFlowDefinition(
+                "node('" + LABEL + "') { \n" +
+                        "step([$class: 'SyntheticArtifactBuilder', sizeMegabytes: " + SIZE_MEGABYTES + "])\n" +
+                        "step([$class: 'HockeyappRecorder', \n" +
+                        "   applications: [\n" +
+                        "       [$class: 'HockeyappApplication', \n" +
+                        "        apiToken: 'API_TOKEN',\n" +
+                        "        filePath: '" + ARTIFACT + "',\n" +
+                        "        uploadMethod: [$class: 'AppCreation',\n" +
+                        "                       publicPage: false],\n" +
+                        "        releaseNotesMethod: [$class: 'NoReleaseNotes']\n" +
+                        "       ]\n" +
+                        "   ],\n" +
+                        "   baseUrl: 'http://localhost:" + mockHockeyAppServer.port() + "/'\n" +
+                        "])\n" +
+                        "}", true));
+        return job;
+    }
+
+    private static void addTimings(Map<Phase, List<Long>> timings, Run<?, ?> build, Long scheduledAt) {
+        final long started = build.getStartTimeInMillis();
+        final long finished = started + build.getDuration();
+        if (scheduledAt != null) {
+            timings.get(Phase.QUEUE).add(started - scheduledAt);
+            timings.get(Phase.TOTAL).add(finished - scheduledAt);
+        }
+        final Map<Milestone, Long> milestones = MILESTONES.get(build.getExternalizableId());
+        if (milestones == null || milestones.size() != Milestone.values().length) {
+            // Not an upload that went through, or a log that was not decorated
+            return;
+        }
+        timings.get(Phase.STEPS).add(milestones.get(Milestone.UPLOAD_STEP) - started);
+        timings.get(Phase.TRANSFER).add(milestones.get(Milestone.STAGED) - milestones.get(Milestone.UPLOAD_STEP));
+        timings.get(Phase.UPLOAD).add(milestones.get(Milestone.UPLOADED) - milestones.get(Milestone.STAGED));
+        timings.get(Phase.FINISH).add(finished - milestones.get(Milestone.UPLOADED));
+    }
+
+    private static String createReport(int pipelines, long wallTime, Map<Result, Integer> results,
+                                       Map<Phase, List<Long>> timings, ResourceSampler sampler) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("HockeyApp load test: %d builds (%d freestyle, %d Pipeline), %d agents, %d MB artifacts%n",
+                BUILDS, BUILDS - pipelines, pipelines, AGENTS, SIZE_MEGABYTES));
+        sb.append(String.format("Stand-in: latency %d ms, bandwidth %s, error rate %.2f%n", LATENCY_MILLIS,
+                BANDWIDTH_KILOBYTES > 0 ? BANDWIDTH_KILOBYTES + " KB/s per upload" : "unlimited", ERROR_RATE));
+        sb.append(String.format("Wall time: %.1f s%n", wallTime / 1000.0));
+        sb.append("Results:");
+        for (Map.Entry<Result, Integer> result : results.entrySet()) {
+            sb.append(' ').append(result.getKey()).append('=').append(result.getValue());
+        }
+        sb.append(String.format("%n%n%-24s %8s %8s %8s %8s %8s%n", "Phase (ms)", "n", "p50", "p90", "p99", "max"));
+        for (Map.Entry<Phase, List<Long>> timing : timings.entrySet()) {
+            final List<Long> values = timing.getValue();
+            Collections.sort(values);
+            sb.append(String.format("%-24s %8d %8s %8s %8s %8s%n", timing.getKey().description, values.size(),
+                    percentile(values, 50), percentile(values, 90), percentile(values, 99), percentile(values, 100)));
+        }
+        sb.append(String.format("%nPeaks: threads %d (%d at start), heap %d MB, temp disk %d MB, busy executors %d/%d (mean %.0f%%)%n",
+                sampler.peakThreads, sampler.baselineThreads, sampler.peakHeap / FileUtils.ONE_MB,
+                sampler.peakTempDisk / FileUtils.ONE_MB, sampler.peakBusyExecutors, sampler.executors,
+                sampler.meanOccupancy() * 100));
+        return sb.toString();
+    }
+
+    private static String percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return "-";
+        }
+        final int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return String.valueOf(sorted.get(Math.max(0, index)));
+    }
+
+    /**
+     * Samples threads, heap, temporary disk space used by uploads and executor occupancy.
+     */
+    private static final class ResourceSampler implements Runnable {
+        private final int baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        private int peakThreads;
+        private long peakHeap;
+        private long peakTempDisk;
+        private int peakBusyExecutors;
+        private int executors;
+        private double occupancySum;
+        private int samples;
+
+        @Override
+        public synchronized void run() {
+            peakThreads = Math.max(peakThreads, ManagementFactory.getThreadMXBean().getThreadCount());
+            peakHeap = Math.max(peakHeap, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+            peakTempDisk = Math.max(peakTempDisk, tempDiskUsage());
+
+            int busy = 0;
+            int total = 0;
+            for (Computer computer : Jenkins.getInstance().getComputers()) {
+                busy += computer.countBusy();
+                total += computer.countExecutors();
+            }
+            peakBusyExecutors = Math.max(peakBusyExecutors, busy);
+            executors = Math.max(executors, total);
+            if (total > 0) {
+                occupancySum += (double) busy / total;
+                samples++;
+            }
+        }
+
+        synchronized double meanOccupancy() {
+            return samples == 0 ? 0 : occupancySum / samples;
+        }
+
+        private static long tempDiskUsage() {
+            long size = sizeOf(UploadStagingArea.getRoot());
+            // Transfer directories of HockeyappRecorder
+            final File[] transfers = new File(System.getProperty("java.io.tmpdir"))
+                    .listFiles((dir, name) -> name.startsWith("jtf"));
+            if (transfers != null) {
+                for (File transfer : transfers) {
+                    size += sizeOf(transfer);
+                }
+            }
+            return size;
+        }
+
+        private static long sizeOf(File file) {
+            try {
+                return file.exists() ? FileUtils.sizeOf(file) : 0;
+            } catch (RuntimeException e) {
+                // Deleted while walking it
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Adds latency, bandwidth cap and errors to the stubbed HockeyApp responses.
+     */
+    private static final class StandIn extends ResponseDefinitionTransformer {
+
+        @Override
+        public ResponseDefinition transform(Request request, ResponseDefinition responseDefinition,
+                                            FileSource files, Parameters parameters) {
+            final boolean upload = request.getMethod() != RequestMethod.GET;
+            long delay = LATENCY_MILLIS;
+            if (upload && BANDWIDTH_KILOBYTES > 0) {
+                delay += request.getBody().length * 1000L / (BANDWIDTH_KILOBYTES * 1024L);
+            }
+            final ResponseDefinitionBuilder response = ResponseDefinitionBuilder.like(responseDefinition)
+                    .withFixedDelay((int) delay);
+            if (upload && ThreadLocalRandom.current().nextDouble() < ERROR_RATE) {
+                if (ThreadLocalRandom.current().nextBoolean()) {
+                    response.withFault(Fault.CONNECTION_RESET_BY_PEER);
+                } else {
+                    response.withStatus(503).withBody("{ \"status\": \"error\" }");
+                }
+            }
+            return response.build();
+        }
+
+        @Override
+        public String getName() {
+            return "hockeyapp-stand-in";
+        }
+    }
+
+    /**
+     * Writes a sparse artifact of the given size to the workspace.
+     */
+    public static class SyntheticArtifactBuilder extends Builder implements SimpleBuildStep {
+        private final int sizeMegabytes;
+
+        @DataBoundConstructor
+        public SyntheticArtifactBuilder(int sizeMegabytes) {
+            this.sizeMegabytes = sizeMegabytes;
+        }
+
+        public int getSizeMegabytes() {
+            return sizeMegabytes;
+        }
+
+        @Override
+        public void perform(Run<?, ?> run, FilePath workspace, Launcher launcher, TaskListener listener)
+                throws InterruptedException, IOException {
+            workspace.child(ARTIFACT).act(new SetLength(sizeMegabytes * FileUtils.ONE_MB));
+        }
+
+        @TestExtension
+        public static class DescriptorImpl extends BuildStepDescriptor<Builder> {
+            @Override
+            public boolean isApplicable(Class<? extends AbstractProject> jobType) {
+                return true;
+            }
+        }
+    }
+
+    private static final class SetLength extends MasterToSlaveFileCallable<Void> {
+        private static final long serialVersionUID = 1L;
+        private final long length;
+
+        private SetLength(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public Void invoke(File f, VirtualChannel channel) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(f, "rw")) {
+                file.setLength(length);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Notes when the recorder reaches each {@link Milestone} of a build.
+     */
+    @TestExtension
+    public static class MilestoneFilter extends ConsoleLogFilter {
+
+        @Override
+        public OutputStream decorateLogger(Run build, OutputStream logger) {
+            final Map<Milestone, Long> milestones = MILESTONES.computeIfAbsent(build.getExternalizableId(),
+                    id -> new ConcurrentHashMap<>());
+            return new LineTransformationOutputStream() {
+                @Override
+                protected void eol(byte[] b, int len) throws IOException {
+                    final String line = new String(b, 0, len, StandardCharsets.UTF_8).trim();
+                    final long now = System.currentTimeMillis();
+                    if (line.endsWith(Messages.UPLOADING_TO_HOCKEYAPP())) {
+                        milestones.putIfAbsent(Milestone.UPLOAD_STEP, now);
+                    } else if (line.endsWith(File.separator + ARTIFACT) && milestones.containsKey(Milestone.UPLOAD_STEP)) {
+                        milestones.putIfAbsent(Milestone.STAGED, now);
+                    } else if (line.contains("HockeyApp Upload Speed:")) {
+                        milestones.putIfAbsent(Milestone.UPLOADED, now);
+                    }
+                    logger.write(b, 0, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    logger.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    logger.close();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package hockeyapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process HTTP server on localhost that discards request bodies and answers like a successful HockeyApp upload.
+ */
+final class LocalHockeyappSink implements AutoCloseable {
+
+    static final String UPLOAD_RESPONSE = "{\n" +
+            "  \"title\": \"Android\",\n" +
+            "  \"bundle_identifier\": \"net.hockeyapp.jenkins.android\",\n" +
+            "  \"public_identifier\": \"appid\",\n" +
+            "  \"platform\": \"Android\",\n" +
+            "  \"release_type\": 0,\n" +
+            "  \"custom_release_type\": null,\n" +
+            "  \"created_at\": \"2018-06-16T21:16:48Z\",\n" +
+            "  \"updated_at\": \"2018-06-16T21:16:51Z\",\n" +
+            "  \"featured\": false,\n" +
+            "  \"role\": 0,\n" +
+            "  \"id\": 788014,\n" +
+            "  \"config_url\": \"https://rink.hockeyapp.net/manage/apps/bar/app_versions/1\",\n" +
+            "  \"public_url\": \"https://rink.hockeyapp.net/apps/foo\",\n" +
+            "  \"minimum_os_version\": \"5.0\",\n" +
+            "  \"device_family\": null,\n" +
+            "  \"status\": 2,\n" +
+            "  \"visibility\": \"private\",\n" +
+            "  \"owner\": \"Foo Bar Inc\",\n" +
+            "  \"owner_token\": \"bar-baz\",\n" +
+            "  \"retention_days\": \"90\"\n" +
+            "}";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    private LocalHockeyappSink() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    static LocalHockeyappSink start() throws IOException {
+        return new LocalHockeyappSink();
+    }
+
+    URI getUploadUri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/api/2/apps/upload");
+    }
+
+    long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        final byte[] buffer = new byte[64 * 1024];
+        try (InputStream is = exchange.getRequestBody()) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bytesReceived.addAndGet(read);
+            }
+        }
+        final byte[] response = UPLOAD_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(201, response.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(response);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
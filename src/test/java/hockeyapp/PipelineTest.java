@@ -8,11 +8,18 @@ import org.junit.Test;
 
 import java.util.Objects;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
 import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static hockeyapp.builder.HockeyappApplicationBuilder.FILE_PATH;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 
 public class PipelineTest extends ProjectTest {
     private WorkflowJob workflowJob;
@@ -92,6 +99,54 @@ public class PipelineTest extends ProjectTest {
         failOnUnmatchedRequests();
     }
 
+    @Test
+    public void should_UploadToEachApp_When_StepsSendSameFileToTwoApps() throws Exception {
+        // Given
+        mockHockeyAppServer.stubFor(get(urlEqualTo("/api/2/apps/production/app_versions"))
+                .willReturn(okJson("{ \"app_versions\": [], \"status\": \"success\" }")));
+        mockHockeyAppServer.stubFor(post(urlEqualTo("/api/2/apps/production/app_versions/upload"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(201)
+                        .withBody("{ \"id\": 2, \"public_identifier\": \"production\", " +
+                                "\"config_url\": \"https://rink.hockeyapp.net/manage/apps/production/app_versions/2\" }")));
+        workflowJob.setDefinition(new CpsFlowDefinition(
+                "node { \n" +
+                        "writeFile file: 'test.ipa', text: '" + IPA_CONTENTS + "', encoding: 'UTF-8'\n" +
+                        "step(" + versionCreationStep(APP_ID) + ") \n" +
+                        "step(" + versionCreationStep("production") + ") \n" +
+                        "}", true));
+
+        // When
+        WorkflowRun build = Objects.requireNonNull(workflowJob.scheduleBuild2(0)).get();
+
+        // Then
+        assertBuildSuccessful(build);
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo(HOCKEY_VERSION_UPLOAD_NEW_URL))
+                .withRequestBody(ipaFormData()));
+        mockHockeyAppServer.verify(1, postRequestedFor(urlEqualTo("/api/2/apps/production/app_versions/upload"))
+                .withRequestBody(ipaFormData()));
+        final HockeyappUploadRecord record = build.getAction(HockeyappUploadRecord.class);
+        assertThat(record.getUploads().size(), is(2));
+        assertThat(record.getUploads().get(1).getConfigUrl(), containsString("/apps/production/"));
+        failOnUnmatchedRequests();
+    }
+
+    private String versionCreationStep(String appId) {
+        return "[$class: 'HockeyappRecorder', \n" +
+                "   applications: [\n" +
+                "       [$class: 'HockeyappApplication', \n" +
+                "        apiToken: 'API_TOKEN',\n" +
+                "        filePath: '" + FILE_PATH + "',\n" +
+                "        uploadMethod: [$class: 'VersionCreation',\n" +
+                "                       appId: '" + appId + "'],\n" +
+                "        releaseNotesMethod: [$class: 'NoReleaseNotes']\n" +
+                "       ]\n" +
+                "   ],\n" +
+                "   baseUrl: 'http://localhost:" + mockHockeyAppServer.port() + "/'\n" +
+                "]";
+    }
+
     private void createHockeyappJob(String hockeyAppInfo) {
         workflowJob.setDefinition(new CpsFlowDefinition(
                 "node { \n" +
@@ -2,6 +2,7 @@ package hockeyapp;
 
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import com.github.tomakehurst.wiremock.matching.StringValuePattern;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
 import com.github.tomakehurst.wiremock.verification.LoggedRequest;
 import hudson.model.Action;
 import hudson.model.Run;
@@ -28,6 +29,8 @@ public abstract class ProjectTest {
     static final String HOCKEY_VERSION_UPLOAD_EXISTING_BASE_URL = "/api/2/apps/" + APP_ID + "/app_versions/";
     static final String HOCKEY_VERSION_UPLOAD_NEW_URL = "/api/2/apps/" + APP_ID + "/app_versions/upload";
     static final String HOCKEY_APP_DELETE_URL = "/api/2/apps/" + APP_ID + "/app_versions/delete";
+    static final String HOCKEY_APP_LIST_URL = "/api/2/apps";
+    static final String HOCKEY_VERSION_LIST_URL = "/api/2/apps/" + APP_ID + "/app_versions";
 
     @Rule
     public JenkinsRule jenkinsRule = new JenkinsRule();
@@ -125,6 +128,63 @@ public abstract class ProjectTest {
         mockHockeyAppServer.stubFor(post(urlEqualTo(HOCKEY_APP_DELETE_URL))
                 .willReturn(aResponse()
                         .withStatus(204)));
+
+        // Stub pre-flight list apps
+        mockHockeyAppServer.stubFor(get(urlEqualTo(HOCKEY_APP_LIST_URL))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(200)
+                        .withBody("{\n" +
+                                "  \"apps\": [],\n" +
+                                "  \"status\": \"success\"\n" +
+                                "}")));
+
+        // Stub connection warm-up, which sends no token
+        mockHockeyAppServer.stubFor(request("HEAD", urlEqualTo(HOCKEY_APP_LIST_URL))
+                .willReturn(aResponse()
+                        .withStatus(401)));
+
+        // Stub pre-flight list versions
+        mockHockeyAppServer.stubFor(get(urlEqualTo(HOCKEY_VERSION_LIST_URL))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(200)
+                        .withBody("{\n" +
+                                "  \"app_versions\": [\n" +
+                                "    { \"id\": 1, \"version\": \"1\" },\n" +
+                                "    { \"id\": 2, \"version\": \"2\" }\n" +
+                                "  ],\n" +
+                                "  \"status\": \"success\"\n" +
+                                "}")));
+    }
+
+    void apiKeyIsRevoked() {
+        mockHockeyAppServer.stubFor(get(urlEqualTo(HOCKEY_APP_LIST_URL))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(401)
+                        .withBody("{\n" +
+                                "  \"errors\": { \"credentials\": [\"An API token is required\"] }\n" +
+                                "}")));
+    }
+
+    void apiKeyMayOnlyUpload() {
+        mockHockeyAppServer.stubFor(get(urlEqualTo(HOCKEY_APP_LIST_URL))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(403)
+                        .withBody("{\n" +
+                                "  \"errors\": { \"credentials\": [\"Not allowed\"] }\n" +
+                                "}")));
+    }
+
+    void firstUploadIsUnavailable() {
+        mockHockeyAppServer.stubFor(post(urlEqualTo(HOCKEY_APP_UPLOAD_URL))
+                .inScenario("Upload")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse()
+                        .withStatus(503))
+                .willSetStateTo("Available"));
     }
 
     void apiKeyHasNoUploadPermission() {
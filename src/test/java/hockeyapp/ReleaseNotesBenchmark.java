@@ -0,0 +1,129 @@
+package hockeyapp;
+
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import net.hockeyapp.jenkins.releaseNotes.ReleaseNotesTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Change log release notes of builds with many commits.
+ * <p>
+ * Authors are left out since resolving users needs a running Jenkins, which is not what is measured here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ReleaseNotesBenchmark {
+
+    private static final String TEMPLATE = "Build {{build.number}} (${BUILD_NUMBER})\n"
+            + "{{#changes}}\n"
+            + "* {{message}}\n"
+            + "{{/changes}}\n"
+            + "{{#tests.failed}}\n"
+            + "{{tests.failed}} of {{tests.total}} tests failed\n"
+            + "{{/tests.failed}}";
+
+    @Param({"10", "1000", "10000"})
+    public int commits;
+
+    private ChangeLogSet<? extends ChangeLogSet.Entry> changeLogSet;
+    private ReleaseNotesTemplate template;
+    private ReleaseNotesTemplate.Scope scope;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final List<SyntheticEntry> entries = new ArrayList<>(commits);
+        for (int i = 0; i < commits; i++) {
+            entries.add(new SyntheticEntry("Commit " + i + ": fix the thing that broke the other thing"));
+        }
+        changeLogSet = new SyntheticChangeLogSet(entries);
+
+        template = ReleaseNotesTemplate.compile(TEMPLATE);
+        final List<ReleaseNotesTemplate.Scope> changes = new ArrayList<>(commits);
+        for (SyntheticEntry entry : entries) {
+            changes.add(name -> "message".equals(name) ? entry.getMsg() : null);
+        }
+        final Map<String, Object> values = new HashMap<>();
+        values.put("build.number", 42);
+        values.put("BUILD_NUMBER", "42");
+        values.put("changes", changes);
+        values.put("tests.total", 1200);
+        values.put("tests.failed", 3);
+        scope = values::get;
+    }
+
+    @Benchmark
+    public String formatChangeLog() {
+        return HockeyappRecorder.formatChangeLog(changeLogSet);
+    }
+
+    @Benchmark
+    public String renderTemplate() {
+        return template.render(scope);
+    }
+
+    private static final class SyntheticChangeLogSet extends ChangeLogSet<SyntheticEntry> {
+        private final List<SyntheticEntry> entries;
+
+        private SyntheticChangeLogSet(List<SyntheticEntry> entries) {
+            super(null, null);
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean isEmptySet() {
+            return entries.isEmpty();
+        }
+
+        @Override
+        public Iterator<SyntheticEntry> iterator() {
+            return entries.iterator();
+        }
+    }
+
+    private static final class SyntheticEntry extends ChangeLogSet.Entry {
+        private final String msg;
+
+        private SyntheticEntry(String msg) {
+            this.msg = msg;
+        }
+
+        @Override
+        public String getMsg() {
+            return msg;
+        }
+
+        @Override
+        public User getAuthor() {
+            return null;
+        }
+
+        @Override
+        public Collection<String> getAffectedPaths() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package hockeyapp;
+
+import net.hockeyapp.engine.HockeyappResponse;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of upload responses. Responses of apps with a long history carry every version, the wanted fields come
+ * after them here, which is the worst case for stopping early.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ResponseParsingBenchmark {
+
+    @Param({"0", "100", "10000"})
+    public int versions;
+
+    private byte[] response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final StringBuilder sb = new StringBuilder("{\n  \"app_versions\": [");
+        for (int i = 0; i < versions; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\n    {\"version\": \"").append(i).append("\", \"shortversion\": \"1.0.").append(i)
+                    .append("\", \"title\": \"Android\", \"notes\": \"<p>Fixed all the bugs</p>\", \"mandatory\": false,")
+                    .append(" \"timestamp\": 1529183808, \"appsize\": 12345678, \"device_family\": null,")
+                    .append(" \"status\": 2, \"config_url\": \"https://rink.hockeyapp.net/manage/apps/bar/app_versions/")
+                    .append(i).append("\"}");
+        }
+        sb.append("\n  ],").append(LocalHockeyappSink.UPLOAD_RESPONSE.substring(1));
+        response = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * How responses were handled before: read into a string, then parsed into maps.
+     */
+    @Benchmark
+    public Object readTree() throws IOException, ParseException {
+        final String body = IOUtils.toString(
+                new ByteArrayEntity(response, ContentType.APPLICATION_JSON).getContent(), StandardCharsets.UTF_8);
+        return ((Map) new JSONParser().parse(body)).get("config_url");
+    }
+
+    @Benchmark
+    public Object readFields() throws IOException, ParseException {
+        return HockeyappResponse.read(new ByteArrayEntity(response, ContentType.APPLICATION_JSON),
+                HockeyappResponse.UPLOAD_FIELDS).getConfigUrl();
+    }
+}
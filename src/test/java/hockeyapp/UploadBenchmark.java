@@ -0,0 +1,121 @@
+package hockeyapp;
+
+import net.hockeyapp.engine.ArtifactSource;
+import net.hockeyapp.engine.CountingHttpEntity;
+import net.hockeyapp.engine.HockeyappUploader;
+import net.hockeyapp.engine.UploadRequest;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.NullInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multipart assembly and upload of synthetic artifacts to a {@link LocalHockeyappSink}.
+ * <p>
+ * {@code file} sends the artifact like the recorder does, {@code stream} sends it as a body of unknown length.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class UploadBenchmark {
+
+    @Param({"10", "100", "1024", "4096"})
+    public int sizeMegabytes;
+
+    @Param({"file", "stream"})
+    public String body;
+
+    private LocalHockeyappSink sink;
+    private File artifact;
+    private DefaultHttpClient httpClient;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        sink = LocalHockeyappSink.start();
+        // Sparse file, creating it is cheap whatever its size
+        artifact = File.createTempFile("synthetic", ".ipa");
+        try (RandomAccessFile file = new RandomAccessFile(artifact, "rw")) {
+            file.setLength(sizeMegabytes * FileUtils.ONE_MB);
+        }
+        httpClient = new DefaultHttpClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.getConnectionManager().shutdown();
+        sink.close();
+        FileUtils.deleteQuietly(artifact);
+    }
+
+    @Benchmark
+    public long assembleMultipart() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream(new NullOutputStream());
+        createEntity().writeTo(out);
+        return out.getByteCount();
+    }
+
+    @Benchmark
+    public int upload() throws IOException {
+        final HttpPost httpPost = new HttpPost(sink.getUploadUri());
+        httpPost.setEntity(new CountingHttpEntity(createEntity()));
+        final HttpResponse response = httpClient.execute(httpPost);
+        EntityUtils.consume(response.getEntity());
+        return response.getStatusLine().getStatusCode();
+    }
+
+    private MultipartEntity createEntity() throws IOException {
+        final ArtifactSource ipa = "file".equals(body) ? ArtifactSource.of(artifact) : new ArtifactSource() {
+            @Nonnull
+            @Override
+            public String getName() {
+                return artifact.getName();
+            }
+
+            @Override
+            public long getLength() {
+                return -1;
+            }
+
+            @Nonnull
+            @Override
+            public InputStream open() {
+                return new NullInputStream(artifact.length());
+            }
+        };
+        return HockeyappUploader.createEntity(UploadRequest.builder(sink.getUploadUri().toURL(), "POST", "token", ipa)
+                .tags("beta,internal")
+                .teams("1,2")
+                .notifyTeam(true)
+                .downloadAllowed(true)
+                .publicPage(false)
+                .build());
+    }
+}
@@ -0,0 +1,77 @@
+package hockeyapp;
+
+import hudson.model.FreeStyleBuild;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UploadJournalTest {
+
+    private static final String ARTIFACT = "/workspace/test.ipa";
+    private static final String STAGING = "http://localhost/api/2/apps/staging/app_versions/upload|token";
+    private static final String PRODUCTION = "http://localhost/api/2/apps/production/app_versions/upload|token";
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private FreeStyleBuild build;
+    private File stagedFile;
+
+    @Before
+    public void before() throws Exception {
+        build = jenkinsRule.buildAndAssertSuccess(jenkinsRule.createFreeStyleProject());
+        stagedFile = new File(build.getRootDir(), "test.ipa");
+    }
+
+    @Test
+    public void should_NotFindUpload_When_SameArtifactGoesToAnotherApp() throws Exception {
+        // Given
+        final UploadJournal journal = UploadJournal.open(build);
+        final UploadJournal.Entry entry = journal.staged(0, STAGING, ARTIFACT, 11, stagedFile);
+        journal.uploading(entry, "staging");
+        journal.completed(entry, "1", "http://localhost/manage/apps/staging/app_versions/1", null, "staging");
+
+        // When
+        final UploadJournal.Entry production = journal.find(0, PRODUCTION, ARTIFACT, 11);
+        final UploadJournal.Entry staging = journal.find(0, STAGING, ARTIFACT, 11);
+        UploadJournal.close(build);
+
+        // Then
+        assertThat(production, is(nullValue()));
+        assertThat(staging, is(entry));
+    }
+
+    @Test
+    public void should_SendAgain_When_RestartedMidUpload() throws Exception {
+        // Given
+        final UploadJournal journal = UploadJournal.open(build);
+        final UploadJournal.Entry completed = journal.staged(0, STAGING, ARTIFACT, 11, stagedFile);
+        journal.uploading(completed, "staging");
+        journal.completed(completed, "1", "http://localhost/manage/apps/staging/app_versions/1", null, "staging");
+        final UploadJournal.Entry inFlight = journal.staged(1, PRODUCTION, ARTIFACT, 11, stagedFile);
+        journal.uploading(inFlight, "production");
+        UploadJournal.close(build);
+
+        // When
+        UploadJournal.reconcile();
+
+        // Then
+        final UploadJournal reloaded = UploadJournal.open(build);
+        assertThat(reloaded.find(0, STAGING, ARTIFACT, 11).getPhase(), is(UploadJournal.Phase.COMPLETED));
+        assertThat(reloaded.find(0, STAGING, ARTIFACT, 11).isRecorded(), is(true));
+        assertThat(reloaded.find(1, PRODUCTION, ARTIFACT, 11).getPhase(), is(UploadJournal.Phase.INTERRUPTED));
+        UploadJournal.close(build);
+        final HockeyappUploadRecord record = HockeyappUploadRecord.of(build);
+        assertThat(record, is(notNullValue()));
+        assertThat(record.getUploads().size(), is(1));
+        assertThat(record.getUploads().get(0).getArtifact(), is("test.ipa"));
+    }
+}
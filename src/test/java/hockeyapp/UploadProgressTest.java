@@ -0,0 +1,135 @@
+package hockeyapp;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.User;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UploadProgressTest {
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private final List<UploadProgress> started = new ArrayList<>();
+    private FreeStyleProject project;
+    private FreeStyleBuild build;
+    private ByteArrayOutputStream log;
+    private PrintStream logger;
+
+    @Before
+    public void before() throws Exception {
+        project = jenkinsRule.createFreeStyleProject("visible");
+        build = jenkinsRule.buildAndAssertSuccess(project);
+        log = new ByteArrayOutputStream();
+        logger = new PrintStream(log, true, "UTF-8");
+    }
+
+    @After
+    public void after() {
+        for (UploadProgress progress : started) {
+            progress.finish();
+        }
+    }
+
+    @Test
+    public void should_LogEveryFivePercent_When_UploadIsFast() throws Exception {
+        // Given
+        final UploadProgress progress = start(build, 1000);
+        final long now = System.currentTimeMillis();
+
+        // When
+        progress.update(10, now);
+        progress.update(49, now);
+        progress.update(50, now);
+        progress.update(99, now);
+        progress.update(100, now);
+        progress.update(1000, now);
+
+        // Then
+        final String[] lines = lines();
+        assertThat(lines.length, is(3));
+        assertThat(lines[0], startsWith("HockeyApp Upload: 5% ("));
+        assertThat(lines[1], startsWith("HockeyApp Upload: 10% ("));
+        assertThat(lines[2], startsWith("HockeyApp Upload: 100% ("));
+    }
+
+    @Test
+    public void should_LogEveryTenSeconds_When_UploadIsSlow() throws Exception {
+        // Given
+        final UploadProgress progress = start(build, 1000);
+        final long now = System.currentTimeMillis();
+
+        // When
+        progress.update(1, now + TimeUnit.SECONDS.toMillis(5));
+        progress.update(2, now + TimeUnit.SECONDS.toMillis(11));
+        progress.update(3, now + TimeUnit.SECONDS.toMillis(15));
+        progress.update(4, now + TimeUnit.SECONDS.toMillis(22));
+
+        // Then
+        final String[] lines = lines();
+        assertThat(lines.length, is(2));
+        assertThat(lines[0], startsWith("HockeyApp Upload: 0% ("));
+        assertThat(lines[1], startsWith("HockeyApp Upload: 0% ("));
+        for (String line : lines) {
+            assertThat(line, not(endsWith(" ")));
+        }
+    }
+
+    @Test
+    public void should_ListOnlyUploadsOfVisibleJobs_When_UserMayNotReadJob() throws Exception {
+        // Given
+        final FreeStyleBuild hiddenBuild = jenkinsRule.buildAndAssertSuccess(
+                jenkinsRule.createFreeStyleProject("hidden"));
+        jenkinsRule.jenkins.setSecurityRealm(jenkinsRule.createDummySecurityRealm());
+        jenkinsRule.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ).everywhere().to("alice")
+                .grant(Item.READ).onItems(project).to("alice"));
+        start(build, 1000);
+        start(hiddenBuild, 1000);
+        final UploadProgress.RootActionImpl rootAction =
+                jenkinsRule.jenkins.getExtensionList(UploadProgress.RootActionImpl.class).get(0);
+
+        // When
+        final List<UploadProgress> uploads;
+        try (ACLContext ignored = ACL.as(User.get("alice").impersonate())) {
+            uploads = rootAction.getUploads();
+        }
+
+        // Then
+        assertThat(uploads.size(), is(1));
+        assertThat(uploads.get(0).getBuild(), is(build.getExternalizableId()));
+        assertThat(rootAction.getUploads().size(), is(2));
+    }
+
+    private UploadProgress start(FreeStyleBuild build, long totalBytes) {
+        final UploadProgress progress = UploadProgress.start(build, "test.ipa", "localhost", totalBytes, logger);
+        started.add(progress);
+        return progress;
+    }
+
+    private String[] lines() throws Exception {
+        final String text = log.toString("UTF-8");
+        return text.isEmpty() ? new String[0] : text.split(System.lineSeparator());
+    }
+}
@@ -0,0 +1,97 @@
+package hockeyapp;
+
+import hudson.FilePath;
+import hudson.model.FreeStyleBuild;
+import hudson.slaves.DumbSlave;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UploadStagingAreaTest {
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private FreeStyleBuild build;
+    private FilePath remoteFile;
+
+    @Before
+    public void before() throws Exception {
+        build = jenkinsRule.buildAndAssertSuccess(jenkinsRule.createFreeStyleProject());
+        final DumbSlave agent = jenkinsRule.createOnlineSlave();
+        remoteFile = agent.getRootPath().child("test.ipa");
+        remoteFile.write(ProjectTest.IPA_CONTENTS, "UTF-8");
+    }
+
+    @Test
+    public void should_ReuseStagedCopy_When_ArtifactDidNotChange() throws Exception {
+        // Given
+        UploadStagingArea.acquire(build);
+        final File first = UploadStagingArea.stage(build, remoteFile, new PrintStream(new NullOutputStream()));
+        UploadStagingArea.release(build, false);
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        // When
+        UploadStagingArea.acquire(build);
+        final File second = UploadStagingArea.stage(build, remoteFile, new PrintStream(log, true, "UTF-8"));
+        UploadStagingArea.release(build, false);
+
+        // Then
+        assertThat(first, is(notNullValue()));
+        assertThat(second, is(first));
+        assertThat(log.toString("UTF-8"), containsString("Reusing staged copy of " + remoteFile.getRemote()));
+        assertThat(FileUtils.readFileToString(second, StandardCharsets.UTF_8), is(ProjectTest.IPA_CONTENTS));
+    }
+
+    @Test
+    public void should_StageAgain_When_ArtifactChanged() throws Exception {
+        // Given
+        UploadStagingArea.acquire(build);
+        final File first = UploadStagingArea.stage(build, remoteFile, new PrintStream(new NullOutputStream()));
+        UploadStagingArea.release(build, false);
+        remoteFile.write("Lorem Dolor", "UTF-8");
+        remoteFile.touch(remoteFile.lastModified() + 60000);
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        // When
+        UploadStagingArea.acquire(build);
+        final File second = UploadStagingArea.stage(build, remoteFile, new PrintStream(log, true, "UTF-8"));
+        UploadStagingArea.release(build, false);
+
+        // Then
+        assertThat(second, is(not(first)));
+        assertThat(log.toString("UTF-8"), not(containsString("Reusing staged copy")));
+        assertThat(FileUtils.readFileToString(second, StandardCharsets.UTF_8), is("Lorem Dolor"));
+    }
+
+    @Test
+    public void should_KeepStagedCopy_Until_UploadFinished() throws Exception {
+        // Given
+        UploadStagingArea.acquire(build);
+        final File staged = UploadStagingArea.stage(build, remoteFile, new PrintStream(new NullOutputStream()));
+
+        // When
+        UploadStagingArea.release(build, false);
+        final boolean keptForRetry = staged.isFile();
+        UploadStagingArea.acquire(build);
+        UploadStagingArea.release(build, true);
+
+        // Then
+        assertThat(keptForRetry, is(true));
+        assertThat(staged.exists(), is(false));
+    }
+}
@@ -0,0 +1,56 @@
+package hockeyapp;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UploadTrendTest {
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private FreeStyleProject project;
+
+    @Before
+    public void before() throws Exception {
+        project = jenkinsRule.createFreeStyleProject();
+    }
+
+    @Test
+    public void should_CompareWithSameArtifact_When_ApplicationHasSeveralArtifacts() throws Exception {
+        // Given
+        UploadTrend.append(project, new UploadTrend.Entry(1, 0, 1000, 100, "app.ipa"));
+        UploadTrend.append(project, new UploadTrend.Entry(1, 0, 10, 100, "app.dSYM.zip"));
+
+        // When
+        final UploadTrend.Entry previous = UploadTrend.append(project,
+                new UploadTrend.Entry(2, 0, 1000, 100, "app.ipa"));
+
+        // Then
+        assertThat(previous.getBuild(), is(1));
+        assertThat(previous.getArtifact(), is("app.ipa"));
+        assertThat(previous.getSize(), is(1000L));
+    }
+
+    @Test
+    public void should_KeepOneEntry_When_BuildAppendsSameArtifactAgain() throws Exception {
+        // Given
+        UploadTrend.append(project, new UploadTrend.Entry(1, 0, 1000, 100, "app.ipa"));
+        UploadTrend.append(project, new UploadTrend.Entry(2, 0, 1000, 100, "app.ipa"));
+
+        // When
+        final UploadTrend.Entry previous = UploadTrend.append(project,
+                new UploadTrend.Entry(2, 0, 1000, 0, "app.ipa"));
+
+        // Then
+        assertThat(previous, is(nullValue()));
+        assertThat(UploadTrend.read(project).size(), is(2));
+        assertThat(UploadTrend.read(project).get(1).getDurationMillis(), is(100L));
+    }
+}
@@ -0,0 +1,55 @@
+package net.hockeyapp.engine;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ThroughputHistoryTest {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    @Test
+    public void should_AssumeMinimumThroughput_When_HostIsUnknown() {
+        // When
+        final long deadline = ThroughputHistory.deadlineMillis("unknown.example.com", 10 * MEGABYTE, 1000);
+
+        // Then
+        assertThat(deadline, is(1000 + 10 * MEGABYTE * 1000 / ThroughputHistory.MIN_THROUGHPUT));
+        assertThat(deadline, is(321000L));
+    }
+
+    @Test
+    public void should_AssumeMinimumThroughput_When_HostIsSlowerThanMinimum() {
+        // Given
+        ThroughputHistory.record("slow.example.com", 8 * 1024, 1000);
+
+        // When
+        final long deadline = ThroughputHistory.deadlineMillis("slow.example.com", 10 * MEGABYTE, 1000);
+
+        // Then
+        assertThat(ThroughputHistory.estimate("slow.example.com"), is(8L * 1024));
+        assertThat(deadline, is(321000L));
+    }
+
+    @Test
+    public void should_ToleratePartOfUsualThroughput_When_HostIsFast() {
+        // Given
+        ThroughputHistory.record("fast.example.com", 4 * MEGABYTE, 1000);
+
+        // When
+        final long deadline = ThroughputHistory.deadlineMillis("fast.example.com", 10 * MEGABYTE, 1000);
+
+        // Then
+        assertThat(deadline, is(1000L + 10000L));
+    }
+
+    @Test
+    public void should_OnlyWaitForTimeout_When_RequestIsEmpty() {
+        // When
+        final long deadline = ThroughputHistory.deadlineMillis("unknown.example.com", -1, 1000);
+
+        // Then
+        assertThat(deadline, is(1000L));
+    }
+}
@@ -0,0 +1,179 @@
+package net.hockeyapp.engine;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class UploadSchedulerTest {
+
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Long> started = new CopyOnWriteArrayList<>();
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void should_StartSmallestUploadFirst_When_SlotFreesUp() throws Exception {
+        // Given
+        final UploadScheduler scheduler = new UploadScheduler(1, 0, 0, NEVER);
+        final UploadScheduler.Permit running = scheduler.acquire(1000);
+        final List<Future<?>> uploads = enqueue(scheduler, 300, 100, 200);
+
+        // When
+        running.close();
+        awaitAll(uploads);
+
+        // Then
+        assertThat(started.toString(), is("[100, 200, 300]"));
+    }
+
+    @Test
+    public void should_StartLargeUpload_When_ItWaitedLongEnough() throws Exception {
+        // Given
+        final UploadScheduler scheduler = new UploadScheduler(1, 0, 0, 50);
+        final UploadScheduler.Permit running = scheduler.acquire(1000);
+        final List<Future<?>> uploads = enqueue(scheduler, 1000);
+        // Halved often enough to rank below the small upload
+        Thread.sleep(350);
+        uploads.addAll(enqueue(scheduler, 100));
+
+        // When
+        running.close();
+        awaitAll(uploads);
+
+        // Then
+        assertThat(started.toString(), is("[1000, 100]"));
+    }
+
+    @Test
+    public void should_StartSmallUploadInItsLane_When_AllSlotsAreTaken() throws Exception {
+        // Given
+        final UploadScheduler scheduler = new UploadScheduler(1, 1, 100, NEVER);
+        final UploadScheduler.Permit large = scheduler.acquire(1000);
+
+        // When
+        final UploadScheduler.Permit small = scheduler.acquire(50);
+        final List<Future<?>> waiting = enqueue(scheduler, 1000, 50);
+
+        // Then
+        assertThat(large.isSmallLane(), is(false));
+        assertThat(small.isSmallLane(), is(true));
+        assertThat(scheduler.getQueueLength(), is(2));
+        small.close();
+        waiting.get(1).get(5, TimeUnit.SECONDS);
+        assertThat(started.toString(), is("[50]"));
+        large.close();
+        awaitAll(waiting);
+        assertThat(started.toString(), is("[50, 1000]"));
+    }
+
+    @Test
+    public void should_LeaveQueue_When_WaitingUploadIsInterrupted() throws Exception {
+        // Given
+        final UploadScheduler scheduler = new UploadScheduler(1, 0, 0, NEVER);
+        final UploadScheduler.Permit running = scheduler.acquire(1000);
+        final Future<?> interrupted = enqueue(scheduler, 100).get(0);
+
+        // When
+        interrupted.cancel(true);
+        awaitQueueLength(scheduler, 0);
+        running.close();
+
+        // Then
+        assertNotBlocked(scheduler);
+        assertThat(started.isEmpty(), is(true));
+    }
+
+    @Test
+    public void should_ReleaseSlot_When_UploadThrows() throws Exception {
+        // Given
+        final UploadScheduler scheduler = new UploadScheduler(1, 0, 0, NEVER);
+
+        // When
+        try (UploadScheduler.Permit ignored = scheduler.acquire(1000)) {
+            throw new IOException("Connection reset");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Then
+        assertNotBlocked(scheduler);
+    }
+
+    @Test
+    public void should_ReleaseSlotOnce_When_PermitIsClosedTwice() throws Exception {
+        // Given
+        final UploadScheduler scheduler = new UploadScheduler(1, 0, 0, NEVER);
+        final UploadScheduler.Permit permit = scheduler.acquire(1000);
+
+        // When
+        permit.close();
+        permit.close();
+
+        // Then
+        final UploadScheduler.Permit next = scheduler.acquire(1000);
+        final List<Future<?>> waiting = enqueue(scheduler, 1000);
+        assertThat(scheduler.getQueueLength(), is(1));
+        next.close();
+        awaitAll(waiting);
+    }
+
+    /**
+     * Queues uploads one after the other, each closes its permit as soon as it got it.
+     */
+    private List<Future<?>> enqueue(UploadScheduler scheduler, long... sizes) throws Exception {
+        final List<Future<?>> uploads = new CopyOnWriteArrayList<>();
+        for (long size : sizes) {
+            final int queueLength = scheduler.getQueueLength();
+            uploads.add(executor.submit(() -> {
+                try (UploadScheduler.Permit ignored = scheduler.acquire(size)) {
+                    started.add(size);
+                }
+                return null;
+            }));
+            awaitQueueLength(scheduler, queueLength + 1);
+        }
+        return uploads;
+    }
+
+    private static void awaitQueueLength(UploadScheduler scheduler, int length) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (scheduler.getQueueLength() != length) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Queue length is " + scheduler.getQueueLength() + ", expected " + length);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> uploads) throws Exception {
+        for (Future<?> upload : uploads) {
+            upload.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private void assertNotBlocked(UploadScheduler scheduler) throws Exception {
+        final Future<UploadScheduler.Permit> next = executor.submit(() -> scheduler.acquire(1000));
+        try {
+            next.get(5, TimeUnit.SECONDS).close();
+        } catch (TimeoutException e) {
+            fail("The slot was not released");
+        }
+    }
+}
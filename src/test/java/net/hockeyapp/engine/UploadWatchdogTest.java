@@ -0,0 +1,162 @@
+package net.hockeyapp.engine;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.params.HttpConnectionParams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class UploadWatchdogTest {
+
+    private static final int BODY_LENGTH = 1024 * 1024;
+    private static final int STALL_AFTER = 64 * 1024;
+
+    @Rule
+    public WireMockRule mockHockeyAppServer = new WireMockRule(options().dynamicPort());
+
+    private ScheduledExecutorService scheduler;
+    private DefaultHttpClient client;
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+    private final UploadListener listener = new UploadListener() {
+        @Override
+        public void log(@Nonnull String message) {
+            messages.add(message);
+        }
+    };
+
+    @Before
+    public void before() {
+        mockHockeyAppServer.stubFor(post(urlEqualTo("/upload"))
+                .willReturn(aResponse().withStatus(201)));
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        client = new DefaultHttpClient();
+        HttpConnectionParams.setSoTimeout(client.getParams(), 60000);
+    }
+
+    @After
+    public void after() {
+        client.getConnectionManager().shutdown();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void should_AbortUpload_When_BodyStopsMoving() throws Exception {
+        // Given
+        final HttpPost request = new HttpPost(mockHockeyAppServer.url("/upload"));
+        final CountingHttpEntity entity = new CountingHttpEntity(
+                new InputStreamEntity(new StallingInputStream(5000), BODY_LENGTH), listener);
+        request.setEntity(entity);
+
+        // When
+        try (UploadWatchdog ignored = UploadWatchdog.watch(scheduler, request, entity, 1000, 60000, listener)) {
+            client.execute(request);
+            fail("Upload should have been aborted");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Then
+        assertThat(request.isAborted(), is(true));
+        assertThat(messages, hasItem("Upload stalled, no data sent for 1 seconds. Aborting."));
+    }
+
+    @Test
+    public void should_AbortUpload_When_DeadlinePasses() throws Exception {
+        // Given
+        final HttpPost request = new HttpPost(mockHockeyAppServer.url("/upload"));
+        final CountingHttpEntity entity = new CountingHttpEntity(
+                new InputStreamEntity(new StallingInputStream(5000), BODY_LENGTH), listener);
+        request.setEntity(entity);
+
+        // When
+        try (UploadWatchdog ignored = UploadWatchdog.watch(scheduler, request, entity, 60000, 1000, listener)) {
+            client.execute(request);
+            fail("Upload should have been aborted");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Then
+        assertThat(request.isAborted(), is(true));
+        assertThat(messages, hasItem("Upload did not finish in time. Aborting."));
+    }
+
+    @Test
+    public void should_LetUploadFinish_When_BodyKeepsMoving() throws Exception {
+        // Given
+        final HttpPost request = new HttpPost(mockHockeyAppServer.url("/upload"));
+        final CountingHttpEntity entity = new CountingHttpEntity(
+                new InputStreamEntity(new StallingInputStream(0), BODY_LENGTH), listener);
+        request.setEntity(entity);
+
+        // When
+        final int statusCode;
+        try (UploadWatchdog ignored = UploadWatchdog.watch(scheduler, request, entity, 1000, 60000, listener)) {
+            statusCode = client.execute(request).getStatusLine().getStatusCode();
+        }
+
+        // Then
+        assertThat(statusCode, is(201));
+        assertThat(entity.getBytesWritten(), is((long) BODY_LENGTH));
+        assertThat(request.isAborted(), is(false));
+        assertThat(messages.isEmpty(), is(true));
+    }
+
+    /**
+     * Hands out part of the body, then hangs like a network share that went away before handing out the rest.
+     */
+    private static final class StallingInputStream extends InputStream {
+
+        private final long stallMillis;
+        private int position;
+
+        private StallingInputStream(long stallMillis) {
+            this.stallMillis = stallMillis;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+            if (position >= BODY_LENGTH) {
+                return -1;
+            }
+            if (position == STALL_AFTER && stallMillis > 0) {
+                try {
+                    Thread.sleep(stallMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            final int n = Math.min(len, (position < STALL_AFTER ? STALL_AFTER : BODY_LENGTH) - position);
+            position += n;
+            return n;
+        }
+    }
+}